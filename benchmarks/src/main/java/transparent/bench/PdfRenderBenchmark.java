@@ -0,0 +1,101 @@
+package transparent.bench;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PDF open and page render latency at the reader's 150 DPI.  {@code renderPage}
+ * allocates a fresh image per page as PDFBox does by default;
+ * {@code renderPageReused} draws into one long-lived buffer the way the
+ * reader's {@code PageRaster} does.  Publishing the pixels to JavaFX is left
+ * out because it needs a running FX toolkit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class PdfRenderBenchmark {
+    /** Resolution the reader renders pages at. */
+    private static final float READER_DPI = 150f;
+
+    @Param({"10", "200"})
+    public int pages;
+
+    private Path directory;
+    private Path pdf;
+    private PDDocument document;
+    private PDFRenderer renderer;
+    private int page;
+    private BufferedImage reused;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("transparent-bench");
+        pdf = SyntheticData.writePdf(directory.resolve("sample.pdf"), pages);
+        document = PDDocument.load(pdf.toFile());
+        renderer = new PDFRenderer(document);
+        PDRectangle a4 = document.getPage(0).getCropBox();
+        reused = new BufferedImage((int) Math.floor(a4.getWidth() * READER_DPI / 72f),
+                (int) Math.floor(a4.getHeight() * READER_DPI / 72f), BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        document.close();
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    /** Opening a document and reading its page count. */
+    @Benchmark
+    public int open() throws IOException {
+        try (PDDocument opened = PDDocument.load(pdf.toFile())) {
+            return opened.getNumberOfPages();
+        }
+    }
+
+    /** Rendering one page of an open document, cycling through all pages. */
+    @Benchmark
+    public BufferedImage renderPage() throws IOException {
+        page = (page + 1) % pages;
+        return renderer.renderImageWithDPI(page, READER_DPI);
+    }
+
+    /** Rendering one page into a buffer reused across page turns. */
+    @Benchmark
+    public BufferedImage renderPageReused() throws IOException {
+        page = (page + 1) % pages;
+        Graphics2D graphics = reused.createGraphics();
+        try {
+            graphics.setBackground(Color.WHITE);
+            graphics.clearRect(0, 0, reused.getWidth(), reused.getHeight());
+            renderer.renderPageToGraphics(page, graphics, READER_DPI / 72f);
+        } finally {
+            graphics.dispose();
+        }
+        return reused;
+    }
+}
@@ -0,0 +1,171 @@
+package transparent.bench;
+
+import nl.siegmann.epublib.domain.Book;
+import nl.siegmann.epublib.domain.Resource;
+import nl.siegmann.epublib.epub.EpubWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import transparent.model.Content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic generators for benchmark inputs: catalogue entries shaped
+ * like a real library, and PDF and EPUB files with a given number of pages.
+ * The same seed always produces the same data so runs are comparable.
+ */
+public final class SyntheticData {
+    private static final String[] WORDS = {
+            "river", "night", "garden", "winter", "stone", "letters", "silver", "harbour", "empire", "atlas",
+            "shadow", "paper", "north", "voyage", "glass", "orchard", "lantern", "crown", "memory", "salt"
+    };
+    private static final String[] AUTHORS = {
+            "Nguyen Van An", "Tran Thi Binh", "Le Minh Chau", "Pham Quoc Dung", "Hoang Gia Han",
+            "Vo Thanh Long", "Dang Thu Mai", "Bui Tuan Nam", "Do Hai Phong", "Ngo Bao Tram"
+    };
+    private static final String[] CATEGORIES = {"Novel", "History", "Science", "Art", "Comics", "Poetry"};
+    private static final String[] TYPES = {"PDF", "PDF", "EPUB", "EPUB", "JPG", "PNG", "TXT"};
+    private static final String[] TAGS = {"classic", "favourite", "to-read", "reference", "illustrated", "series"};
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Build {@code count} catalogue entries with IDs {@code 1..count}, as
+     * they would arrive from the database.
+     */
+    public static List<Content> contents(int count, long seed) {
+        Random random = new Random(seed);
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+        List<Content> contents = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String type = TYPES[random.nextInt(TYPES.length)];
+            String title = title(random);
+            Content content = new Content(i, title,
+                    "D:\\Library\\" + CATEGORIES[i % CATEGORIES.length] + "\\" + i + "-" + title.replace(' ', '_')
+                            + "." + type.toLowerCase(Locale.ROOT),
+                    type, 50_000L + random.nextInt(50_000_000), start.plusMinutes(i));
+            content.setAuthor(AUTHORS[random.nextInt(AUTHORS.length)]);
+            content.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            List<String> tags = new ArrayList<>();
+            for (String tag : TAGS) {
+                if (random.nextInt(4) == 0) {
+                    tags.add(tag);
+                }
+            }
+            content.setTags(tags);
+            content.setDescription(title(random) + " " + title(random));
+            content.setContentHash(Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+            contents.add(content);
+        }
+        return contents;
+    }
+
+    /**
+     * Return a copy of {@code contents} in which every {@code stride}-th entry
+     * was renamed, to model a database refresh with a few edits.
+     */
+    public static List<Content> withEdits(List<Content> contents, int stride) {
+        List<Content> edited = new ArrayList<>(contents.size());
+        for (int i = 0; i < contents.size(); i++) {
+            Content copy = new Content(contents.get(i));
+            if (stride > 0 && i % stride == 0) {
+                copy.setTitle(copy.getTitle() + " (revised)");
+            }
+            edited.add(copy);
+        }
+        return edited;
+    }
+
+    /** Pick a search keyword that matches a realistic share of titles. */
+    public static String keyword(long seed) {
+        return WORDS[new Random(seed).nextInt(WORDS.length)];
+    }
+
+    /**
+     * Write an A4 PDF with {@code pages} pages of body text to {@code target}.
+     */
+    public static Path writePdf(Path target, int pages) throws IOException {
+        Random random = new Random(pages);
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                    stream.beginText();
+                    stream.setFont(PDType1Font.TIMES_ROMAN, 11);
+                    stream.setLeading(14);
+                    stream.newLineAtOffset(56, 780);
+                    for (int line = 0; line < 50; line++) {
+                        stream.showText(sentence(random, 12));
+                        stream.newLine();
+                    }
+                    stream.endText();
+                    // Some vector content, as in scanned or illustrated pages.
+                    for (int shape = 0; shape < 20; shape++) {
+                        stream.addRect(56 + random.nextInt(400), 60 + random.nextInt(60), 20, 20);
+                    }
+                    stream.stroke();
+                }
+            }
+            document.save(target.toFile());
+        }
+        return target;
+    }
+
+    /**
+     * Write an EPUB with {@code chapters} XHTML chapters of roughly 20 KB
+     * each to {@code target}.
+     */
+    public static Path writeEpub(Path target, int chapters) throws IOException {
+        Random random = new Random(chapters);
+        Book book = new Book();
+        book.getMetadata().addTitle(title(random));
+        for (int c = 0; c < chapters; c++) {
+            StringBuilder html = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                    .append("<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Chapter ")
+                    .append(c + 1).append("</title></head><body><h1>Chapter ").append(c + 1).append("</h1>");
+            while (html.length() < 20_000) {
+                html.append("<p>").append(sentence(random, 40)).append("</p>");
+            }
+            html.append("</body></html>");
+            book.addSection("Chapter " + (c + 1),
+                    new Resource(html.toString().getBytes(StandardCharsets.UTF_8), "chapter-" + c + ".xhtml"));
+        }
+        try (OutputStream out = Files.newOutputStream(target)) {
+            new EpubWriter().write(book, out);
+        }
+        return target;
+    }
+
+    private static String title(Random random) {
+        return capitalise(WORDS[random.nextInt(WORDS.length)]) + " of the " + WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return capitalise(sentence.toString()) + ".";
+    }
+
+    private static String capitalise(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,109 @@
+package transparent.repository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import transparent.bench.BenchmarkFiles;
+import transparent.bench.SyntheticData;
+import transparent.model.Content;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persist, load, lookup and database merge costs of
+ * {@link FileBackedLibraryRepository} for catalogues of 1k, 100k and 1M
+ * entries.  Each trial works on its own store file in a temporary directory,
+ * never on the user's library.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RepositoryBenchmark {
+    private static final long SEED = 42L;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Path directory;
+    private Path store;
+    private FileBackedLibraryRepository repository;
+    private List<Content> databaseRows;
+    private List<Content> editedRows;
+    private Content edit;
+    private int lookupCursor;
+    private boolean useEdited;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("transparent-bench");
+        store = directory.resolve("library-store.bin");
+        databaseRows = SyntheticData.contents(size, SEED);
+        // One row in a hundred changes between refreshes.
+        editedRows = SyntheticData.withEdits(databaseRows, 100);
+        repository = new FileBackedLibraryRepository(store);
+        repository.mergeFromDatabase(databaseRows);
+        edit = new Content(databaseRows.get(size / 2));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    /** A single metadata edit, which rewrites the whole store file. */
+    @Benchmark
+    public Content persistAfterEdit() {
+        edit.setDescription(edit.getDescription().length() > 200 ? "" : edit.getDescription() + " x");
+        repository.updateContentMetadata(edit);
+        return edit;
+    }
+
+    /** Application start: deserialise the store and rebuild the indexes. */
+    @Benchmark
+    public FileBackedLibraryRepository load() {
+        return new FileBackedLibraryRepository(store);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Optional<Content> lookupById() {
+        lookupCursor = (lookupCursor + 7919) % size;
+        return repository.findContent(lookupCursor + 1);
+    }
+
+    /** Refresh from the database when nothing changed: compare only, no write. */
+    @Benchmark
+    public List<Content> mergeUnchanged() {
+        return repository.mergeFromDatabase(databaseRows);
+    }
+
+    /** Refresh from the database with 1% of rows edited: compare and write. */
+    @Benchmark
+    public List<Content> mergeWithEdits() {
+        useEdited = !useEdited;
+        return repository.mergeFromDatabase(useEdited ? editedRows : databaseRows);
+    }
+
+    @Benchmark
+    public List<Content> snapshotAll() {
+        return repository.getAllContents();
+    }
+}
@@ -0,0 +1,122 @@
+package transparent.repository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import transparent.bench.BenchmarkFiles;
+import transparent.bench.SyntheticData;
+import transparent.model.Content;
+import transparent.model.HistoryRecord;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link FileBackedLibraryRepository} under concurrent use: readers looking
+ * up catalogue entries and favourites while other threads save reading
+ * positions, each of which rewrites the store file.  Reads should not slow
+ * down behind the writes.
+ *
+ * <p>Doubles as a stress test: each writer saves positions for a user of its
+ * own, and at the end of the trial the last position of every writer must be
+ * the one stored, or the trial fails.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RepositoryContentionBenchmark {
+    private static final long SEED = 42L;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Path directory;
+    private FileBackedLibraryRepository repository;
+    private final AtomicInteger nextWriter = new AtomicInteger();
+
+    /** One history writer, saving positions for its own user in the same book. */
+    @State(Scope.Thread)
+    public static class Writer {
+        private FileBackedLibraryRepository repository;
+        private int userId;
+        private int contentId;
+        private int page;
+
+        @Setup(Level.Trial)
+        public void setUp(RepositoryContentionBenchmark benchmark) {
+            repository = benchmark.repository;
+            userId = benchmark.nextWriter.incrementAndGet();
+            contentId = benchmark.size / 2;
+        }
+
+        @TearDown(Level.Trial)
+        public void verify() {
+            Optional<HistoryRecord> stored = repository.findHistory(userId, contentId);
+            if (page > 0 && (stored.isEmpty() || stored.get().getPageNumber() != page)) {
+                throw new IllegalStateException("Lost update for user " + userId + ": saved page " + page
+                        + ", stored " + stored.map(HistoryRecord::getPageNumber).orElse(null));
+            }
+        }
+    }
+
+    /** One reader walking the catalogue. */
+    @State(Scope.Thread)
+    public static class Reader {
+        private int cursor;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("transparent-bench");
+        repository = new FileBackedLibraryRepository(directory.resolve("library-store.bin"));
+        List<Content> rows = SyntheticData.contents(size, SEED);
+        repository.mergeFromDatabase(rows);
+        for (int i = 1; i <= size; i += 10) {
+            repository.setFavouriteState(1, i, true, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    @Group("readWhileSaving")
+    @GroupThreads(2)
+    public int saveHistory(Writer writer) {
+        writer.page++;
+        repository.saveHistory(new HistoryRecord(0, writer.userId, writer.contentId, LocalDateTime.now(), writer.page));
+        return writer.page;
+    }
+
+    @Benchmark
+    @Group("readWhileSaving")
+    @GroupThreads(6)
+    public boolean lookup(Reader reader) {
+        reader.cursor = (reader.cursor + 7919) % size;
+        Optional<Content> content = repository.findContent(reader.cursor + 1);
+        return content.isPresent() && repository.isFavourite(1, reader.cursor + 1);
+    }
+}
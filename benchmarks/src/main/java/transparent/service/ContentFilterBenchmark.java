@@ -0,0 +1,67 @@
+package transparent.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import transparent.bench.SyntheticData;
+import transparent.model.Content;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the library filters ({@link ContentService#applyFilters}) that run
+ * on every keystroke in the search box, for catalogues of 1k, 100k and 1M
+ * entries.  The forked JVM gets its own home directory so the service does
+ * not open the user's library store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Duser.home=target/bench-home"})
+public class ContentFilterBenchmark {
+    private static final long SEED = 42L;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"keyword", "category", "tags", "combined"})
+    public String filter;
+
+    private ContentService service;
+    private List<Content> contents;
+    private ContentQuery query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new ContentService();
+        contents = SyntheticData.contents(size, SEED);
+        query = new ContentQuery();
+        switch (filter) {
+            case "keyword" -> query.setKeyword(SyntheticData.keyword(SEED));
+            case "category" -> query.setCategory("History");
+            case "tags" -> query.setTags(List.of("classic", "illustrated"));
+            default -> {
+                query.setKeyword(SyntheticData.keyword(SEED));
+                query.setCategory("Novel");
+                query.setTags(List.of("to-read"));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Content> applyFilters() {
+        return service.applyFilters(contents, query);
+    }
+}
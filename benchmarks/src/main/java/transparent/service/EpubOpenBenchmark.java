@@ -0,0 +1,94 @@
+package transparent.service;
+
+import nl.siegmann.epublib.domain.Book;
+import nl.siegmann.epublib.domain.Resource;
+import nl.siegmann.epublib.epub.EpubReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import transparent.bench.BenchmarkFiles;
+import transparent.bench.SyntheticData;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+
+/**
+ * EPUB open time: a full epublib parse that decodes every chapter, as the
+ * reader used to do, against the {@link EpubPackage} path used for metadata,
+ * covers and text extraction, and the reader's {@link EpubBook} reopening a
+ * book whose spine is in the {@link DocumentIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EpubOpenBenchmark {
+    @Param({"10", "100"})
+    public int chapters;
+
+    private Path directory;
+    private Path epub;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("transparent-bench");
+        epub = SyntheticData.writeEpub(directory.resolve("sample.epub"), chapters);
+        // The first open stores the spine; indexedOpen measures every later one.
+        EpubBook.open(epub).close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    /** Parse the book and decode every spine chapter. */
+    @Benchmark
+    public List<String> epublibOpen() throws IOException {
+        List<String> pages = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(epub)) {
+            Book book = new EpubReader().readEpub(in);
+            for (Resource res : book.getSpine().getSpineResources()) {
+                pages.add(new String(res.getData(), res.getInputEncoding() != null
+                        ? res.getInputEncoding() : StandardCharsets.UTF_8));
+            }
+        }
+        return pages;
+    }
+
+    /** Package metadata and spine only, as read for the catalogue. */
+    @Benchmark
+    public List<ZipEntry> packageOpen() throws IOException {
+        try (EpubPackage epubPackage = EpubPackage.open(epub)) {
+            epubPackage.title();
+            return epubPackage.spine();
+        }
+    }
+
+    /** What the reader does on open: spine from the index, then the first chapter. */
+    @Benchmark
+    public String indexedOpen() throws IOException {
+        try (EpubBook book = EpubBook.open(epub)) {
+            return book.readChapter(0);
+        }
+    }
+}
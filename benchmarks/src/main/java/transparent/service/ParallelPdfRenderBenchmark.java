@@ -0,0 +1,65 @@
+package transparent.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import transparent.bench.BenchmarkFiles;
+import transparent.bench.SyntheticData;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-rendering a whole document with {@link ParallelPdfRenderer} at the
+ * reader's 150 DPI, with one to eight document handles.  One handle is the
+ * old sequential path; the rest should scale with the core count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class ParallelPdfRenderBenchmark {
+    private static final float READER_DPI = 150f;
+    private static final int PAGES = 64;
+
+    @Param({"1", "2", "4", "8"})
+    public int handles;
+
+    private Path directory;
+    private ParallelPdfRenderer renderer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("transparent-bench");
+        Path pdf = SyntheticData.writePdf(directory.resolve("sample.pdf"), PAGES);
+        renderer = ParallelPdfRenderer.open(pdf, handles);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        renderer.close();
+        BenchmarkFiles.deleteRecursively(directory);
+    }
+
+    /** Render every page; only the widths are kept so the heap stays small. */
+    @Benchmark
+    public List<Integer> renderAll() {
+        return renderer.submitAll((pdfRenderer, document, index) ->
+                pdfRenderer.renderImageWithDPI(index, READER_DPI).getWidth()).join();
+    }
+}
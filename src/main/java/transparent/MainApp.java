@@ -5,6 +5,9 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import transparent.metrics.FlightRecorderService;
+import transparent.metrics.Metrics;
+import transparent.service.ProgressTracker;
 import transparent.ui.ThemeManager;
 
 /**
@@ -13,6 +16,8 @@ import transparent.ui.ThemeManager;
 public class MainApp extends Application {
     @Override
     public void start(Stage stage) throws Exception {
+        Metrics.getInstance().start();
+        FlightRecorderService.getInstance().start();
         Parent root = FXMLLoader.load(getClass().getResource("/login.fxml"));
         stage.setTitle("Transparent - Login");
         Scene scene = new Scene(root);
@@ -21,6 +26,12 @@ public class MainApp extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        // Reading positions are written lazily; make sure the last ones reach storage.
+        ProgressTracker.getInstance().flushAll();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
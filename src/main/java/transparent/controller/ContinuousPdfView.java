@@ -0,0 +1,241 @@
+package transparent.controller;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.scene.Node;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.StackPane;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import transparent.service.DocumentIndex;
+import transparent.service.ParallelPdfRenderer;
+import transparent.ui.PageRaster;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Continuous vertical scrolling through a PDF.  Pages live in a virtualised
+ * {@link ListView}: every page has a placeholder sized from its page box, but
+ * only the few cells intersecting the viewport exist, and only they render.
+ * A cell scrolled away gives its raster back to a small pool, so memory stays
+ * bounded by the window size rather than the page count.
+ *
+ * <p>Used on the JavaFX application thread only.  Rendering runs on the
+ * shared render pool of {@link ParallelPdfRenderer}.</p>
+ */
+final class ContinuousPdfView {
+    /** Gap between pages and the horizontal margin, in pixels. */
+    private static final double PAGE_GAP = 12;
+    private static final double MARGIN = 40;
+    private static final int MAX_SPARE_RASTERS = 6;
+
+    /** Renders one page into {@code reuse} when it fits, or a new raster. */
+    @FunctionalInterface
+    interface PageRenderer {
+        PageRaster render(PageRaster reuse, PDFRenderer renderer, PDDocument document, int pageIndex)
+                throws IOException;
+    }
+
+    /** Draws over a freshly rendered page before it is shown, e.g. find marks. */
+    @FunctionalInterface
+    interface PageDecorator {
+        void decorate(int pageIndex, PageRaster raster);
+    }
+
+    private final PageRenderer pageRenderer;
+    private final PageDecorator decorator;
+    private final IntConsumer visiblePageListener;
+    private final ListView<Integer> list = new ListView<>();
+    private final Deque<PageRaster> spareRasters = new ArrayDeque<>();
+    private volatile ParallelPdfRenderer pdf;
+    /** Bumped when visible pages must render again; resizing only re-lays them out. */
+    private int generation;
+    /** Width and height of every page in points, rotation applied. */
+    private float[] widths = new float[0];
+    private float[] heights = new float[0];
+    private int visiblePage = -1;
+
+    ContinuousPdfView(PageRenderer pageRenderer, PageDecorator decorator, IntConsumer visiblePageListener) {
+        this.pageRenderer = pageRenderer;
+        this.decorator = decorator;
+        this.visiblePageListener = visiblePageListener;
+        list.getStyleClass().add("pdf-page-list");
+        list.setFocusTraversable(false);
+        list.setCellFactory(view -> new PageCell());
+        list.widthProperty().addListener((obs, oldWidth, newWidth) -> list.refresh());
+        list.skinProperty().addListener((obs, oldSkin, skin) -> {
+            VirtualFlow<?> flow = (VirtualFlow<?>) list.lookup(".virtual-flow");
+            if (flow != null) {
+                flow.positionProperty().addListener((o, oldPosition, position) -> updateVisiblePage(flow));
+            }
+        });
+    }
+
+    Node getNode() {
+        return list;
+    }
+
+    /**
+     * Show {@code renderer}'s document.  Page sizes come from its
+     * {@code layout} so the scroll bar is right from the start; pages render
+     * as they come into view.
+     */
+    void open(ParallelPdfRenderer renderer, DocumentIndex.Layout layout) {
+        if (renderer == pdf) {
+            return;
+        }
+        close();
+        int count = renderer.getPageCount();
+        float[] pageWidths = new float[count];
+        float[] pageHeights = new float[count];
+        for (int i = 0; i < count; i++) {
+            pageWidths[i] = layout.getPageWidth(i);
+            pageHeights[i] = layout.getPageHeight(i);
+        }
+        pdf = renderer;
+        widths = pageWidths;
+        heights = pageHeights;
+        visiblePage = -1;
+        list.setItems(FXCollections.observableList(IntStream.range(0, count).boxed().toList()));
+    }
+
+    /** Drop the document and every raster. */
+    void close() {
+        pdf = null;
+        list.setItems(FXCollections.observableArrayList());
+        widths = new float[0];
+        heights = new float[0];
+        spareRasters.clear();
+    }
+
+    void scrollTo(int pageIndex) {
+        if (pageIndex >= 0 && pageIndex < list.getItems().size() && pageIndex != visiblePage) {
+            visiblePage = pageIndex;
+            list.scrollTo(pageIndex);
+        }
+    }
+
+    /** Render the visible pages again, e.g. after the find marks changed. */
+    void refresh() {
+        generation++;
+        list.refresh();
+    }
+
+    private void updateVisiblePage(VirtualFlow<?> flow) {
+        if (flow.getFirstVisibleCell() == null) {
+            return;
+        }
+        int first = flow.getFirstVisibleCell().getIndex();
+        // The page filling most of the top of the viewport counts as the current one.
+        if (flow.getLastVisibleCell() != null && first + 1 <= flow.getLastVisibleCell().getIndex()
+                && flow.getFirstVisibleCell().getLayoutY() + flow.getFirstVisibleCell().getHeight() / 2 < 0) {
+            first++;
+        }
+        if (first != visiblePage && first >= 0) {
+            visiblePage = first;
+            visiblePageListener.accept(first);
+        }
+    }
+
+    private double displayWidth() {
+        return Math.max(200, list.getWidth() - MARGIN);
+    }
+
+    private void recycle(PageRaster raster) {
+        if (raster != null && spareRasters.size() < MAX_SPARE_RASTERS) {
+            spareRasters.addFirst(raster);
+        }
+    }
+
+    /**
+     * One visible page.  The cell keeps the raster it shows; a page is
+     * rendered into a spare raster off the FX thread and swapped in when
+     * done, so the visible pixels are never drawn over mid-frame.
+     */
+    private final class PageCell extends ListCell<Integer> {
+        private final ImageView view = new ImageView();
+        private final StackPane page = new StackPane(view);
+        private PageRaster raster;
+        private int shownPage = -1;
+        /** Page and generation this cell wants; other renders are discarded. */
+        private volatile int wantedPage = -1;
+        private volatile int wantedGeneration;
+
+        PageCell() {
+            view.setPreserveRatio(true);
+            page.setStyle("-fx-background-color: white;");
+            setStyle("-fx-background-color: transparent; -fx-padding: " + PAGE_GAP / 2 + " 0 " + PAGE_GAP / 2 + " 0;");
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(Integer index, boolean empty) {
+            super.updateItem(index, empty);
+            if (empty || index == null || pdf == null || index >= widths.length) {
+                wantedPage = -1;
+                shownPage = -1;
+                view.setImage(null);
+                recycle(raster);
+                raster = null;
+                setGraphic(null);
+                return;
+            }
+            double width = displayWidth();
+            double height = width * heights[index] / widths[index];
+            page.setMinSize(width, height);
+            page.setPrefSize(width, height);
+            page.setMaxSize(width, height);
+            view.setFitWidth(width);
+            setGraphic(page);
+            if (index == wantedPage && wantedGeneration == generation) {
+                return;
+            }
+            if (index != shownPage) {
+                // Leave an empty placeholder rather than another page's pixels.
+                view.setImage(null);
+            }
+            wantedPage = index;
+            wantedGeneration = generation;
+            render(index, generation);
+        }
+
+        private void render(int index, int renderGeneration) {
+            ParallelPdfRenderer renderer = pdf;
+            PageRaster spare = spareRasters.pollFirst();
+            renderer.submit(index, (pdfRenderer, document, pageIndex) ->
+                    // Skip pages scrolled past before the job started.
+                    isWanted(pageIndex, renderGeneration, renderer)
+                            ? pageRenderer.render(spare, pdfRenderer, document, pageIndex)
+                            : null
+            ).whenComplete((rendered, failure) -> Platform.runLater(() -> {
+                if (rendered == null) {
+                    recycle(spare);
+                    return;
+                }
+                if (!isWanted(index, renderGeneration, renderer)) {
+                    recycle(rendered);
+                    return;
+                }
+                decorator.decorate(index, rendered);
+                rendered.publish();
+                if (raster != null && raster != rendered) {
+                    recycle(raster);
+                }
+                raster = rendered;
+                shownPage = index;
+                view.setImage(rendered.getImage());
+            }));
+        }
+
+        private boolean isWanted(int index, int renderGeneration, ParallelPdfRenderer renderer) {
+            return wantedPage == index && wantedGeneration == renderGeneration && pdf == renderer;
+        }
+    }
+}
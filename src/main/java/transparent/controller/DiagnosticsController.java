@@ -0,0 +1,154 @@
+package transparent.controller;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.MenuButton;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+import transparent.metrics.FlightRecorderService;
+import transparent.metrics.HistogramSnapshot;
+import transparent.metrics.LatencyHistogram;
+import transparent.metrics.Metrics;
+import transparent.ui.ThemeManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Controller for the diagnostics view.  Shows every timer and counter of
+ * {@link Metrics}, refreshed once a second while the window is open, and
+ * saves the continuous flight recording on demand.
+ */
+public class DiagnosticsController {
+    @FXML private TableView<HistogramSnapshot> timerTable;
+    @FXML private TableColumn<HistogramSnapshot, String> colTimer;
+    @FXML private TableColumn<HistogramSnapshot, Number> colCount;
+    @FXML private TableColumn<HistogramSnapshot, String> colMean;
+    @FXML private TableColumn<HistogramSnapshot, String> colP50;
+    @FXML private TableColumn<HistogramSnapshot, String> colP90;
+    @FXML private TableColumn<HistogramSnapshot, String> colP99;
+    @FXML private TableColumn<HistogramSnapshot, String> colP999;
+    @FXML private TableColumn<HistogramSnapshot, String> colMax;
+    @FXML private TableView<Map.Entry<String, Long>> counterTable;
+    @FXML private TableColumn<Map.Entry<String, Long>, String> colCounter;
+    @FXML private TableColumn<Map.Entry<String, Long>, Number> colValue;
+    @FXML private Button resetButton;
+    @FXML private Button copyButton;
+    @FXML private Button closeButton;
+    @FXML private MenuButton recordingMenu;
+    @FXML private MenuItem dumpRecordingItem;
+    @FXML private Label statusLabel;
+
+    private final Metrics metrics = Metrics.getInstance();
+    private final Timeline refresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> refresh()));
+
+    @FXML
+    private void initialize() {
+        colTimer.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getName()));
+        colCount.setCellValueFactory(data -> new SimpleLongProperty(data.getValue().getCount()));
+        bindDuration(colMean, HistogramSnapshot::getMean);
+        bindDuration(colP50, HistogramSnapshot::getP50);
+        bindDuration(colP90, HistogramSnapshot::getP90);
+        bindDuration(colP99, HistogramSnapshot::getP99);
+        bindDuration(colP999, HistogramSnapshot::getP999);
+        bindDuration(colMax, HistogramSnapshot::getMax);
+        colCounter.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getKey()));
+        colValue.setCellValueFactory(data -> new SimpleLongProperty(data.getValue().getValue()));
+        timerTable.setPlaceholder(new Label("Nothing timed yet."));
+        counterTable.setPlaceholder(new Label("Nothing counted yet."));
+
+        resetButton.setOnAction(e -> {
+            metrics.reset();
+            refresh();
+        });
+        copyButton.setOnAction(e -> {
+            ClipboardContent report = new ClipboardContent();
+            report.putString(metrics.report());
+            Clipboard.getSystemClipboard().setContent(report);
+            statusLabel.setText("Report copied to the clipboard");
+        });
+        closeButton.setOnAction(e -> ((Stage) closeButton.getScene().getWindow()).close());
+        recordingMenu.setDisable(!FlightRecorderService.getInstance().isRecording());
+        dumpRecordingItem.setOnAction(e -> dumpRecording());
+
+        refresh();
+        refresh.setCycleCount(Animation.INDEFINITE);
+        refresh.play();
+        Platform.runLater(() -> {
+            ThemeManager.getInstance().register(timerTable.getScene());
+            timerTable.getScene().getWindow().setOnHidden(e -> refresh.stop());
+        });
+    }
+
+    private void dumpRecording() {
+        FlightRecorderService recorder = FlightRecorderService.getInstance();
+        Path suggested = recorder.defaultDumpFile();
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Save flight recording");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Flight recordings", "*.jfr"));
+        chooser.setInitialFileName(suggested.getFileName().toString());
+        File directory = suggested.getParent().toFile();
+        if (directory.isDirectory() || directory.mkdirs()) {
+            chooser.setInitialDirectory(directory);
+        }
+        File target = chooser.showSaveDialog(timerTable.getScene().getWindow());
+        if (target == null) {
+            return;
+        }
+        // A recording can be tens of megabytes; write it off the FX thread.
+        Task<Path> task = new Task<>() {
+            @Override
+            protected Path call() throws IOException {
+                return recorder.dump(target.toPath());
+            }
+        };
+        task.setOnSucceeded(e -> {
+            recordingMenu.setDisable(!recorder.isRecording());
+            statusLabel.setText("Recording saved to " + task.getValue());
+        });
+        task.setOnFailed(e -> {
+            recordingMenu.setDisable(!recorder.isRecording());
+            statusLabel.setText("Unable to save recording: " + task.getException().getMessage());
+        });
+        recordingMenu.setDisable(true);
+        statusLabel.setText("Saving recording...");
+        Thread thread = new Thread(task, "transparent-recording-dump");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void bindDuration(TableColumn<HistogramSnapshot, String> column, ToLongFunction<HistogramSnapshot> value) {
+        column.setCellValueFactory(data ->
+                new SimpleStringProperty(LatencyHistogram.format(value.applyAsLong(data.getValue()))));
+    }
+
+    private void refresh() {
+        HistogramSnapshot selectedTimer = timerTable.getSelectionModel().getSelectedItem();
+        List<HistogramSnapshot> timers = metrics.timerSnapshots();
+        timerTable.setItems(FXCollections.observableArrayList(timers));
+        if (selectedTimer != null) {
+            timers.stream().filter(timer -> timer.getName().equals(selectedTimer.getName())).findFirst()
+                    .ifPresent(timer -> timerTable.getSelectionModel().select(timer));
+        }
+        counterTable.setItems(FXCollections.observableArrayList(metrics.counterValues().entrySet()));
+    }
+}
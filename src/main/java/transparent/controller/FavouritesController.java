@@ -3,24 +3,35 @@ package transparent.controller;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
 import transparent.model.Content;
 import transparent.model.Favourite;
+import transparent.model.User;
+import transparent.repository.LibraryChange;
 import transparent.service.ContentService;
 import transparent.service.FavouriteService;
 import transparent.ui.ThemeManager;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controller for the favourites view.  Displays the list of content that
- * the current user has marked as favourite.
+ * the current user has marked as favourite, kept up to date from library
+ * changes while the window is showing.
  */
 public class FavouritesController {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm");
@@ -30,17 +41,24 @@ public class FavouritesController {
     @FXML private TableColumn<Favourite, String> colAdded;
     @FXML private Button backButton;
 
+    private static final Comparator<Favourite> NEWEST_FIRST = Comparator.comparing(
+            Favourite::getAddedDate, Comparator.nullsLast(Comparator.reverseOrder()));
+
     private final FavouriteService favouriteService = new FavouriteService();
     private final ContentService contentService = new ContentService();
+    private final LibraryChangeFeed libraryChanges = new LibraryChangeFeed(this::applyChanges);
 
     @FXML
     private void initialize() {
-        colTitle.setCellValueFactory(data -> new SimpleStringProperty(resolveTitle(data.getValue().getContentID())));
+        colTitle.setCellValueFactory(data -> new SimpleStringProperty(resolveTitle(data.getValue())));
         colAdded.setCellValueFactory(data -> new SimpleStringProperty(formatTimestamp(data.getValue())));
         favouritesTable.setPlaceholder(new Label("No favourites yet."));
         loadFavourites();
         backButton.setOnAction(e -> ((Stage) backButton.getScene().getWindow()).close());
-        Platform.runLater(() -> ThemeManager.getInstance().register(favouritesTable.getScene()));
+        Platform.runLater(() -> {
+            ThemeManager.getInstance().register(favouritesTable.getScene());
+            favouritesTable.getScene().getWindow().addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> libraryChanges.close());
+        });
     }
 
     private void loadFavourites() {
@@ -49,14 +67,92 @@ public class FavouritesController {
             return;
         }
         int userId = CurrentUser.get().getUserID();
-        List<Favourite> list = favouriteService.getFavourites(userId);
+        List<Favourite> list = favouriteService.getFavouritesWithContent(userId);
         favouritesTable.setItems(FXCollections.observableArrayList(list));
     }
 
-    private String resolveTitle(int contentId) {
-        return contentService.findContent(contentId)
-                .map(Content::getTitle)
-                .orElse("Content #" + contentId);
+    /**
+     * Add and remove the rows of favourites that changed, and re-key and
+     * retitle rows whose content changed.  The batch is folded by content
+     * first, so the rows are walked once however many changes it holds.
+     */
+    private void applyChanges(List<LibraryChange> changes) {
+        User user = CurrentUser.get();
+        if (user == null) {
+            return;
+        }
+        Map<Integer, Content> upserted = new HashMap<>();
+        Map<Integer, Integer> remapped = new HashMap<>();
+        Map<Integer, Optional<Favourite>> toggled = new LinkedHashMap<>();
+        for (LibraryChange change : changes) {
+            switch (change.getKind()) {
+                case CONTENT_UPSERTED -> {
+                    upserted.put(change.getContentId(), change.getContent());
+                    if (change.getPreviousContentId() != change.getContentId()) {
+                        remapped.put(change.getPreviousContentId(), change.getContentId());
+                    }
+                }
+                case FAVOURITE_CHANGED -> {
+                    if (change.getUserId() == user.getUserID()) {
+                        toggled.put(change.getContentId(), change.getFavourite());
+                    }
+                }
+                case CONTENT_REMOVED, HISTORY_UPDATED -> {
+                    // A favourite outlives its file and keeps the title it had; history is not shown here.
+                }
+            }
+        }
+        if (upserted.isEmpty() && toggled.isEmpty()) {
+            return;
+        }
+        ObservableList<Favourite> items = favouritesTable.getItems();
+        List<Favourite> rows = new ArrayList<>(items.size() + toggled.size());
+        for (Favourite item : items) {
+            Favourite row = item;
+            Integer contentId = remapped.get(row.getContentID());
+            if (contentId != null) {
+                row = new Favourite(row);
+                row.setContentID(contentId);
+            }
+            Content content = upserted.get(row.getContentID());
+            if (content != null) {
+                row = describe(row == item ? new Favourite(item) : row, content);
+            }
+            if (!toggled.containsKey(row.getContentID())) {
+                rows.add(row);
+            }
+        }
+        for (Optional<Favourite> stored : toggled.values()) {
+            stored.ifPresent(changed -> {
+                Favourite favourite = new Favourite(changed);
+                contentService.findContent(favourite.getContentID()).ifPresent(content -> describe(favourite, content));
+                rows.add(favourite);
+            });
+        }
+        if (toggled.isEmpty()) {
+            // Same rows in the same order: replace only those that changed.
+            for (int i = 0; i < rows.size(); i++) {
+                if (items.get(i) != rows.get(i)) {
+                    items.set(i, rows.get(i));
+                }
+            }
+        } else {
+            rows.sort(NEWEST_FIRST);
+            items.setAll(rows);
+        }
+    }
+
+    private static Favourite describe(Favourite favourite, Content content) {
+        favourite.setContentTitle(content.getTitle());
+        favourite.setContentType(content.getFileType());
+        favourite.setContentAuthor(content.getAuthor());
+        return favourite;
+    }
+
+    private String resolveTitle(Favourite favourite) {
+        return favourite.getContentTitle() != null
+                ? favourite.getContentTitle()
+                : "Content #" + favourite.getContentID();
     }
 
     private String formatTimestamp(Favourite favourite) {
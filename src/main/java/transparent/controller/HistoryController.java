@@ -4,25 +4,36 @@ import javafx.application.Platform;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
 import transparent.model.Content;
 import transparent.model.HistoryRecord;
+import transparent.model.User;
+import transparent.repository.LibraryChange;
 import transparent.service.ContentService;
 import transparent.service.HistoryService;
 import transparent.ui.ThemeManager;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controller for the history view.  Displays the list of recently opened
  * content and allows the user to close the window.  Reading history is
- * retrieved for the currently logged in user.
+ * retrieved for the currently logged in user when the window opens and then
+ * kept up to date from library changes while it is showing.
  */
 public class HistoryController {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm");
@@ -33,18 +44,25 @@ public class HistoryController {
     @FXML private TableColumn<HistoryRecord, Integer> colPage;
     @FXML private Button backButton;
 
+    private static final Comparator<HistoryRecord> MOST_RECENT_FIRST = Comparator.comparing(
+            HistoryRecord::getLastReadTime, Comparator.nullsLast(Comparator.reverseOrder()));
+
     private final HistoryService historyService = new HistoryService();
     private final ContentService contentService = new ContentService();
+    private final LibraryChangeFeed libraryChanges = new LibraryChangeFeed(this::applyChanges);
 
     @FXML
     private void initialize() {
-        colTitle.setCellValueFactory(data -> new SimpleStringProperty(resolveTitle(data.getValue().getContentID())));
+        colTitle.setCellValueFactory(data -> new SimpleStringProperty(resolveTitle(data.getValue())));
         colLastRead.setCellValueFactory(data -> new SimpleStringProperty(formatTimestamp(data.getValue())));
         colPage.setCellValueFactory(data -> new SimpleIntegerProperty(data.getValue().getPageNumber()).asObject());
         historyTable.setPlaceholder(new Label("No reading history available."));
         loadHistory();
         backButton.setOnAction(e -> ((Stage) backButton.getScene().getWindow()).close());
-        Platform.runLater(() -> ThemeManager.getInstance().register(historyTable.getScene()));
+        Platform.runLater(() -> {
+            ThemeManager.getInstance().register(historyTable.getScene());
+            historyTable.getScene().getWindow().addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> libraryChanges.close());
+        });
     }
 
     private void loadHistory() {
@@ -53,14 +71,95 @@ public class HistoryController {
             return;
         }
         int userId = CurrentUser.get().getUserID();
-        List<HistoryRecord> list = historyService.getHistory(userId);
+        List<HistoryRecord> list = historyService.getHistoryWithContent(userId);
         historyTable.setItems(FXCollections.observableArrayList(list));
     }
 
-    private String resolveTitle(int contentId) {
-        return contentService.findContent(contentId)
-                .map(Content::getTitle)
-                .orElse("Content #" + contentId);
+    /**
+     * Move rows whose position was saved to their place by last read time,
+     * and re-key and retitle rows whose content changed.  The batch is folded
+     * by content first, so the rows are walked once however many changes it
+     * holds, e.g. after an import or a sync.
+     */
+    private void applyChanges(List<LibraryChange> changes) {
+        User user = CurrentUser.get();
+        if (user == null) {
+            return;
+        }
+        Map<Integer, Content> upserted = new HashMap<>();
+        Map<Integer, Integer> remapped = new HashMap<>();
+        Map<Integer, Optional<HistoryRecord>> saved = new LinkedHashMap<>();
+        for (LibraryChange change : changes) {
+            if (change.getKind() == LibraryChange.Kind.CONTENT_UPSERTED) {
+                upserted.put(change.getContentId(), change.getContent());
+                if (change.getPreviousContentId() != change.getContentId()) {
+                    remapped.put(change.getPreviousContentId(), change.getContentId());
+                }
+            } else if (change.getKind() == LibraryChange.Kind.HISTORY_UPDATED && change.getUserId() == user.getUserID()) {
+                saved.put(change.getContentId(), change.getHistory());
+            }
+        }
+        if (upserted.isEmpty() && saved.isEmpty()) {
+            return;
+        }
+        ObservableList<HistoryRecord> items = historyTable.getItems();
+        List<HistoryRecord> rows = new ArrayList<>(items.size() + saved.size());
+        Map<Integer, HistoryRecord> previous = new HashMap<>();
+        for (HistoryRecord item : items) {
+            HistoryRecord row = item;
+            Integer contentId = remapped.get(row.getContentID());
+            if (contentId != null) {
+                row = new HistoryRecord(row);
+                row.setContentID(contentId);
+            }
+            Content content = upserted.get(row.getContentID());
+            if (content != null) {
+                row = describe(row == item ? new HistoryRecord(item) : row, content);
+            }
+            if (saved.containsKey(row.getContentID())) {
+                previous.put(row.getContentID(), row);
+            } else {
+                rows.add(row);
+            }
+        }
+        for (Optional<HistoryRecord> stored : saved.values()) {
+            stored.ifPresent(changed -> {
+                HistoryRecord record = new HistoryRecord(changed);
+                HistoryRecord before = previous.get(record.getContentID());
+                if (before != null && before.getContentTitle() != null) {
+                    record.setContentTitle(before.getContentTitle());
+                    record.setContentType(before.getContentType());
+                    record.setContentAuthor(before.getContentAuthor());
+                } else {
+                    contentService.findContent(record.getContentID()).ifPresent(content -> describe(record, content));
+                }
+                rows.add(record);
+            });
+        }
+        if (saved.isEmpty()) {
+            // Same rows in the same order: replace only those that changed.
+            for (int i = 0; i < rows.size(); i++) {
+                if (items.get(i) != rows.get(i)) {
+                    items.set(i, rows.get(i));
+                }
+            }
+        } else {
+            rows.sort(MOST_RECENT_FIRST);
+            items.setAll(rows);
+        }
+    }
+
+    private static HistoryRecord describe(HistoryRecord record, Content content) {
+        record.setContentTitle(content.getTitle());
+        record.setContentType(content.getFileType());
+        record.setContentAuthor(content.getAuthor());
+        return record;
+    }
+
+    private String resolveTitle(HistoryRecord record) {
+        return record.getContentTitle() != null
+                ? record.getContentTitle()
+                : "Content #" + record.getContentID();
     }
 
     private String formatTimestamp(HistoryRecord record) {
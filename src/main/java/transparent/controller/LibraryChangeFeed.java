@@ -0,0 +1,70 @@
+package transparent.controller;
+
+import javafx.application.Platform;
+import transparent.repository.LibraryChange;
+import transparent.service.ContentService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Library changes for one view, handed over on the JavaFX application
+ * thread.  Changes arrive from whichever thread wrote them; they are queued
+ * and delivered together on the next pass of the FX thread, so a burst of
+ * writes, e.g. an import or a sync, patches the view once.
+ */
+final class LibraryChangeFeed {
+    private final ContentService contentService = new ContentService();
+    private final Consumer<List<LibraryChange>> handler;
+    private final Consumer<List<LibraryChange>> listener = this::enqueue;
+    private final List<LibraryChange> pending = new ArrayList<>();
+    /** Whether a delivery is queued on the FX thread; guarded by {@code pending}. */
+    private boolean scheduled;
+    private volatile boolean closed;
+
+    /**
+     * Start listening.  {@code handler} is called on the FX thread until
+     * {@link #close()}.
+     */
+    LibraryChangeFeed(Consumer<List<LibraryChange>> handler) {
+        this.handler = handler;
+        contentService.addChangeListener(listener);
+    }
+
+    private void enqueue(List<LibraryChange> changes) {
+        synchronized (pending) {
+            pending.addAll(changes);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        Platform.runLater(this::flush);
+    }
+
+    /**
+     * Deliver the queued changes now, e.g. right after a write made on the FX
+     * thread so the view shows it before the next pass.  FX thread only.
+     */
+    void flush() {
+        List<LibraryChange> batch;
+        synchronized (pending) {
+            scheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = List.copyOf(pending);
+            pending.clear();
+        }
+        if (!closed) {
+            handler.accept(batch);
+        }
+    }
+
+    /** Stop listening; changes still queued are dropped. */
+    void close() {
+        closed = true;
+        contentService.removeChangeListener(listener);
+    }
+}
@@ -9,6 +9,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 import transparent.model.User;
+import transparent.service.SessionWarmUp;
 import transparent.service.UserService;
 import transparent.ui.ThemeManager;
 
@@ -39,13 +40,18 @@ public class LoginController {
             return;
         }
         CurrentUser.set(user);
+        // Library, favourites, positions and index load side by side while the window opens.
+        SessionWarmUp warmUp = SessionWarmUp.start(user.getUserID());
         try {
             Stage stage = (Stage) loginButton.getScene().getWindow();
-            Parent root = FXMLLoader.load(getClass().getResource("/main.fxml"));
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/main.fxml"));
+            Parent root = loader.load();
             stage.setTitle("Transparent - Library");
             Scene scene = new Scene(root);
             ThemeManager.getInstance().register(scene);
             stage.setScene(scene);
+            loader.<MainController>getController().populate(warmUp);
+            ReaderWindowPool.getInstance().warmUp(stage);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -3,6 +3,7 @@ package transparent.controller;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -10,28 +11,52 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Hyperlink;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableRow;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.control.Tooltip;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.layout.FlowPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
 import transparent.model.Content;
-import transparent.model.Favourite;
+import transparent.model.User;
+import transparent.repository.LibraryChange;
+import transparent.service.ActivityCache;
+import transparent.service.BulkImportService;
 import transparent.service.ContentQuery;
 import transparent.service.ContentService;
 import transparent.service.FavouriteService;
+import transparent.service.FingerprintService;
+import transparent.service.FullTextIndex;
+import transparent.service.LibraryWatchService;
+import transparent.service.OutboxReplayService;
+import transparent.service.SessionWarmUp;
+import transparent.service.ThumbnailService;
+import transparent.ui.ContentRow;
+import transparent.ui.CoverGrid;
 import transparent.ui.ThemeManager;
 import transparent.ui.ThemeManager.Theme;
 
 import java.io.IOException;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -42,6 +67,10 @@ import java.util.Set;
  * favourites.  Double clicking a row is intended to open the reader view.
  */
 public class MainController {
+    /** Up to this many rows are replaced one by one; larger changes swap the item list at once. */
+    private static final int PATCH_LIMIT = 64;
+    private static final String LOADING_LIBRARY = "Loading library...";
+
     @FXML private TextField searchField;
     @FXML private TextField tagField;
     @FXML private ChoiceBox<String> categoryChoice;
@@ -49,32 +78,48 @@ public class MainController {
     @FXML private Button searchButton;
     @FXML private Button clearFiltersButton;
     @FXML private Button openButton;
+    @FXML private Button importFolderButton;
+    @FXML private Button duplicatesButton;
     @FXML private Button readButton;
     @FXML private Button infoButton;
     @FXML private Button metadataButton;
     @FXML private Button toggleFavouriteButton;
     @FXML private Button historyButton;
     @FXML private Button favouritesButton;
-    @FXML private TableView<Content> contentTable;
-    @FXML private TableColumn<Content, Boolean> colFavourite;
-    @FXML private TableColumn<Content, String> colTitle;
-    @FXML private TableColumn<Content, String> colType;
-    @FXML private TableColumn<Content, Number> colSize;
-    @FXML private TableColumn<Content, String> colAdded;
-    @FXML private TableColumn<Content, String> colCategory;
-    @FXML private TableColumn<Content, String> colTags;
+    @FXML private Label statusLabel;
+    @FXML private ProgressBar importProgress;
+    @FXML private TableView<ContentRow> contentTable;
+    @FXML private TableColumn<ContentRow, Boolean> colFavourite;
+    @FXML private TableColumn<ContentRow, String> colTitle;
+    @FXML private TableColumn<ContentRow, String> colType;
+    @FXML private TableColumn<ContentRow, Number> colSize;
+    @FXML private TableColumn<ContentRow, String> colAdded;
+    @FXML private TableColumn<ContentRow, String> colCategory;
+    @FXML private TableColumn<ContentRow, String> colTags;
+    @FXML private ToggleButton coverViewToggle;
+    @FXML private CoverGrid coverGrid;
+    @FXML private VBox previewPane;
+    @FXML private ImageView previewCover;
+    @FXML private Label previewTitle;
+    @FXML private Label previewAuthor;
+    @FXML private Label previewDetails;
+    @FXML private FlowPane previewHits;
 
     private final ContentService contentService = new ContentService();
     private final FavouriteService favouriteService = new FavouriteService();
     private final ContentQuery currentQuery = new ContentQuery();
     private final Set<Integer> favouriteIds = new HashSet<>();
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    /** Whether the library fetched at login is shown; FX thread only. */
+    private boolean libraryShown;
+    private Map<Integer, ContentRow> rowCache = new HashMap<>();
+    private Map<Integer, FullTextIndex.Hit> textHits = Map.of();
+    private Task<List<FullTextIndex.Hit>> textSearch;
+    private final LibraryChangeFeed libraryChanges = new LibraryChangeFeed(this::applyChanges);
 
     @FXML
     private void initialize() {
-        // Bind table columns to content properties
-        colFavourite.setCellValueFactory(data -> new javafx.beans.property.SimpleBooleanProperty(
-                favouriteIds.contains(data.getValue().getContentID())));
+        // Bind table columns to the precomputed row values
+        colFavourite.setCellValueFactory(data -> data.getValue().favouriteProperty());
         colFavourite.setCellFactory(column -> new TableCell<>() {
             @Override
             protected void updateItem(Boolean item, boolean empty) {
@@ -88,70 +133,181 @@ public class MainController {
                 setStyle("-fx-alignment: CENTER;");
             }
         });
-        colTitle.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getTitle()));
-        colType.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(data.getValue().getFileType()));
-        colSize.setCellValueFactory(data -> new javafx.beans.property.SimpleLongProperty(data.getValue().getSizeBytes()));
+        colTitle.setCellValueFactory(data -> data.getValue().titleProperty());
+        colType.setCellValueFactory(data -> data.getValue().typeProperty());
+        colSize.setCellValueFactory(data -> data.getValue().sizeProperty());
         colSize.setCellFactory(column -> new TableCell<>() {
             @Override
             protected void updateItem(Number item, boolean empty) {
                 super.updateItem(item, empty);
-                if (empty || item == null) {
+                ContentRow row = getTableRow() == null ? null : getTableRow().getItem();
+                if (empty || item == null || row == null) {
                     setText(null);
                 } else {
-                    setText(formatSize(item.longValue()));
+                    setText(row.getSizeText());
                 }
             }
         });
-        colAdded.setCellValueFactory(data -> {
-            if (data.getValue().getDayAdded() == null) {
-                return new javafx.beans.property.SimpleStringProperty("-");
-            }
-            return new javafx.beans.property.SimpleStringProperty(DATE_FORMATTER.format(data.getValue().getDayAdded()));
-        });
-        colCategory.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(
-                data.getValue().getCategory() == null ? "" : data.getValue().getCategory()));
-        colTags.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(
-                String.join(", ", data.getValue().getTags())));
+        colAdded.setCellValueFactory(data -> data.getValue().addedProperty());
+        colCategory.setCellValueFactory(data -> data.getValue().categoryProperty());
+        colTags.setCellValueFactory(data -> data.getValue().tagsProperty());
         setupCategoryChoice();
         setupThemeChoice();
-        loadContents();
+        // The library itself arrives through populate(SessionWarmUp).
         // Bind buttons to actions
         searchButton.setOnAction(e -> doSearch());
         searchField.setOnAction(e -> doSearch());
         tagField.setOnAction(e -> doSearch());
         clearFiltersButton.setOnAction(e -> clearFilters());
         openButton.setOnAction(e -> addNewFile());
-        readButton.setOnAction(e -> Optional.ofNullable(contentTable.getSelectionModel().getSelectedItem()).ifPresent(this::openReader));
-        infoButton.setOnAction(e -> Optional.ofNullable(contentTable.getSelectionModel().getSelectedItem()).ifPresent(this::showInfo));
-        metadataButton.setOnAction(e -> Optional.ofNullable(contentTable.getSelectionModel().getSelectedItem()).ifPresent(this::editMetadata));
-        toggleFavouriteButton.setOnAction(e -> Optional.ofNullable(contentTable.getSelectionModel().getSelectedItem()).ifPresent(this::toggleFavourite));
+        importFolderButton.setOnAction(e -> importFolder());
+        duplicatesButton.setOnAction(e -> findDuplicates());
+        readButton.setOnAction(e -> selectedRow().map(ContentRow::getContent).ifPresent(this::openReader));
+        infoButton.setOnAction(e -> selectedRow().ifPresent(this::showInfo));
+        metadataButton.setOnAction(e -> selectedRow().map(ContentRow::getContent).ifPresent(this::editMetadata));
+        toggleFavouriteButton.setOnAction(e -> selectedRow().ifPresent(this::toggleFavourite));
         historyButton.setOnAction(e -> showHistory());
         favouritesButton.setOnAction(e -> showFavourites());
         // Double click row to open reader (not implemented)
         contentTable.setRowFactory(tv -> {
-            TableRow<Content> row = new TableRow<>();
+            TableRow<ContentRow> row = new TableRow<>();
             row.setOnMouseClicked(event -> {
                 if (event.getClickCount() == 2 && !row.isEmpty()) {
-                    openReader(row.getItem());
+                    openReader(row.getItem().getContent());
                 }
             });
             return row;
         });
-        contentTable.setPlaceholder(new Label("No content available. Add files to begin."));
+        contentTable.setPlaceholder(new Label(LOADING_LIBRARY));
         contentTable.getSelectionModel().selectedItemProperty().addListener((obs, oldSel, newSel) -> updateSelectionState(newSel));
-        Platform.runLater(() -> ThemeManager.getInstance().register(contentTable.getScene()));
+        setupCoverView();
+        // Files found or lost by the watcher reach the table as library changes.
+        LibraryWatchService.getInstance().start();
+        FullTextIndex.getInstance().start();
+        OutboxReplayService replayService = OutboxReplayService.getInstance();
+        replayService.addRemapListener((userIds, contentIds) -> {
+            User user = CurrentUser.get();
+            if (user == null) {
+                return;
+            }
+            int userId = userIds.getOrDefault(user.getUserID(), user.getUserID());
+            // Looked up here, on the replay thread, since a new user ID means loading its activity.
+            Set<Integer> favourites = favouriteService.getFavouriteIds(userId);
+            Platform.runLater(() -> {
+                user.setUserID(userId);
+                favouriteIds.clear();
+                favouriteIds.addAll(favourites);
+                filterContents();
+            });
+        });
+        replayService.start();
+        Platform.runLater(() -> {
+            ThemeManager.getInstance().register(contentTable.getScene());
+            // Hidden on purpose: the diagnostics window is for troubleshooting, not everyday use.
+            contentTable.getScene().getAccelerators().put(
+                    new KeyCodeCombination(KeyCode.D, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN),
+                    this::showDiagnostics);
+        });
+    }
+
+    /**
+     * Fill the table from a login warm-up as its parts arrive: the library
+     * first, then the favourite marks once the user's activity is loaded.
+     * The window is usable meanwhile; searches made before the library
+     * arrives are applied to it rather than loading it again.
+     */
+    public void populate(SessionWarmUp warmUp) {
+        statusLabel.setText(LOADING_LIBRARY);
+        warmUp.contents().whenCompleteAsync((list, failure) -> {
+            if (failure != null) {
+                loadLibraryInBackground();
+            } else {
+                showLibrary(list);
+            }
+        }, Platform::runLater);
+        int userId = CurrentUser.get().getUserID();
+        warmUp.activity()
+                // One more attempt, still off the FX thread, before favourites go unmarked.
+                .exceptionallyCompose(failure -> ActivityCache.getInstance().preload(userId))
+                .thenRunAsync(this::markFavourites, Platform::runLater);
+    }
+
+    /** Fetch the whole library off the FX thread, e.g. when the warm-up failed. */
+    private void loadLibraryInBackground() {
+        Task<List<Content>> task = new Task<>() {
+            @Override
+            protected List<Content> call() {
+                return contentService.getAllContents();
+            }
+        };
+        task.setOnSucceeded(e -> showLibrary(task.getValue()));
+        task.setOnFailed(e -> {
+            showLibrary(List.of());
+            statusLabel.setText("Library could not be loaded");
+        });
+        Thread thread = new Thread(task, "transparent-library-load");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    private void loadContents() {
+    /** Show the library fetched at login, filtered by whatever was searched meanwhile. */
+    private void showLibrary(List<Content> list) {
+        libraryShown = true;
+        contentTable.setPlaceholder(new Label("No content available. Add files to begin."));
+        showContents(list.stream().filter(content -> contentService.matches(content, currentQuery)).toList());
+        if (statusLabel.getText().equals(LOADING_LIBRARY)) {
+            statusLabel.setText("");
+        }
+    }
+
+    /** Mark the favourites among the shown rows once the user's activity is loaded. */
+    private void markFavourites() {
         refreshFavouritesCache();
-        List<Content> list = contentService.listContents(currentQuery);
+        ObservableList<ContentRow> items = contentTable.getItems();
+        List<ContentRow> patched = new ArrayList<>(items.size());
+        for (ContentRow row : items) {
+            ContentRow marked = row.withFavourite(favouriteIds.contains(row.getContentID()));
+            if (marked != row) {
+                rowCache.put(row.getContentID(), marked);
+            }
+            patched.add(marked);
+        }
+        replaceItems(items, patched);
+    }
+
+    /**
+     * Show the catalogue entries matching the current query.  Filters the
+     * local copy of the catalogue, which the login fetch and every change
+     * keep current, so searching never waits for the database.
+     */
+    private void filterContents() {
+        if (!libraryShown) {
+            // The library fetched at login is filtered by the current query when it arrives.
+            return;
+        }
+        showContents(contentService.listLocalContents(currentQuery));
+    }
+
+    private void showContents(List<Content> list) {
+        Map<Integer, ContentRow> rows = new HashMap<>(Math.max(16, list.size() * 4 / 3 + 1));
+        List<ContentRow> items = new ArrayList<>(list.size());
         for (Content content : list) {
-            content.setFavourite(favouriteIds.contains(content.getContentID()));
+            boolean favourite = favouriteIds.contains(content.getContentID());
+            content.setFavourite(favourite);
+            ContentRow row = ContentRow.of(content, favourite, rowCache.get(content.getContentID()));
+            rows.put(content.getContentID(), row);
+            items.add(row);
         }
-        ObservableList<Content> items = FXCollections.observableArrayList(list);
-        contentTable.setItems(items);
+        // Keep only rows still present in the catalogue so deleted content does not pin memory.
+        rowCache = rows;
+        contentTable.setItems(FXCollections.observableArrayList(items));
+        coverGrid.setRows(items);
         populateCategoryChoice();
-        contentTable.refresh();
+        FullTextIndex.getInstance().requestSync();
+    }
+
+    private Optional<ContentRow> selectedRow() {
+        return Optional.ofNullable(contentTable.getSelectionModel().getSelectedItem());
     }
 
     private void doSearch() {
@@ -159,7 +315,50 @@ public class MainController {
         currentQuery.setTags(parseTags(tagField.getText()));
         String selectedCategory = categoryChoice.getSelectionModel().getSelectedItem();
         currentQuery.setCategory(selectedCategory == null || selectedCategory.equalsIgnoreCase("All") ? "" : selectedCategory);
-        loadContents();
+        currentQuery.setTextMatches(Set.of());
+        textHits = Map.of();
+        filterContents();
+        searchText(currentQuery.getKeyword());
+    }
+
+    /**
+     * Look the keyword up in the full-text index in the background and add
+     * documents whose text matches to the metadata results.
+     */
+    private void searchText(String keyword) {
+        if (textSearch != null) {
+            textSearch.cancel();
+        }
+        if (keyword.isBlank()) {
+            return;
+        }
+        Task<List<FullTextIndex.Hit>> task = new Task<>() {
+            @Override
+            protected List<FullTextIndex.Hit> call() {
+                return FullTextIndex.getInstance().search(keyword, 500);
+            }
+        };
+        task.setOnSucceeded(e -> {
+            if (!keyword.equals(currentQuery.getKeyword())) {
+                return;
+            }
+            Map<Integer, FullTextIndex.Hit> hits = new HashMap<>();
+            for (FullTextIndex.Hit hit : task.getValue()) {
+                hits.put(hit.getContentId(), hit);
+            }
+            textHits = hits;
+            currentQuery.setTextMatches(hits.keySet());
+            Optional<ContentRow> selected = selectedRow();
+            filterContents();
+            selected.map(ContentRow::getContent).ifPresent(this::selectContent);
+            int pending = FullTextIndex.getInstance().getPendingCount();
+            statusLabel.setText(hits.size() + " document(s) contain \"" + keyword + "\""
+                    + (pending > 0 ? " (" + pending + " still being indexed)" : ""));
+        });
+        textSearch = task;
+        Thread thread = new Thread(task, "transparent-text-search");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     private void clearFilters() {
@@ -171,17 +370,20 @@ public class MainController {
         currentQuery.setKeyword("");
         currentQuery.setCategory("");
         currentQuery.setTags(List.of());
-        loadContents();
+        currentQuery.setTextMatches(Set.of());
+        textHits = Map.of();
+        filterContents();
     }
 
     private void addNewFile() {
         javafx.stage.FileChooser chooser = new javafx.stage.FileChooser();
         chooser.setTitle("Add content to library");
         chooser.getExtensionFilters().add(new javafx.stage.FileChooser.ExtensionFilter(
-                "Supported files", "*.pdf", "*.epub", "*.txt", "*.png", "*.jpg", "*.jpeg", "*.gif"));
+                "Supported files", "*.pdf", "*.epub", "*.cbz", "*.zip", "*.txt", "*.png", "*.jpg", "*.jpeg", "*.gif", "*.tif", "*.tiff"));
         chooser.getExtensionFilters().addAll(
                 new javafx.stage.FileChooser.ExtensionFilter("Books", "*.pdf", "*.epub", "*.txt"),
-                new javafx.stage.FileChooser.ExtensionFilter("Images", "*.png", "*.jpg", "*.jpeg", "*.gif")
+                new javafx.stage.FileChooser.ExtensionFilter("Comics", "*.cbz", "*.zip"),
+                new javafx.stage.FileChooser.ExtensionFilter("Images", "*.png", "*.jpg", "*.jpeg", "*.gif", "*.tif", "*.tiff")
         );
         java.io.File file = chooser.showOpenDialog(openButton.getScene().getWindow());
         if (file != null) {
@@ -190,13 +392,115 @@ public class MainController {
             Optional<Content> result = dialog.showAndWait();
             if (result.isPresent()) {
                 Content saved = contentService.saveContent(result.get());
-                loadContents();
+                libraryChanges.flush();
                 selectContent(saved);
                 showInformationAlert("File added", "Successfully added \"" + saved.getTitle() + "\" to the library.");
             }
         }
     }
 
+    private void importFolder() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Import folder into library");
+        java.io.File directory = chooser.showDialog(importFolderButton.getScene().getWindow());
+        if (directory == null) {
+            return;
+        }
+        Task<BulkImportService.Progress> task = new Task<>() {
+            @Override
+            protected BulkImportService.Progress call() throws Exception {
+                return new BulkImportService().importFolder(directory.toPath(), progress -> {
+                    if (progress.getTotal() > 0) {
+                        updateProgress(progress.getProcessed(), progress.getTotal());
+                    }
+                    updateMessage(describeImport(progress));
+                });
+            }
+        };
+        importFolderButton.setDisable(true);
+        importProgress.setVisible(true);
+        importProgress.setManaged(true);
+        importProgress.progressProperty().bind(task.progressProperty());
+        statusLabel.textProperty().bind(task.messageProperty());
+        task.setOnSucceeded(e -> {
+            finishImport();
+            BulkImportService.Progress result = task.getValue();
+            statusLabel.setText(describeImport(result));
+            // Imported folders become library roots that are kept in sync from now on.
+            LibraryWatchService.getInstance().watchFolder(directory.toPath());
+        });
+        task.setOnFailed(e -> {
+            finishImport();
+            statusLabel.setText("Import failed");
+            showErrorAlert("Import failed", String.valueOf(task.getException().getMessage()));
+        });
+        Thread thread = new Thread(task, "transparent-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishImport() {
+        statusLabel.textProperty().unbind();
+        importProgress.progressProperty().unbind();
+        importProgress.setVisible(false);
+        importProgress.setManaged(false);
+        importFolderButton.setDisable(false);
+    }
+
+    private static String describeImport(BulkImportService.Progress progress) {
+        return switch (progress.getStage()) {
+            case SCANNING -> "Scanning folder...";
+            case EXTRACTING -> String.format("Reading metadata %d / %d (%.0f files/s)",
+                    progress.getProcessed(), progress.getTotal(), progress.getFilesPerSecond());
+            case SAVING -> "Saving " + progress.getTotal() + " entries...";
+            case DONE -> String.format("Imported %d files, skipped %d, duplicates %d, failed %d in %.1f s (%.0f files/s)",
+                    progress.getImported(), progress.getSkipped(), progress.getDuplicates(), progress.getFailed(),
+                    progress.getElapsedMillis() / 1000.0, progress.getFilesPerSecond());
+        };
+    }
+
+    private void findDuplicates() {
+        Task<List<List<Content>>> task = new Task<>() {
+            @Override
+            protected List<List<Content>> call() throws Exception {
+                return new FingerprintService().findDuplicateGroups();
+            }
+        };
+        duplicatesButton.setDisable(true);
+        statusLabel.setText("Comparing files...");
+        task.setOnSucceeded(e -> {
+            duplicatesButton.setDisable(false);
+            List<List<Content>> groups = task.getValue();
+            statusLabel.setText(groups.size() + " duplicate group(s) found");
+            showInformationAlert("Duplicate files", describeDuplicates(groups));
+        });
+        task.setOnFailed(e -> {
+            duplicatesButton.setDisable(false);
+            statusLabel.setText("Duplicate search failed");
+        });
+        Thread thread = new Thread(task, "transparent-duplicates");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String describeDuplicates(List<List<Content>> groups) {
+        if (groups.isEmpty()) {
+            return "No duplicate files found.";
+        }
+        int shown = Math.min(groups.size(), 20);
+        StringBuilder builder = new StringBuilder();
+        for (List<Content> group : groups.subList(0, shown)) {
+            builder.append(ContentRow.formatSize(group.get(0).getSizeBytes())).append('\n');
+            for (Content content : group) {
+                builder.append("  ").append(content.getTitle()).append(" - ").append(content.getFilePath()).append('\n');
+            }
+        }
+        if (groups.size() > shown) {
+            builder.append("... and ").append(groups.size() - shown).append(" more group(s)");
+        }
+        return builder.toString();
+    }
+
     private void showHistory() {
         try {
             Stage stage = new Stage();
@@ -211,6 +515,20 @@ public class MainController {
         }
     }
 
+    private void showDiagnostics() {
+        try {
+            Stage stage = new Stage();
+            Parent root = FXMLLoader.load(getClass().getResource("/diagnostics.fxml"));
+            stage.setTitle("Diagnostics");
+            Scene scene = new Scene(root);
+            ThemeManager.getInstance().register(scene);
+            stage.setScene(scene);
+            stage.show();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     private void showFavourites() {
         try {
             Stage stage = new Stage();
@@ -226,34 +544,47 @@ public class MainController {
     }
 
     private void openReader(Content content) {
+        openReader(content, 0);
+    }
+
+    /**
+     * Open the reader on {@code content}; a positive {@code pageNumber} jumps
+     * to that page instead of resuming where the user stopped.
+     */
+    private void openReader(Content content, int pageNumber) {
         Objects.requireNonNull(content, "content");
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/reader.fxml"));
-            Parent root = loader.load();
-            ReaderController controller = loader.getController();
+            ReaderWindowPool.ReaderWindow window =
+                    ReaderWindowPool.getInstance().acquire(contentTable.getScene().getWindow());
+            ReaderController controller = window.getController();
             controller.setContent(content);
-            Stage stage = new Stage();
+            if (pageNumber > 0) {
+                controller.showPage(pageNumber);
+            }
+            Stage stage = window.getStage();
             stage.setTitle("Reading - " + content.getTitle());
-            stage.initOwner(contentTable.getScene().getWindow());
-            Scene scene = new Scene(root);
-            ThemeManager.getInstance().register(scene);
-            stage.setScene(scene);
-            stage.setOnHidden(e -> loadContents());
             stage.show();
+            stage.toFront();
         } catch (IOException ex) {
             showErrorAlert("Unable to open reader", ex.getMessage());
         }
     }
 
-    private void showInfo(Content content) {
-        Objects.requireNonNull(content, "content");
+    private void showInfo(ContentRow row) {
+        Objects.requireNonNull(row, "row");
+        Content content = row.getContent();
         StringBuilder builder = new StringBuilder();
         builder.append("Type: ").append(content.getFileType()).append('\n')
-               .append("Size: ").append(formatSize(content.getSizeBytes())).append('\n')
+               .append("Size: ").append(row.getSizeText()).append('\n')
                .append("Path: ").append(content.getFilePath());
         if (content.getDayAdded() != null) {
-            builder.append('\n').append("Added: ")
-                   .append(DATE_FORMATTER.format(content.getDayAdded()));
+            builder.append('\n').append("Added: ").append(row.getAddedText());
+        }
+        if (content.getImageWidth() > 0) {
+            builder.append('\n').append("Dimensions: ").append(content.getImageWidth())
+                   .append(" x ").append(content.getImageHeight()).append(" px");
+        } else if (content.getPageCount() > 0) {
+            builder.append('\n').append("Pages: ").append(content.getPageCount());
         }
         if (content.getAuthor() != null && !content.getAuthor().isBlank()) {
             builder.append('\n').append("Author: ").append(content.getAuthor());
@@ -262,7 +593,7 @@ public class MainController {
             builder.append('\n').append("Category: ").append(content.getCategory());
         }
         if (!content.getTags().isEmpty()) {
-            builder.append('\n').append("Tags: ").append(String.join(", ", content.getTags()));
+            builder.append('\n').append("Tags: ").append(row.getTagsText());
         }
         if (content.getDescription() != null && !content.getDescription().isBlank()) {
             builder.append('\n').append("Description: ").append(content.getDescription());
@@ -274,27 +605,145 @@ public class MainController {
         alert.showAndWait();
     }
 
-    private void toggleFavourite(Content content) {
+    private void toggleFavourite(ContentRow row) {
         if (CurrentUser.get() == null) {
             showErrorAlert("Not logged in", "Please login to manage favourites.");
             return;
         }
         int userId = CurrentUser.get().getUserID();
-        boolean isFavourite = favouriteService.toggleFavourite(userId, content.getContentID());
-        content.setFavourite(isFavourite);
-        if (isFavourite) {
-            favouriteIds.add(content.getContentID());
-        } else {
-            favouriteIds.remove(content.getContentID());
-        }
+        int contentId = row.getContentID();
+        boolean isFavourite = favouriteService.toggleFavourite(userId, contentId);
+        libraryChanges.flush();
         updateFavouriteButtonText(isFavourite);
-        contentTable.refresh();
         showInformationAlert("Favourite updated",
                 isFavourite ? "Added to favourites" : "Removed from favourites");
     }
 
-    private void updateSelectionState(Content selected) {
+    /**
+     * Patch the rows touched by library changes instead of listing the
+     * library again.  Changed entries are re-checked against the current
+     * filters; new ones that pass are added at the end, as they would be
+     * listed.
+     */
+    private void applyChanges(List<LibraryChange> changes) {
+        Map<Integer, Content> upserted = new LinkedHashMap<>();
+        Set<Integer> removed = new HashSet<>();
+        Set<Integer> favouritesChanged = new HashSet<>();
+        User user = CurrentUser.get();
+        boolean newCategory = false;
+        for (LibraryChange change : changes) {
+            int contentId = change.getContentId();
+            switch (change.getKind()) {
+                case CONTENT_UPSERTED -> {
+                    upserted.put(contentId, change.getContent());
+                    removed.remove(contentId);
+                    String category = change.getContent().getCategory();
+                    newCategory |= category != null && !category.isBlank()
+                            && !categoryChoice.getItems().contains(category.trim());
+                }
+                case CONTENT_REMOVED -> {
+                    upserted.remove(contentId);
+                    removed.add(contentId);
+                }
+                case FAVOURITE_CHANGED -> {
+                    if (user != null && change.getUserId() == user.getUserID()) {
+                        if (change.isFavourite()) {
+                            favouriteIds.add(contentId);
+                        } else {
+                            favouriteIds.remove(contentId);
+                        }
+                        favouritesChanged.add(contentId);
+                    }
+                }
+                case HISTORY_UPDATED -> {
+                    // Reading positions are not shown in the library.
+                }
+            }
+        }
+        if (upserted.isEmpty() && removed.isEmpty() && favouritesChanged.isEmpty()) {
+            return;
+        }
+        ObservableList<ContentRow> items = contentTable.getItems();
+        List<ContentRow> patched = new ArrayList<>(items.size() + upserted.size());
+        for (ContentRow row : items) {
+            int contentId = row.getContentID();
+            Content content = upserted.remove(contentId);
+            if (removed.contains(contentId) || (content != null && !contentService.matches(content, currentQuery))) {
+                rowCache.remove(contentId);
+                continue;
+            }
+            if (content != null) {
+                row = toRow(new Content(content));
+            } else if (favouritesChanged.contains(contentId)) {
+                row = row.withFavourite(favouriteIds.contains(contentId));
+                rowCache.put(contentId, row);
+            }
+            patched.add(row);
+        }
+        for (Content content : upserted.values()) {
+            if (contentService.matches(content, currentQuery)) {
+                patched.add(toRow(new Content(content)));
+            }
+        }
+        replaceItems(items, patched);
+        if (newCategory) {
+            populateCategoryChoice();
+        }
+        if (!upserted.isEmpty() || !removed.isEmpty()) {
+            FullTextIndex.getInstance().requestSync();
+        }
+    }
+
+    private ContentRow toRow(Content content) {
+        boolean favourite = favouriteIds.contains(content.getContentID());
+        content.setFavourite(favourite);
+        ContentRow row = ContentRow.of(content, favourite, rowCache.get(content.getContentID()));
+        rowCache.put(content.getContentID(), row);
+        return row;
+    }
+
+    /**
+     * Show {@code patched} in place of {@code items}, keeping the selection.
+     * Rows are set one by one when only a few changed, so the table redraws
+     * just those cells.
+     */
+    private void replaceItems(ObservableList<ContentRow> items, List<ContentRow> patched) {
+        ContentRow selected = contentTable.getSelectionModel().getSelectedItem();
+        int changed = 0;
+        if (patched.size() == items.size()) {
+            for (int i = 0; i < items.size() && changed <= PATCH_LIMIT; i++) {
+                if (items.get(i) != patched.get(i)) {
+                    changed++;
+                }
+            }
+            if (changed == 0) {
+                return;
+            }
+        }
+        if (patched.size() == items.size() && changed <= PATCH_LIMIT) {
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i) != patched.get(i)) {
+                    items.set(i, patched.get(i));
+                }
+            }
+        } else {
+            items.setAll(patched);
+        }
+        if (selected != null && contentTable.getSelectionModel().getSelectedItem() != rowCache.get(selected.getContentID())) {
+            ContentRow current = rowCache.get(selected.getContentID());
+            if (current != null) {
+                contentTable.getSelectionModel().select(current);
+            } else {
+                contentTable.getSelectionModel().clearSelection();
+            }
+        }
+        coverGrid.setRows(items);
+    }
+
+    private void updateSelectionState(ContentRow selected) {
         boolean hasSelection = selected != null;
+        coverGrid.selectedRowProperty().set(selected);
+        updatePreview(selected);
         readButton.setDisable(!hasSelection);
         infoButton.setDisable(!hasSelection);
         metadataButton.setDisable(!hasSelection);
@@ -308,6 +757,61 @@ public class MainController {
         }
     }
 
+    /**
+     * The cover grid shares the table's items and selection, so every action
+     * keeps working on {@link #selectedRow()} whichever view is showing.
+     */
+    private void setupCoverView() {
+        coverGrid.setOnOpen(row -> openReader(row.getContent()));
+        coverGrid.selectedRowProperty().addListener((obs, oldRow, newRow) -> {
+            if (newRow != null && newRow != contentTable.getSelectionModel().getSelectedItem()) {
+                contentTable.getSelectionModel().select(newRow);
+            }
+        });
+        coverViewToggle.selectedProperty().addListener((obs, wasSelected, covers) -> {
+            coverGrid.setVisible(covers);
+            contentTable.setVisible(!covers);
+            selectedRow().ifPresent(covers ? coverGrid::reveal : contentTable::scrollTo);
+        });
+    }
+
+    private void updatePreview(ContentRow row) {
+        previewPane.setVisible(row != null);
+        previewPane.setManaged(row != null);
+        previewCover.setImage(null);
+        if (row == null) {
+            return;
+        }
+        Content content = row.getContent();
+        previewTitle.setText(content.getTitle());
+        previewAuthor.setText(content.getAuthor() == null ? "" : content.getAuthor());
+        StringBuilder details = new StringBuilder(content.getFileType()).append(" - ").append(row.getSizeText());
+        if (content.getImageWidth() > 0) {
+            details.append('\n').append(content.getImageWidth()).append(" x ").append(content.getImageHeight()).append(" px");
+        } else if (content.getPageCount() > 0) {
+            details.append('\n').append(content.getPageCount()).append(" pages");
+        }
+        previewDetails.setText(details.toString());
+        previewHits.getChildren().clear();
+        FullTextIndex.Hit hit = textHits.get(content.getContentID());
+        if (hit != null) {
+            previewHits.getChildren().add(new Label("Found on page"));
+            for (Integer page : hit.getPages()) {
+                Hyperlink link = new Hyperlink(String.valueOf(page));
+                link.setOnAction(e -> openReader(content, page));
+                previewHits.getChildren().add(link);
+            }
+        }
+        int contentId = content.getContentID();
+        ThumbnailService.getInstance().requestThumbnail(content).thenAccept(result -> result.ifPresent(path ->
+                Platform.runLater(() -> {
+                    ContentRow current = contentTable.getSelectionModel().getSelectedItem();
+                    if (current != null && current.getContentID() == contentId) {
+                        previewCover.setImage(new Image(path.toUri().toString(), true));
+                    }
+                })));
+    }
+
     private void updateFavouriteButtonText(boolean favourite) {
         toggleFavouriteButton.setText(favourite ? "Remove favourite" : "Add favourite");
     }
@@ -316,7 +820,7 @@ public class MainController {
         if (content == null) {
             return;
         }
-        for (Content item : contentTable.getItems()) {
+        for (ContentRow item : contentTable.getItems()) {
             if (item.getContentID() == content.getContentID()) {
                 contentTable.getSelectionModel().select(item);
                 contentTable.scrollTo(item);
@@ -341,20 +845,6 @@ public class MainController {
         alert.showAndWait();
     }
 
-    private static String formatSize(long bytes) {
-        if (bytes < 1024) {
-            return bytes + " B";
-        }
-        double value = bytes;
-        String[] units = {"KB", "MB", "GB", "TB"};
-        int unitIndex = 0;
-        while (value >= 1024 && unitIndex < units.length - 1) {
-            value /= 1024;
-            unitIndex++;
-        }
-        return String.format("%.1f %s", value, units[unitIndex]);
-    }
-
     private void setupCategoryChoice() {
         categoryChoice.setItems(FXCollections.observableArrayList("All"));
         categoryChoice.getSelectionModel().selectFirst();
@@ -418,33 +908,17 @@ public class MainController {
         if (CurrentUser.get() == null) {
             return;
         }
-        int userId = CurrentUser.get().getUserID();
-        List<Favourite> favourites = favouriteService.getFavourites(userId);
-        for (Favourite favourite : favourites) {
-            favouriteIds.add(favourite.getContentID());
-        }
+        favouriteIds.addAll(favouriteService.getFavouriteIds(CurrentUser.get().getUserID()));
     }
 
     private void editMetadata(Content content) {
         ContentMetadataDialog dialog = new ContentMetadataDialog(new Content(content), "Edit metadata");
         Optional<Content> result = dialog.showAndWait();
         result.ifPresent(updated -> {
-            copyMetadata(content, updated);
+            // Rows own their content snapshot, so the edit reaches the table as a new row.
             contentService.updateMetadata(updated);
-            loadContents();
+            libraryChanges.flush();
             selectContent(updated);
         });
     }
-
-    private void copyMetadata(Content target, Content source) {
-        target.setTitle(source.getTitle());
-        target.setFilePath(source.getFilePath());
-        target.setFileType(source.getFileType());
-        target.setSizeBytes(source.getSizeBytes());
-        target.setDayAdded(source.getDayAdded());
-        target.setAuthor(source.getAuthor());
-        target.setCategory(source.getCategory());
-        target.setTags(source.getTags());
-        target.setDescription(source.getDescription());
-    }
 }
@@ -2,31 +2,50 @@ package transparent.controller;
 
 import javafx.application.Platform;
 import javafx.concurrent.Worker;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
-import javafx.scene.image.Image;
+import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.StackPane;
 import javafx.scene.web.WebView;
-import nl.siegmann.epublib.domain.Book;
-import nl.siegmann.epublib.domain.Resource;
-import nl.siegmann.epublib.epub.EpubReader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.PDFRenderer;
+import transparent.metrics.DocumentOpenEvent;
+import transparent.metrics.Metrics;
+import transparent.metrics.PageRenderEvent;
 import transparent.model.Content;
 import transparent.model.HistoryRecord;
+import transparent.service.ComicArchive;
+import transparent.service.DocumentFinder;
+import transparent.service.DocumentIndex;
+import transparent.service.EpubBook;
 import transparent.service.FavouriteService;
 import transparent.service.HistoryService;
+import transparent.service.MultiPageImage;
+import transparent.service.PagedImage;
+import transparent.service.ParallelPdfRenderer;
+import transparent.service.PdfTextLocator;
+import transparent.service.ProgressTracker;
+import transparent.ui.PageRaster;
 import transparent.ui.ThemeManager;
 import transparent.ui.ThemeManager.Theme;
 
 import javax.imageio.ImageIO;
+import java.awt.Color;
 import java.awt.Desktop;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -34,16 +53,63 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
  * Controller for the reader view.  Responsible for rendering the selected
- * content (EPUB, PDF, images, plain text) and persisting reading progress.
+ * content (EPUB, PDF, comic archives, images including multi-page TIFFs,
+ * plain text) and persisting reading progress.
  */
 public class ReaderController {
-    private enum ReaderMode { TEXT, EPUB, PDF, IMAGE, UNSUPPORTED }
+    private enum ReaderMode { TEXT, EPUB, PDF, IMAGE, PAGED_IMAGE, UNSUPPORTED }
+
+    private static final float PDF_DPI = 150;
+    /** Pages rendered ahead of the one on screen. */
+    private static final int PREFETCH_PAGES = 2;
+    private static final Color MATCH_COLOUR = new Color(255, 213, 0, 110);
+    private static final Color CURRENT_MATCH_COLOUR = new Color(255, 128, 0, 150);
+    /**
+     * Removes earlier marks, then wraps each case-insensitive occurrence of
+     * the query in a mark element and scrolls the selected one into view.
+     */
+    private static final String MARK_MATCHES_SCRIPT = "(function(query, selected) {"
+            + "var old = document.querySelectorAll('mark.transparent-find');"
+            + "for (var i = 0; i < old.length; i++) {"
+            + "  var parent = old[i].parentNode;"
+            + "  parent.replaceChild(document.createTextNode(old[i].textContent), old[i]);"
+            + "  parent.normalize();"
+            + "}"
+            + "if (!query || !document.body) { return 0; }"
+            + "var needle = query.toLowerCase(), nodes = [], node, count = 0;"
+            + "var walker = document.createTreeWalker(document.body, NodeFilter.SHOW_TEXT, null, false);"
+            + "while ((node = walker.nextNode())) { nodes.push(node); }"
+            + "for (var n = 0; n < nodes.length; n++) {"
+            + "  node = nodes[n];"
+            + "  var at = node.nodeValue.toLowerCase().indexOf(needle);"
+            + "  while (at >= 0) {"
+            + "    var match = node.splitText(at);"
+            + "    node = match.splitText(needle.length);"
+            + "    var mark = document.createElement('mark');"
+            + "    mark.className = 'transparent-find';"
+            + "    match.parentNode.replaceChild(mark, match);"
+            + "    mark.appendChild(match);"
+            + "    if (count === selected) { mark.style.background = 'orange'; mark.scrollIntoView({block: 'center'}); }"
+            + "    count++;"
+            + "    at = node.nodeValue.toLowerCase().indexOf(needle);"
+            + "  }"
+            + "}"
+            + "return count;"
+            + "})";
 
     @FXML private Button prevButton;
     @FXML private Button nextButton;
@@ -55,19 +121,61 @@ public class ReaderController {
     @FXML private Label statusLabel;
     @FXML private ScrollPane contentScroll;
     @FXML private StackPane contentHolder;
+    @FXML private TextField findField;
+    @FXML private Button findPreviousButton;
+    @FXML private Button findNextButton;
+    @FXML private Label findLabel;
+    @FXML private ToggleButton continuousToggle;
 
     private final HistoryService historyService = new HistoryService();
+    private final ProgressTracker progressTracker = ProgressTracker.getInstance();
     private final FavouriteService favouriteService = new FavouriteService();
     private final ThemeManager themeManager = ThemeManager.getInstance();
-    private final WebView webView = new WebView();
-    private final ImageView imageView = new ImageView();
+    /** Kept so exactly this instance can be removed again in {@link #dispose()}. */
+    private final Consumer<Theme> themeListener = this::applyTheme;
+    /** Created on first use: PDFs and images never need the costly WebView. */
+    private WebView webView;
+    private ImageView imageView;
 
     private Content content;
     private ReaderMode mode = ReaderMode.TEXT;
     private int currentPage = 0;
     private int totalPages = 1;
-    private List<String> epubPages = new ArrayList<>();
-    private List<Image> pdfPages = new ArrayList<>();
+    /** Open while an EPUB is shown; chapters are read from it as they are turned to. */
+    private EpubBook epub;
+    /** Open while a PDF is shown; pages are rendered from it on demand. */
+    private ParallelPdfRenderer pdf;
+    /** Pixels of the page on screen, reused across page turns and documents. */
+    private PageRaster pageRaster;
+    /** Pages being rendered ahead of the reader, by zero-based index. */
+    private final Map<Integer, CompletableFuture<PageRaster>> prefetched = new HashMap<>();
+    private Path pdfPath;
+    /** Page sizes of the open PDF, read from the document index when continuous scrolling needs them. */
+    private DocumentIndex.Layout pdfLayout;
+    /** Created when continuous scrolling is first used. */
+    private ContinuousPdfView continuousView;
+    /** Content ID of the open PDF, read by render threads for flight recorder events. */
+    private volatile int pdfContentId;
+    /** Rasters off screen and free to render a prefetched page into. */
+    private final Deque<PageRaster> spareRasters = new ArrayDeque<>();
+    /** Open while a comic archive or multi-page image is shown; pages are decoded from it on demand. */
+    private PagedImage pagedImage;
+    /** Pages decoded around the current one, by zero-based index. */
+    private final Map<Integer, CompletableFuture<BufferedImage>> imagePages = new HashMap<>();
+
+    private final DocumentFinder documentFinder = DocumentFinder.getInstance();
+    /** Running search; results of older generations are ignored. */
+    private Future<?> findTask;
+    private int findGeneration;
+    private String findQuery;
+    private Pattern findPattern;
+    private final List<DocumentFinder.Match> findHits = new ArrayList<>();
+    private int currentHit = -1;
+    private boolean findComplete;
+    private boolean findTruncated;
+    /** Glyph boxes of each match per PDF page, in points. */
+    private final Map<Integer, List<List<Rectangle2D>>> matchBoxes = new HashMap<>();
+    private boolean pageMarked;
 
     @FXML
     private void initialize() {
@@ -77,41 +185,164 @@ public class ReaderController {
         favouriteButton.setOnAction(e -> toggleFavourite());
         openExternalButton.setOnAction(e -> openExternally());
         openExternalButton.setDisable(true);
-        configureWebView();
-        imageView.setPreserveRatio(true);
         contentScroll.viewportBoundsProperty().addListener((obs, oldBounds, newBounds) -> {
-            if (mode == ReaderMode.IMAGE) {
-                imageView.setFitWidth(Math.max(200, newBounds.getWidth() - 40));
-            } else if (mode == ReaderMode.TEXT || mode == ReaderMode.EPUB || mode == ReaderMode.UNSUPPORTED) {
+            if (mode == ReaderMode.IMAGE || mode == ReaderMode.PAGED_IMAGE) {
+                if (imageView != null) {
+                    imageView.setFitWidth(Math.max(200, newBounds.getWidth() - 40));
+                }
+            } else if (mode != ReaderMode.PDF && webView != null) {
                 webView.setPrefWidth(Math.max(200, newBounds.getWidth() - 40));
             }
         });
-        themeManager.addListener(this::applyTheme);
-    }
-
-    private void configureWebView() {
-        webView.setContextMenuEnabled(false);
-        webView.getEngine().setUserStyleSheetLocation(getClass().getResource("/webview-reader.css") != null
-                ? getClass().getResource("/webview-reader.css").toExternalForm()
-                : null);
-        webView.getEngine().getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
-            if (newState == Worker.State.SUCCEEDED) {
-                applyWebTheme(themeManager.getActiveTheme());
+        findField.setOnAction(e -> onFindAction());
+        findField.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (e.getCode() == KeyCode.ENTER && e.isShiftDown()) {
+                showPreviousMatch();
+                e.consume();
+            } else if (e.getCode() == KeyCode.ESCAPE) {
+                findField.clear();
+                startFind("");
+                e.consume();
+            }
+        });
+        continuousToggle.setOnAction(e -> {
+            if (mode == ReaderMode.PDF) {
+                displayCurrentPage();
             }
         });
+        findPreviousButton.setOnAction(e -> showPreviousMatch());
+        findNextButton.setOnAction(e -> showNextMatch());
+        findField.sceneProperty().addListener((obs, oldScene, scene) -> {
+            if (scene != null) {
+                scene.getAccelerators().put(new KeyCodeCombination(KeyCode.F, KeyCombination.SHORTCUT_DOWN), () -> {
+                    findField.requestFocus();
+                    findField.selectAll();
+                });
+            }
+        });
+        updateFindState();
+        themeManager.addListener(themeListener);
+    }
+
+    private WebView webView() {
+        if (webView == null) {
+            webView = new WebView();
+            webView.setContextMenuEnabled(false);
+            webView.getEngine().setUserStyleSheetLocation(getClass().getResource("/webview-reader.css") != null
+                    ? getClass().getResource("/webview-reader.css").toExternalForm()
+                    : null);
+            webView.getEngine().getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
+                if (newState == Worker.State.SUCCEEDED) {
+                    applyWebTheme(themeManager.getActiveTheme());
+                    if (findQuery != null) {
+                        applyWebMatches();
+                    }
+                }
+            });
+        }
+        return webView;
+    }
+
+    private ImageView imageView() {
+        if (imageView == null) {
+            imageView = new ImageView();
+            imageView.setPreserveRatio(true);
+        }
+        return imageView;
+    }
+
+    /**
+     * Create the WebView and start its engine ahead of time, so the first
+     * EPUB or text document opened in this reader does not pay for it.
+     */
+    public void prewarm() {
+        webView().getEngine().loadContent("<html><body></body></html>");
+    }
+
+    /**
+     * Forget the current document and close its file so an idle, pooled
+     * reader holds nothing open.  The created views and the on-screen page
+     * buffer are kept for the next document.
+     */
+    public void clear() {
+        content = null;
+        mode = ReaderMode.TEXT;
+        currentPage = 0;
+        totalPages = 1;
+        closeEpub();
+        cancelFind();
+        findQuery = null;
+        findPattern = null;
+        pageMarked = false;
+        findField.clear();
+        updateFindState();
+        closePdf();
+        closePagedImage();
+        spareRasters.clear();
+        if (imageView != null) {
+            imageView.setImage(null);
+        }
+        if (webView != null) {
+            webView.getEngine().loadContent("");
+        }
+        contentHolder.getChildren().clear();
+        titleLabel.setText("");
+        statusLabel.setText("");
+    }
+
+    /**
+     * Release everything this reader holds, for a window that is closed for
+     * good rather than kept for reuse: the document, every page buffer, the
+     * web page and the theme listener that would otherwise keep the
+     * controller reachable from {@link ThemeManager} forever.
+     */
+    public void dispose() {
+        clear();
+        themeManager.removeListener(themeListener);
+        if (continuousView != null) {
+            continuousView.close();
+            continuousView = null;
+        }
+        pageRaster = null;
+        if (imageView != null) {
+            imageView.setImage(null);
+            imageView = null;
+        }
+        if (webView != null) {
+            webView.getEngine().load(null);
+            webView = null;
+        }
     }
 
     /**
      * Populate the reader with the selected content.
      */
     public void setContent(Content content) {
+        clear();
         this.content = content;
         titleLabel.setText(content.getTitle());
         statusLabel.setText("");
+        // Open straight at the saved page instead of rendering the first one and jumping.
+        int savedPage = savedPage();
+        currentPage = Math.max(0, savedPage - 1);
         loadContent();
-        restoreProgress();
+        restoreProgress(savedPage);
         updateFavouriteState();
         updateExternalButton();
+        updateFindState();
+    }
+
+    /**
+     * Jump to a one-based page, for example a search hit.  Pages outside the
+     * document are clamped to its first or last page.
+     */
+    public void showPage(int pageNumber) {
+        if (content == null) {
+            return;
+        }
+        currentPage = Math.max(0, Math.min(pageNumber - 1, totalPages - 1));
+        displayCurrentPage();
+        statusLabel.setText("Showing page " + (currentPage + 1));
     }
 
     private void loadContent() {
@@ -122,14 +353,20 @@ public class ReaderController {
         if (!Files.exists(path)) {
             showError("File missing", "Cannot find file: " + path);
             mode = ReaderMode.UNSUPPORTED;
+            currentPage = 0;
             return;
         }
         String type = content.getFileType() == null ? "" : content.getFileType().toUpperCase(Locale.ROOT);
+        DocumentOpenEvent event = new DocumentOpenEvent();
+        event.begin();
+        long start = System.nanoTime();
         try {
             boolean handled = true;
             switch (type) {
                 case "EPUB" -> loadEpub(path);
                 case "PDF" -> loadPdf(path);
+                case "CBZ", "ZIP" -> loadPagedImage(ComicArchive.open(path), path);
+                case "TIF", "TIFF" -> loadPagedImage(MultiPageImage.open(path), path);
                 case "PNG", "JPG", "JPEG", "GIF", "BMP" -> loadImage(path);
                 case "TXT", "TEXT" -> loadText(path);
                 default -> handled = false;
@@ -138,8 +375,19 @@ public class ReaderController {
                 showUnsupported(path);
             }
         } catch (IOException ex) {
+            Metrics.getInstance().counter("reader.open.failures").increment();
+            event.failed = true;
             showError("Unable to open file", ex.getMessage());
             showUnsupported(path);
+        } finally {
+            Metrics.getInstance().timer("reader.open." + type.toLowerCase(Locale.ROOT)).recordSince(start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.contentId = content.getContentID();
+                event.fileType = type;
+                event.pages = totalPages;
+                event.commit();
+            }
         }
     }
 
@@ -152,95 +400,447 @@ public class ReaderController {
         String html = "<html><head><style>body{font-family:'Segoe UI',sans-serif;font-size:16px;line-height:1.6;padding:24px;}" +
                 "pre{white-space:pre-wrap;word-wrap:break-word;}</style></head><body data-theme='" + theme + "'><pre>" +
                 escapeHtml(text) + "</pre></body></html>";
-        webView.getEngine().loadContent(html);
-        webView.setPrefWidth(Math.max(200, getViewportWidth() - 40));
-        setContentNode(webView);
+        WebView view = webView();
+        view.getEngine().loadContent(html);
+        view.setPrefWidth(Math.max(200, getViewportWidth() - 40));
+        setContentNode(view);
         updateNavigationState();
     }
 
     private void loadEpub(Path path) throws IOException {
-        epubPages.clear();
-        try (InputStream inputStream = Files.newInputStream(path)) {
-            Book book = new EpubReader().readEpub(inputStream);
-            if (book.getTitle() != null && !book.getTitle().isBlank()) {
-                titleLabel.setText(book.getTitle());
-            }
-            for (Resource res : book.getSpine().getSpineResources()) {
-                byte[] data = res.getData();
-                String html = new String(data, res.getInputEncoding() != null ? res.getInputEncoding() : StandardCharsets.UTF_8);
-                epubPages.add(html);
-            }
+        epub = EpubBook.open(path);
+        if (epub.getTitle() != null && !epub.getTitle().isBlank()) {
+            titleLabel.setText(epub.getTitle());
         }
-        if (epubPages.isEmpty()) {
+        if (epub.getChapterCount() == 0) {
             statusLabel.setText("EPUB has no readable chapters");
-            epubPages.add("<p>No readable content</p>");
         }
         mode = ReaderMode.EPUB;
-        totalPages = epubPages.size();
+        totalPages = Math.max(1, epub.getChapterCount());
         currentPage = Math.min(currentPage, totalPages - 1);
         displayCurrentEpubPage();
     }
 
-    private void loadPdf(Path path) throws IOException {
-        pdfPages.clear();
-        try (PDDocument document = PDDocument.load(path.toFile())) {
-            PDFRenderer renderer = new PDFRenderer(document);
-            for (int i = 0; i < document.getNumberOfPages(); i++) {
-                BufferedImage bufferedImage = renderer.renderImageWithDPI(i, 150);
-                Image image = SwingFXUtils.toFXImage(bufferedImage, null);
-                pdfPages.add(image);
-            }
+    private void closeEpub() {
+        if (epub == null) {
+            return;
         }
-        if (pdfPages.isEmpty()) {
+        try {
+            epub.close();
+        } catch (IOException ignored) {
+        }
+        epub = null;
+    }
+
+    private void loadPdf(Path path) throws IOException {
+        ParallelPdfRenderer renderer = ParallelPdfRenderer.open(path, PREFETCH_PAGES + 1);
+        if (renderer.getPageCount() == 0) {
+            renderer.close();
             statusLabel.setText("PDF contains no pages");
             showUnsupported(path);
             return;
         }
+        pdf = renderer;
+        pdfPath = path;
+        pdfContentId = content.getContentID();
         mode = ReaderMode.PDF;
-        totalPages = pdfPages.size();
+        totalPages = renderer.getPageCount();
+        currentPage = Math.min(currentPage, totalPages - 1);
+        if (isContinuous()) {
+            displayContinuousPdf();
+        } else {
+            displayCurrentPdfPage();
+        }
+    }
+
+    private void closePdf() {
+        if (pdf == null) {
+            return;
+        }
+        if (continuousView != null) {
+            continuousView.close();
+        }
+        pdf.close();
+        pdf = null;
+        pdfPath = null;
+        pdfLayout = null;
+        // Rasters still being filled are dropped with their futures.
+        prefetched.clear();
+        spareRasters.clear();
+    }
+
+    /**
+     * Render the pages after {@code currentPage} (and the one before it) on
+     * the render pool into spare rasters, so turning the page only swaps the
+     * image.  Prefetches that fell out of the window are recycled.
+     */
+    private void prefetchAround(int page) {
+        ParallelPdfRenderer renderer = pdf;
+        prefetched.entrySet().removeIf(entry -> {
+            int index = entry.getKey();
+            boolean keep = index >= page - 1 && index <= page + PREFETCH_PAGES;
+            if (!keep) {
+                entry.getValue().thenAccept(raster -> Platform.runLater(() -> recycle(raster)));
+            }
+            return !keep;
+        });
+        int contentId = content.getContentID();
+        for (int index = page - 1; index <= page + PREFETCH_PAGES; index++) {
+            if (index == page || index < 0 || index >= totalPages || prefetched.containsKey(index)) {
+                continue;
+            }
+            PageRaster spare = spareRasters.pollFirst();
+            CompletableFuture<PageRaster> future = renderer.submit(index,
+                    (pdfRenderer, document, pageIndex) -> renderPdfPage(spare, pdfRenderer, document, pageIndex, contentId));
+            prefetched.put(index, future);
+        }
+    }
+
+    private void recycle(PageRaster raster) {
+        if (raster != pageRaster && spareRasters.size() < PREFETCH_PAGES + 1 && !spareRasters.contains(raster)) {
+            spareRasters.addFirst(raster);
+        }
+    }
+
+    /**
+     * Render one PDF page into {@code reuse} when it has the right size, or
+     * into a new raster, sized the way {@link PDFRenderer#renderImageWithDPI}
+     * would size it.  Safe on any thread as long as the raster is not on
+     * screen.
+     */
+    private static PageRaster renderPdfPage(PageRaster reuse, PDFRenderer renderer, PDDocument document,
+                                            int index, int contentId) throws IOException {
+        PageRenderEvent event = new PageRenderEvent();
+        event.begin();
+        long start = System.nanoTime();
+        PDPage page = document.getPage(index);
+        PDRectangle cropBox = page.getCropBox();
+        float scale = PDF_DPI / 72f;
+        boolean rotated = page.getRotation() == 90 || page.getRotation() == 270;
+        float widthPt = rotated ? cropBox.getHeight() : cropBox.getWidth();
+        float heightPt = rotated ? cropBox.getWidth() : cropBox.getHeight();
+        int width = (int) Math.max(Math.floor(widthPt * scale), 1);
+        int height = (int) Math.max(Math.floor(heightPt * scale), 1);
+        PageRaster raster = PageRaster.reuseOrAllocate(reuse, width, height);
+        Graphics2D graphics = raster.begin();
+        try {
+            renderer.renderPageToGraphics(index, graphics, scale);
+        } finally {
+            graphics.dispose();
+        }
+        Metrics.getInstance().timer("reader.render.pdfPage").recordSince(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.contentId = contentId;
+            event.page = index + 1;
+            event.dpi = PDF_DPI;
+            event.bytes = raster.getByteCount();
+            event.commit();
+        }
+        return raster;
+    }
+
+    /**
+     * Show a comic archive or multi-page image.  Only its page directory has
+     * been read; pages are decoded at display size as they are shown, with
+     * the neighbours prefetched.
+     */
+    private void loadPagedImage(PagedImage image, Path path) throws IOException {
+        if (image.getPageCount() == 0) {
+            image.close();
+            statusLabel.setText("File contains no pages");
+            showUnsupported(path);
+            return;
+        }
+        pagedImage = image;
+        mode = ReaderMode.PAGED_IMAGE;
+        totalPages = image.getPageCount();
         currentPage = Math.min(currentPage, totalPages - 1);
-        displayCurrentPdfPage();
+        displayCurrentImagePage();
+    }
+
+    private void closePagedImage() {
+        if (pagedImage == null) {
+            return;
+        }
+        imagePages.values().forEach(page -> page.cancel(false));
+        imagePages.clear();
+        try {
+            pagedImage.close();
+        } catch (IOException ignored) {
+        }
+        pagedImage = null;
+    }
+
+    private void displayCurrentImagePage() {
+        if (pagedImage == null) {
+            return;
+        }
+        int decodeWidth = imageDecodeWidth();
+        CompletableFuture<BufferedImage> ready = imagePages.remove(currentPage);
+        BufferedImage page;
+        try {
+            if (ready != null && ready.isDone() && !ready.isCompletedExceptionally()) {
+                Metrics.getInstance().counter("reader.prefetch.hit").increment();
+                page = ready.join();
+            } else {
+                Metrics.getInstance().counter("reader.prefetch.miss").increment();
+                if (ready != null) {
+                    ready.cancel(false);
+                }
+                long start = System.nanoTime();
+                page = pagedImage.readPage(currentPage, decodeWidth);
+                Metrics.getInstance().timer("reader.render.imagePage").recordSince(start);
+            }
+        } catch (IOException ex) {
+            showError("Unable to read page", ex.getMessage());
+            return;
+        }
+        pageRaster = PageRaster.reuseOrAllocate(pageRaster, page.getWidth(), page.getHeight());
+        pageRaster.draw(page);
+        prefetchImagePagesAround(currentPage, decodeWidth);
+        ImageView view = imageView();
+        view.setImage(pageRaster.getImage());
+        view.setFitWidth(Math.max(200, getViewportWidth() - 40));
+        setContentNode(view);
+        updateNavigationState();
+    }
+
+    /**
+     * Width, in device pixels, at which the page fills the viewport.  Pages
+     * are decoded no larger than needed for it.
+     */
+    private int imageDecodeWidth() {
+        double outputScale = contentScroll.getScene() != null && contentScroll.getScene().getWindow() != null
+                ? contentScroll.getScene().getWindow().getOutputScaleX()
+                : 1.0;
+        return (int) Math.ceil(Math.max(200, getViewportWidth() - 40) * outputScale);
+    }
+
+    /**
+     * Decode the pages next to {@code page} in the background and drop those
+     * that fell out of the window, so at most a few decoded pages are held.
+     */
+    private void prefetchImagePagesAround(int page, int decodeWidth) {
+        imagePages.entrySet().removeIf(entry -> {
+            int index = entry.getKey();
+            boolean keep = index >= page - 1 && index <= page + PREFETCH_PAGES;
+            if (!keep) {
+                entry.getValue().cancel(false);
+            }
+            return !keep;
+        });
+        for (int index = page - 1; index <= page + PREFETCH_PAGES; index++) {
+            if (index != page && index >= 0 && index < totalPages && !imagePages.containsKey(index)) {
+                imagePages.put(index, pagedImage.readPageAsync(index, decodeWidth));
+            }
+        }
     }
 
     private void loadImage(Path path) throws IOException {
+        BufferedImage bufferedImage;
         try (InputStream inputStream = Files.newInputStream(path)) {
-            BufferedImage bufferedImage = ImageIO.read(inputStream);
-            if (bufferedImage == null) {
-                throw new IOException("Unsupported image format");
-            }
-            Image image = SwingFXUtils.toFXImage(bufferedImage, null);
-            imageView.setImage(image);
-            imageView.setFitWidth(Math.max(200, getViewportWidth() - 40));
-            mode = ReaderMode.IMAGE;
-            totalPages = 1;
-            currentPage = 0;
-            setContentNode(imageView);
-            updateNavigationState();
+            bufferedImage = ImageIO.read(inputStream);
         }
+        if (bufferedImage == null) {
+            throw new IOException("Unsupported image format");
+        }
+        pageRaster = PageRaster.reuseOrAllocate(pageRaster, bufferedImage.getWidth(), bufferedImage.getHeight());
+        pageRaster.draw(bufferedImage);
+        ImageView view = imageView();
+        view.setImage(pageRaster.getImage());
+        view.setFitWidth(Math.max(200, getViewportWidth() - 40));
+        mode = ReaderMode.IMAGE;
+        totalPages = 1;
+        currentPage = 0;
+        setContentNode(view);
+        updateNavigationState();
     }
 
     private void displayCurrentEpubPage() {
-        if (epubPages.isEmpty()) {
+        if (epub == null) {
             return;
         }
-        String html = epubPages.get(currentPage);
-        webView.getEngine().loadContent(html);
-        webView.setPrefWidth(Math.max(200, getViewportWidth() - 40));
-        setContentNode(webView);
+        String html;
+        try {
+            html = epub.getChapterCount() == 0 ? "<p>No readable content</p>" : epub.readChapter(currentPage);
+        } catch (IOException ex) {
+            showError("Unable to read chapter", ex.getMessage());
+            return;
+        }
+        WebView view = webView();
+        view.getEngine().loadContent(html);
+        view.setPrefWidth(Math.max(200, getViewportWidth() - 40));
+        setContentNode(view);
         updateNavigationState();
         applyWebTheme(themeManager.getActiveTheme());
     }
 
     private void displayCurrentPdfPage() {
-        if (pdfPages.isEmpty()) {
+        if (pdf == null) {
             return;
         }
-        imageView.setImage(pdfPages.get(currentPage));
-        imageView.setFitWidth(Math.max(200, getViewportWidth() - 40));
-        setContentNode(imageView);
+        CompletableFuture<PageRaster> ready = prefetched.remove(currentPage);
+        PageRaster raster;
+        if (ready != null && ready.isDone() && !ready.isCompletedExceptionally()) {
+            Metrics.getInstance().counter("reader.prefetch.hit").increment();
+            raster = ready.join();
+        } else {
+            Metrics.getInstance().counter("reader.prefetch.miss").increment();
+            if (ready != null) {
+                ready.thenAccept(late -> Platform.runLater(() -> recycle(late)));
+            }
+            raster = renderCurrentPdfPage();
+            if (raster == null) {
+                return;
+            }
+        }
+        PageRaster previous = pageRaster;
+        pageRaster = raster;
+        if (previous != null && previous != raster) {
+            recycle(previous);
+        }
+        paintMatches();
+        pageRaster.publish();
+        prefetchAround(currentPage);
+        ImageView view = imageView();
+        view.setImage(pageRaster.getImage());
+        view.setFitWidth(Math.max(200, getViewportWidth() - 40));
+        setContentNode(view);
         updateNavigationState();
     }
 
+    /** Render the current page on this thread, into the on-screen raster when the size allows. */
+    private PageRaster renderCurrentPdfPage() {
+        int contentId = content.getContentID();
+        try {
+            return pdf.call(currentPage,
+                    (renderer, document, index) -> renderPdfPage(pageRaster, renderer, document, index, contentId));
+        } catch (IOException ex) {
+            showError("Unable to render page", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Render the page on screen again to add or remove find marks.
+     */
+    private void redrawPdfPage() {
+        if (pdf == null || pageRaster == null) {
+            return;
+        }
+        PageRaster raster = renderCurrentPdfPage();
+        if (raster == null) {
+            return;
+        }
+        pageRaster = raster;
+        paintMatches();
+        pageRaster.publish();
+        imageView().setImage(pageRaster.getImage());
+    }
+
+    private void paintMatches() {
+        pageMarked = paintMatches(currentPage, pageRaster);
+    }
+
+    /**
+     * Mark the find matches of a page on its raster, the selected match in a
+     * stronger colour.  Glyph boxes are located once per page and query.
+     *
+     * @return whether anything was painted
+     */
+    private boolean paintMatches(int pageIndex, PageRaster raster) {
+        if (findPattern == null || pdf == null) {
+            return false;
+        }
+        List<List<Rectangle2D>> occurrences = matchBoxes.get(pageIndex);
+        if (occurrences == null) {
+            Pattern pattern = findPattern;
+            try {
+                occurrences = pdf.call(pageIndex,
+                        (renderer, document, index) -> PdfTextLocator.locate(document, index, pattern));
+            } catch (IOException ex) {
+                occurrences = List.of();
+            }
+            matchBoxes.put(pageIndex, occurrences);
+        }
+        if (occurrences.isEmpty()) {
+            return false;
+        }
+        int current = selectedMatchOn(pageIndex);
+        double scale = PDF_DPI / 72.0;
+        Graphics2D graphics = raster.overlay();
+        try {
+            for (int i = 0; i < occurrences.size(); i++) {
+                graphics.setColor(i == current ? CURRENT_MATCH_COLOUR : MATCH_COLOUR);
+                for (Rectangle2D box : occurrences.get(i)) {
+                    // Glyph boxes hug the cap height; pad them to cover ascenders and descenders.
+                    graphics.fill(new Rectangle2D.Double((box.getX() - 1) * scale, (box.getY() - 2) * scale,
+                            (box.getWidth() + 2) * scale, (box.getHeight() + 4) * scale));
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return true;
+    }
+
+    private boolean isContinuous() {
+        return continuousToggle.isSelected() && mode == ReaderMode.PDF;
+    }
+
+    private ContinuousPdfView continuousView() {
+        if (continuousView == null) {
+            continuousView = new ContinuousPdfView(
+                    (reuse, renderer, document, index) -> renderPdfPage(reuse, renderer, document, index, pdfContentId),
+                    this::paintMatches,
+                    index -> {
+                        currentPage = index;
+                        updateNavigationState();
+                        persistProgress();
+                    });
+        }
+        return continuousView;
+    }
+
+    /**
+     * Show the open PDF as one scrolling column of pages, positioned at the
+     * current page.
+     */
+    private void displayContinuousPdf() {
+        if (pdf == null) {
+            return;
+        }
+        ContinuousPdfView view = continuousView();
+        try {
+            view.open(pdf, pdfLayout());
+        } catch (IOException ex) {
+            showError("Unable to open page list", ex.getMessage());
+            return;
+        }
+        setContentNode(view.getNode());
+        view.scrollTo(currentPage);
+        updateNavigationState();
+    }
+
+    /**
+     * Page sizes of the open PDF: from its index sidecar when the file has
+     * not changed since, otherwise read from the page tree and stored.
+     */
+    private DocumentIndex.Layout pdfLayout() throws IOException {
+        if (pdfLayout == null) {
+            DocumentIndex index = DocumentIndex.getInstance();
+            pdfLayout = index.find(pdfPath)
+                    .filter(layout -> layout.hasPageSizes() && layout.getPageCount() == totalPages)
+                    .orElse(null);
+            if (pdfLayout == null) {
+                pdfLayout = pdf.call(0, (renderer, document, ignored) -> DocumentIndex.Layout.ofPdf(document));
+                index.store(pdfPath, pdfLayout);
+            }
+        }
+        return pdfLayout;
+    }
+
     private void setContentNode(Node node) {
         contentHolder.getChildren().setAll(node);
     }
@@ -264,12 +864,19 @@ public class ReaderController {
     private void displayCurrentPage() {
         switch (mode) {
             case EPUB -> displayCurrentEpubPage();
-            case PDF -> displayCurrentPdfPage();
+            case PAGED_IMAGE -> displayCurrentImagePage();
+            case PDF -> {
+                if (isContinuous()) {
+                    displayContinuousPdf();
+                } else {
+                    displayCurrentPdfPage();
+                }
+            }
             case TEXT, UNSUPPORTED -> {
-                setContentNode(webView);
+                setContentNode(webView());
                 applyWebTheme(themeManager.getActiveTheme());
             }
-            case IMAGE -> setContentNode(imageView);
+            case IMAGE -> setContentNode(imageView());
         }
         updateNavigationState();
         persistProgress();
@@ -277,32 +884,54 @@ public class ReaderController {
 
     private void updateNavigationState() {
         pageLabel.setText("Page " + (currentPage + 1) + " / " + totalPages);
+        continuousToggle.setVisible(mode == ReaderMode.PDF);
+        continuousToggle.setManaged(mode == ReaderMode.PDF);
         boolean multiPage = totalPages > 1;
         prevButton.setDisable(!multiPage || currentPage <= 0);
         nextButton.setDisable(!multiPage || currentPage >= totalPages - 1);
     }
 
-    private void restoreProgress() {
+    /**
+     * The one-based page the current user last read the content at, or
+     * {@code 0} when there is no history.
+     */
+    private int savedPage() {
         if (CurrentUser.get() == null || content == null) {
-            displayCurrentPage();
-            return;
+            return 0;
         }
         HistoryRecord record = historyService.getLatestEntry(CurrentUser.get().getUserID(), content.getContentID());
-        if (record == null) {
-            displayCurrentPage();
-            return;
+        return record == null ? 0 : Math.max(1, record.getPageNumber());
+    }
+
+    /**
+     * Record the opening.  The loaders already opened the document at the
+     * saved page.
+     */
+    private void restoreProgress(int savedPage) {
+        updateNavigationState();
+        persistProgress();
+        if (savedPage > 0) {
+            statusLabel.setText("Resumed from page " + (currentPage + 1));
         }
-        int page = Math.max(1, record.getPageNumber());
-        currentPage = Math.min(page - 1, Math.max(totalPages - 1, 0));
-        displayCurrentPage();
-        statusLabel.setText("Resumed from page " + page);
     }
 
     private void persistProgress() {
         if (CurrentUser.get() == null || content == null) {
             return;
         }
-        historyService.saveProgress(CurrentUser.get().getUserID(), content.getContentID(), currentPage + 1);
+        progressTracker.record(CurrentUser.get().getUserID(), content.getContentID(), currentPage + 1);
+    }
+
+    /**
+     * Write the current reading position now instead of waiting for the
+     * progress tracker.  Called when the reader window is hidden.
+     */
+    public void flushProgress() {
+        if (CurrentUser.get() == null || content == null) {
+            return;
+        }
+        persistProgress();
+        progressTracker.flush(CurrentUser.get().getUserID(), content.getContentID());
     }
 
     private void updateFavouriteState() {
@@ -333,8 +962,224 @@ public class ReaderController {
         return width > 0 ? width : 800;
     }
 
+    private boolean isSearchable() {
+        return mode == ReaderMode.PDF || mode == ReaderMode.EPUB || mode == ReaderMode.TEXT;
+    }
+
+    private void onFindAction() {
+        String query = findField.getText().trim();
+        if (!query.isEmpty() && query.equals(findQuery)) {
+            showNextMatch();
+        } else {
+            startFind(query);
+        }
+    }
+
+    /**
+     * Search the open document for {@code query}, replacing any previous
+     * search.  Matches stream in page by page; the first one at or after
+     * the current page is selected as soon as it is found.
+     */
+    private void startFind(String query) {
+        cancelFind();
+        findQuery = query.isEmpty() ? null : query;
+        findPattern = findQuery == null ? null : DocumentFinder.pattern(findQuery);
+        if (findQuery != null && content != null && isSearchable()) {
+            int generation = findGeneration;
+            findTask = documentFinder.find(content, findQuery, new DocumentFinder.Listener() {
+                @Override
+                public void pageScanned(int pageIndex, List<DocumentFinder.Match> matches) {
+                    Platform.runLater(() -> {
+                        if (generation == findGeneration) {
+                            onPageScanned(pageIndex, matches);
+                        }
+                    });
+                }
+
+                @Override
+                public void completed(List<DocumentFinder.Match> matches, boolean truncated) {
+                    Platform.runLater(() -> {
+                        if (generation == findGeneration) {
+                            onFindCompleted(matches, truncated);
+                        }
+                    });
+                }
+
+                @Override
+                public void failed(IOException error) {
+                    Platform.runLater(() -> {
+                        if (generation == findGeneration) {
+                            findTask = null;
+                            findComplete = true;
+                            findLabel.setText("Search failed");
+                            statusLabel.setText("Search failed: " + error.getMessage());
+                        }
+                    });
+                }
+            });
+        }
+        updateFindState();
+        refreshMatches();
+    }
+
+    private void cancelFind() {
+        findGeneration++;
+        if (findTask != null) {
+            findTask.cancel(true);
+            findTask = null;
+        }
+        findHits.clear();
+        matchBoxes.clear();
+        currentHit = -1;
+        findComplete = false;
+        findTruncated = false;
+    }
+
+    private void onPageScanned(int pageIndex, List<DocumentFinder.Match> matches) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        findHits.addAll(matches);
+        if (currentHit < 0 && pageIndex >= currentPage) {
+            selectMatch(findHits.size() - matches.size());
+        } else if (pageIndex == currentPage) {
+            refreshMatches();
+        }
+        updateFindState();
+    }
+
+    private void onFindCompleted(List<DocumentFinder.Match> matches, boolean truncated) {
+        findTask = null;
+        findComplete = true;
+        findTruncated = truncated;
+        findHits.clear();
+        findHits.addAll(matches);
+        if (currentHit < 0 && !findHits.isEmpty()) {
+            selectMatch(firstMatchFrom(currentPage));
+        }
+        updateFindState();
+    }
+
+    private int firstMatchFrom(int page) {
+        for (int i = 0; i < findHits.size(); i++) {
+            if (findHits.get(i).getPageIndex() >= page) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private void showNextMatch() {
+        if (findHits.isEmpty()) {
+            return;
+        }
+        if (currentHit < 0) {
+            selectMatch(firstMatchFrom(currentPage));
+        } else if (currentHit + 1 < findHits.size()) {
+            selectMatch(currentHit + 1);
+        } else if (findComplete) {
+            selectMatch(0);
+        }
+    }
+
+    private void showPreviousMatch() {
+        if (findHits.isEmpty()) {
+            return;
+        }
+        if (currentHit > 0) {
+            selectMatch(currentHit - 1);
+        } else if (findComplete) {
+            selectMatch(findHits.size() - 1);
+        }
+    }
+
+    private void selectMatch(int index) {
+        currentHit = index;
+        int page = findHits.get(index).getPageIndex();
+        boolean pageChanged = page != currentPage && page < totalPages;
+        if (pageChanged) {
+            currentPage = page;
+            displayCurrentPage();
+        }
+        // A continuous view shows several pages; all of them need their marks updated.
+        if (!pageChanged || isContinuous()) {
+            refreshMatches();
+        }
+        updateFindState();
+    }
+
+    /** Position of the selected match among the matches on a page, or -1. */
+    private int selectedMatchOn(int pageIndex) {
+        if (currentHit < 0 || findHits.get(currentHit).getPageIndex() != pageIndex) {
+            return -1;
+        }
+        int ordinal = 0;
+        for (int i = currentHit - 1; i >= 0 && findHits.get(i).getPageIndex() == pageIndex; i--) {
+            ordinal++;
+        }
+        return ordinal;
+    }
+
+    private void refreshMatches() {
+        if (mode == ReaderMode.PDF && isContinuous()) {
+            continuousView.refresh();
+        } else if (mode == ReaderMode.PDF) {
+            if (findPattern != null || pageMarked) {
+                redrawPdfPage();
+            }
+        } else {
+            applyWebMatches();
+        }
+    }
+
+    /**
+     * Wrap the matches in the displayed HTML in {@code <mark>} elements and
+     * scroll the selected one into view.  Runs again whenever a page loads.
+     */
+    private void applyWebMatches() {
+        if (webView == null || (mode != ReaderMode.EPUB && mode != ReaderMode.TEXT)
+                || webView.getEngine().getLoadWorker().getState() == Worker.State.RUNNING) {
+            return;
+        }
+        try {
+            webView.getEngine().executeScript(MARK_MATCHES_SCRIPT + "(" + jsString(findQuery) + ","
+                    + selectedMatchOn(currentPage) + ")");
+        } catch (Exception ignored) {
+            // WebView may not be ready yet
+        }
+    }
+
+    private void updateFindState() {
+        findField.setDisable(content == null || !isSearchable());
+        findPreviousButton.setDisable(findHits.isEmpty());
+        findNextButton.setDisable(findHits.isEmpty());
+        if (findQuery == null) {
+            findLabel.setText("");
+        } else if (findHits.isEmpty()) {
+            findLabel.setText(findComplete ? "No matches" : "Searching...");
+        } else {
+            String total = findHits.size() + (findTruncated ? "+" : "") + (findComplete ? "" : "...");
+            findLabel.setText(currentHit >= 0 ? (currentHit + 1) + " of " + total : total + " matches");
+        }
+    }
+
+    private static String jsString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder js = new StringBuilder("'");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '\'' || c < 0x20 || c == '<' || c == '>' || c == 0x2028 || c == 0x2029) {
+                js.append(String.format("\\u%04x", (int) c));
+            } else {
+                js.append(c);
+            }
+        }
+        return js.append('\'').toString();
+    }
+
     private void handleClose() {
-        persistProgress();
         closeButton.getScene().getWindow().hide();
     }
 
@@ -348,9 +1193,7 @@ public class ReaderController {
                 return;
             }
             Desktop.getDesktop().open(new File(content.getFilePath()));
-            if (CurrentUser.get() != null) {
-                historyService.saveProgress(CurrentUser.get().getUserID(), content.getContentID(), currentPage + 1);
-            }
+            flushProgress();
         } catch (IOException ex) {
             showError("Unable to open externally", ex.getMessage());
         }
@@ -372,8 +1215,9 @@ public class ReaderController {
                 + "<p><strong>Unsupported file type.</strong></p>"
                 + "<p>Use the <em>Open externally</em> button to launch the file in a native application.</p>"
                 + "</div></body></html>";
-        webView.getEngine().loadContent(message);
-        setContentNode(webView);
+        WebView view = webView();
+        view.getEngine().loadContent(message);
+        setContentNode(view);
         updateNavigationState();
         statusLabel.setText("Unsupported format: " + path.getFileName());
     }
@@ -393,6 +1237,9 @@ public class ReaderController {
 
     private void applyWebTheme(Theme theme) {
         Platform.runLater(() -> {
+            if (webView == null) {
+                return;
+            }
             try {
                 webView.getEngine().executeScript(
                         "if (document && document.body){document.body.setAttribute('data-theme','" +
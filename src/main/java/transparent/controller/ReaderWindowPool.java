@@ -0,0 +1,164 @@
+package transparent.controller;
+
+import javafx.animation.PauseTransition;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.util.Duration;
+import transparent.metrics.Metrics;
+import transparent.ui.ThemeManager;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Keeps a few reader windows ready so opening a document does not pay for
+ * FXML loading, stage creation and the first WebView on every click.  A
+ * window is created shortly after the library appears, and windows are
+ * returned here when the user closes them instead of being discarded.
+ *
+ * <p>All methods must be called on the JavaFX application thread.</p>
+ */
+public final class ReaderWindowPool {
+    private static final int MAX_IDLE = 2;
+    /** Give the library window time to paint before building a reader behind it. */
+    private static final Duration WARM_UP_DELAY = Duration.millis(500);
+
+    private final Deque<ReaderWindow> idle = new ArrayDeque<>();
+    private final Metrics metrics = Metrics.getInstance();
+
+    private ReaderWindowPool() {
+    }
+
+    private static final class Holder {
+        private static final ReaderWindowPool INSTANCE = new ReaderWindowPool();
+    }
+
+    public static ReaderWindowPool getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * A pooled reader: the stage and the controller bound to its scene.
+     */
+    public static final class ReaderWindow {
+        private final Stage stage;
+        private final ReaderController controller;
+        private final Window owner;
+        private Runnable onClose;
+
+        private ReaderWindow(Stage stage, ReaderController controller, Window owner) {
+            this.stage = stage;
+            this.controller = controller;
+            this.owner = owner;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public ReaderController getController() {
+            return controller;
+        }
+
+        /**
+         * Run {@code action} once, when the user closes the window for the
+         * current document.
+         */
+        public void setOnClose(Runnable action) {
+            this.onClose = action;
+        }
+    }
+
+    /**
+     * Build one idle reader window for {@code owner} in the background of the
+     * FX thread.  WebView can only be created on that thread, so the work is
+     * deferred rather than moved elsewhere.
+     */
+    public void warmUp(Window owner) {
+        PauseTransition delay = new PauseTransition(WARM_UP_DELAY);
+        delay.setOnFinished(e -> {
+            if (!hasIdleFor(owner)) {
+                try {
+                    ReaderWindow window = create(owner);
+                    window.controller.prewarm();
+                    idle.push(window);
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
+        delay.play();
+    }
+
+    /**
+     * Return an idle window owned by {@code owner}, or create a new one.  The
+     * caller loads a document and shows the stage.
+     */
+    public ReaderWindow acquire(Window owner) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Iterator<ReaderWindow> it = idle.iterator();
+            while (it.hasNext()) {
+                ReaderWindow window = it.next();
+                if (window.owner == owner) {
+                    it.remove();
+                    metrics.counter("reader.pool.hit").increment();
+                    return window;
+                }
+            }
+            metrics.counter("reader.pool.miss").increment();
+            return create(owner);
+        } finally {
+            metrics.timer("reader.window.acquire").recordSince(start);
+        }
+    }
+
+    private boolean hasIdleFor(Window owner) {
+        return idle.stream().anyMatch(window -> window.owner == owner);
+    }
+
+    private ReaderWindow create(Window owner) throws IOException {
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("/reader.fxml"));
+        Parent root = loader.load();
+        Stage stage = new Stage();
+        if (owner != null) {
+            stage.initOwner(owner);
+        }
+        Scene scene = new Scene(root);
+        ThemeManager.getInstance().register(scene);
+        stage.setScene(scene);
+        ReaderWindow window = new ReaderWindow(stage, loader.getController(), owner);
+        stage.setOnHidden(e -> release(window));
+        return window;
+    }
+
+    private void release(ReaderWindow window) {
+        window.controller.flushProgress();
+        window.controller.clear();
+        Runnable onClose = window.onClose;
+        window.onClose = null;
+        if (onClose != null) {
+            onClose.run();
+        }
+        // A closed owner will never show its readers again.
+        idle.removeIf(other -> {
+            boolean orphaned = other.owner != null && !other.owner.isShowing();
+            if (orphaned) {
+                other.controller.dispose();
+            }
+            return orphaned;
+        });
+        if (idle.size() < MAX_IDLE && (window.owner == null || window.owner.isShowing())) {
+            idle.push(window);
+        } else {
+            // Not pooled: drop its listeners and buffers so nothing keeps the window alive.
+            window.controller.dispose();
+            window.stage.setScene(null);
+        }
+    }
+}
@@ -5,14 +5,22 @@ import transparent.model.Content;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Data access object for {@link Content}.  Provides CRUD operations for
  * managing content records.  Only insert and query operations are implemented
- * here as part of the assignment scaffold.
+ * here as part of the assignment scaffold.  Bulk imports use
+ * {@link #insertContents(List)} which batches the inserts.
  */
 public class ContentDAO {
+    /** Rows per JDBC batch; also bounds the parameter count of ID lookups. */
+    private static final int BATCH_SIZE = 500;
+    /** Size recorded for an entry whose file is gone; real files never have it. */
+    private static final long MISSING_SIZE = -1;
 
     /**
      * Insert a new piece of content into the database.  The contentID will be
@@ -22,18 +30,189 @@ public class ContentDAO {
      * @throws SQLException if a database error occurs
      */
     public void insertContent(Content content) throws SQLException {
-        String sql = "INSERT INTO Contents (Title, FilePath, FileType, Size, DayAdded) " +
-                     "VALUES (?, ?, ?, ?, GETDATE())";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, content.getTitle());
-            ps.setString(2, content.getFilePath());
-            ps.setString(3, content.getFileType());
-            ps.setLong(4, content.getSizeBytes());
-            ps.executeUpdate();
-            ResultSet keys = ps.getGeneratedKeys();
-            if (keys.next()) {
-                content.setContentID(keys.getInt(1));
+        SqlCalls.run("content.insertContent", () -> {
+            String sql = "INSERT INTO Contents (Title, FilePath, FileType, Size, DayAdded) " +
+                         "VALUES (?, ?, ?, ?, GETDATE())";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, content.getTitle());
+                ps.setString(2, content.getFilePath());
+                ps.setString(3, content.getFileType());
+                ps.setLong(4, content.getSizeBytes());
+                ps.executeUpdate();
+                ResultSet keys = ps.getGeneratedKeys();
+                if (keys.next()) {
+                    content.setContentID(keys.getInt(1));
+                }
+            }
+        });
+    }
+
+    /**
+     * Insert many content entries using JDBC batching inside a single
+     * transaction.  Generated IDs are resolved afterwards with one keyed lookup
+     * per chunk and set on the supplied objects.  Either every row is inserted
+     * or none is.
+     *
+     * @param contents the content entries to insert
+     * @throws SQLException if a database error occurs
+     */
+    public void insertContents(List<Content> contents) throws SQLException {
+        SqlCalls.run("content.insertContents", () -> {
+            if (contents.isEmpty()) {
+                return;
+            }
+            String sql = "INSERT INTO Contents (Title, FilePath, FileType, Size, DayAdded) " +
+                         "VALUES (?, ?, ?, ?, COALESCE(?, GETDATE()))";
+            try (Connection conn = DBConnectionManager.getConnection()) {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        int pending = 0;
+                        for (Content content : contents) {
+                            ps.setString(1, content.getTitle());
+                            ps.setString(2, content.getFilePath());
+                            ps.setString(3, content.getFileType());
+                            ps.setLong(4, content.getSizeBytes());
+                            // Entries added offline keep the date they were added.
+                            ps.setTimestamp(5, content.getDayAdded() == null ? null
+                                    : Timestamp.valueOf(content.getDayAdded()));
+                            ps.addBatch();
+                            if (++pending == BATCH_SIZE) {
+                                ps.executeBatch();
+                                pending = 0;
+                            }
+                        }
+                        if (pending > 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                    resolveGeneratedIds(conn, contents);
+                    conn.commit();
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            }
+        });
+    }
+
+    /**
+     * Set the IDs of entries whose file path is already stored in the
+     * database, e.g. entries created offline whose insertion was replayed
+     * before the application could record the new IDs.  Entries without a
+     * stored row keep their ID.
+     *
+     * @param contents the content entries to look up
+     * @throws SQLException if a database error occurs
+     */
+    public void assignExistingIds(List<Content> contents) throws SQLException {
+        SqlCalls.run("content.assignExistingIds", () -> {
+            if (contents.isEmpty()) {
+                return;
+            }
+            try (Connection conn = DBConnectionManager.getConnection()) {
+                resolveGeneratedIds(conn, contents);
+            }
+        });
+    }
+
+    /**
+     * Update the file location, type and size of many content entries in one
+     * batched transaction.  Entries with local (non-positive) IDs are ignored.
+     *
+     * @param contents the content entries to update
+     * @throws SQLException if a database error occurs
+     */
+    public void updateContentFiles(List<Content> contents) throws SQLException {
+        SqlCalls.run("content.updateContentFiles", () -> {
+            String sql = "UPDATE Contents SET FilePath = ?, FileType = ?, Size = ? WHERE ContentID = ?";
+            executeBatch(sql, contents, (ps, content) -> {
+                ps.setString(1, content.getFilePath());
+                ps.setString(2, content.getFileType());
+                ps.setLong(3, content.getSizeBytes());
+                ps.setInt(4, content.getContentID());
+            });
+        });
+    }
+
+    /**
+     * Mark many content entries as missing, i.e. their file is gone, in one
+     * batched transaction.  The rows stay, so the history and favourite rows
+     * referencing them remain valid, but are no longer listed.  Entries with
+     * local (non-positive) IDs are ignored.
+     *
+     * @param contents the content entries to mark
+     * @throws SQLException if a database error occurs
+     */
+    public void markContentsMissing(List<Content> contents) throws SQLException {
+        SqlCalls.run("content.markContentsMissing", () -> {
+            String sql = "UPDATE Contents SET Size = " + MISSING_SIZE + " WHERE ContentID = ?";
+            executeBatch(sql, contents, (ps, content) -> ps.setInt(1, content.getContentID()));
+        });
+    }
+
+    private void executeBatch(String sql, List<Content> contents, RowBinder binder) throws SQLException {
+        List<Content> stored = contents.stream().filter(content -> content.getContentID() > 0).toList();
+        if (stored.isEmpty()) {
+            return;
+        }
+        try (Connection conn = DBConnectionManager.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int pending = 0;
+                for (Content content : stored) {
+                    binder.bind(ps, content);
+                    ps.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement ps, Content content) throws SQLException;
+    }
+
+    private void resolveGeneratedIds(Connection conn, List<Content> contents) throws SQLException {
+        for (int start = 0; start < contents.size(); start += BATCH_SIZE) {
+            List<Content> chunk = contents.subList(start, Math.min(contents.size(), start + BATCH_SIZE));
+            Map<String, Content> byPath = new HashMap<>();
+            for (Content content : chunk) {
+                byPath.put(content.getFilePath(), content);
+            }
+            String placeholders = String.join(", ", Collections.nCopies(byPath.size(), "?"));
+            String sql = "SELECT ContentID, FilePath FROM Contents WHERE FilePath IN (" + placeholders + ")";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int index = 1;
+                for (String path : byPath.keySet()) {
+                    ps.setString(index++, path);
+                }
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    Content content = byPath.get(rs.getString("FilePath"));
+                    // Keep the highest ID when a path was imported before.
+                    if (content != null && rs.getInt("ContentID") > content.getContentID()) {
+                        content.setContentID(rs.getInt("ContentID"));
+                    }
+                }
             }
         }
     }
@@ -45,16 +224,18 @@ public class ContentDAO {
      * @throws SQLException if a database error occurs
      */
     public List<Content> getAllContents() throws SQLException {
-        String sql = "SELECT * FROM Contents ORDER BY DayAdded DESC";
-        try (Connection conn = DBConnectionManager.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            List<Content> list = new ArrayList<>();
-            while (rs.next()) {
-                list.add(mapRow(rs));
+        return SqlCalls.call("content.getAllContents", () -> {
+            String sql = "SELECT * FROM Contents WHERE Size <> " + MISSING_SIZE + " ORDER BY DayAdded DESC";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                List<Content> list = new ArrayList<>();
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
+                return list;
             }
-            return list;
-        }
+        });
     }
 
     /**
@@ -65,17 +246,20 @@ public class ContentDAO {
      * @throws SQLException if a database error occurs
      */
     public List<Content> searchByTitle(String keyword) throws SQLException {
-        String sql = "SELECT * FROM Contents WHERE Title LIKE ? ORDER BY DayAdded DESC";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, "%" + keyword + "%");
-            ResultSet rs = ps.executeQuery();
-            List<Content> list = new ArrayList<>();
-            while (rs.next()) {
-                list.add(mapRow(rs));
+        return SqlCalls.call("content.searchByTitle", () -> {
+            String sql = "SELECT * FROM Contents WHERE Title LIKE ? AND Size <> " + MISSING_SIZE
+                    + " ORDER BY DayAdded DESC";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, "%" + keyword + "%");
+                ResultSet rs = ps.executeQuery();
+                List<Content> list = new ArrayList<>();
+                while (rs.next()) {
+                    list.add(mapRow(rs));
+                }
+                return list;
             }
-            return list;
-        }
+        });
     }
 
     private Content mapRow(ResultSet rs) throws SQLException {
@@ -12,6 +12,8 @@ import java.util.List;
  * favourites and retrieving a user's favourites list.
  */
 public class FavouriteDAO {
+    /** Rows per JDBC batch. */
+    private static final int BATCH_SIZE = 500;
 
     /**
      * Toggle a favourite entry.  If the user has already favourited the
@@ -21,29 +23,95 @@ public class FavouriteDAO {
      * @throws SQLException if a database error occurs
      */
     public void toggleFavourite(Favourite fav) throws SQLException {
-        String checkSql = "SELECT FavouriteID FROM Favourites WHERE UserID = ? AND ContentID = ?";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement check = conn.prepareStatement(checkSql)) {
-            check.setInt(1, fav.getUserID());
-            check.setInt(2, fav.getContentID());
-            ResultSet rs = check.executeQuery();
-            if (rs.next()) {
-                // Remove existing favourite
-                String deleteSql = "DELETE FROM Favourites WHERE FavouriteID = ?";
-                try (PreparedStatement delete = conn.prepareStatement(deleteSql)) {
-                    delete.setInt(1, rs.getInt("FavouriteID"));
-                    delete.executeUpdate();
+        SqlCalls.run("favourite.toggleFavourite", () -> {
+            String checkSql = "SELECT FavouriteID FROM Favourites WHERE UserID = ? AND ContentID = ?";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement check = conn.prepareStatement(checkSql)) {
+                check.setInt(1, fav.getUserID());
+                check.setInt(2, fav.getContentID());
+                ResultSet rs = check.executeQuery();
+                if (rs.next()) {
+                    // Remove existing favourite
+                    String deleteSql = "DELETE FROM Favourites WHERE FavouriteID = ?";
+                    try (PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+                        delete.setInt(1, rs.getInt("FavouriteID"));
+                        delete.executeUpdate();
+                    }
+                } else {
+                    // Insert new favourite
+                    String insertSql = "INSERT INTO Favourites (UserID, ContentID, AddedDate) VALUES (?, ?, GETDATE())";
+                    try (PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                        insert.setInt(1, fav.getUserID());
+                        insert.setInt(2, fav.getContentID());
+                        insert.executeUpdate();
+                    }
                 }
-            } else {
-                // Insert new favourite
-                String insertSql = "INSERT INTO Favourites (UserID, ContentID, AddedDate) VALUES (?, ?, GETDATE())";
-                try (PreparedStatement insert = conn.prepareStatement(insertSql)) {
-                    insert.setInt(1, fav.getUserID());
-                    insert.setInt(2, fav.getContentID());
-                    insert.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Write favourites added and removed offline in one batched transaction.
+     * Adding is idempotent.  A removal carries the time it was made in
+     * {@link Favourite#getAddedDate()} and only deletes a favourite added
+     * before then, so re-adding an item elsewhere afterwards wins.
+     *
+     * @param added   favourites to insert
+     * @param removed favourites to delete, stamped with the removal time
+     * @throws SQLException if a database error occurs
+     */
+    public void applyFavouriteChanges(List<Favourite> added, List<Favourite> removed) throws SQLException {
+        SqlCalls.run("favourite.applyFavouriteChanges", () -> {
+            if (added.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+            String insertSql = "INSERT INTO Favourites (UserID, ContentID, AddedDate) SELECT ?, ?, ? " +
+                               "WHERE NOT EXISTS (SELECT 1 FROM Favourites WHERE UserID = ? AND ContentID = ?)";
+            String deleteSql = "DELETE FROM Favourites WHERE UserID = ? AND ContentID = ? AND AddedDate <= ?";
+            try (Connection conn = DBConnectionManager.getConnection()) {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try (PreparedStatement insert = conn.prepareStatement(insertSql);
+                     PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+                    int pending = 0;
+                    for (Favourite fav : added) {
+                        insert.setInt(1, fav.getUserID());
+                        insert.setInt(2, fav.getContentID());
+                        insert.setTimestamp(3, Timestamp.valueOf(fav.getAddedDate()));
+                        insert.setInt(4, fav.getUserID());
+                        insert.setInt(5, fav.getContentID());
+                        insert.addBatch();
+                        if (++pending == BATCH_SIZE) {
+                            insert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        insert.executeBatch();
+                    }
+                    pending = 0;
+                    for (Favourite fav : removed) {
+                        delete.setInt(1, fav.getUserID());
+                        delete.setInt(2, fav.getContentID());
+                        delete.setTimestamp(3, Timestamp.valueOf(fav.getAddedDate()));
+                        delete.addBatch();
+                        if (++pending == BATCH_SIZE) {
+                            delete.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        delete.executeBatch();
+                    }
+                    conn.commit();
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
                 }
             }
-        }
+        });
     }
 
     /**
@@ -54,23 +122,59 @@ public class FavouriteDAO {
      * @throws SQLException if a database error occurs
      */
     public List<Favourite> getFavouritesByUser(int userId) throws SQLException {
-        String sql = "SELECT * FROM Favourites WHERE UserID = ? ORDER BY AddedDate DESC";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-            ResultSet rs = ps.executeQuery();
-            List<Favourite> list = new ArrayList<>();
-            while (rs.next()) {
-                Favourite fav = new Favourite(
-                        rs.getInt("FavouriteID"),
-                        rs.getInt("UserID"),
-                        rs.getInt("ContentID"),
-                        rs.getTimestamp("AddedDate").toLocalDateTime()
-                );
-                list.add(fav);
+        return SqlCalls.call("favourite.getFavouritesByUser", () -> {
+            String sql = "SELECT * FROM Favourites WHERE UserID = ? ORDER BY AddedDate DESC";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                ResultSet rs = ps.executeQuery();
+                List<Favourite> list = new ArrayList<>();
+                while (rs.next()) {
+                    Favourite fav = new Favourite(
+                            rs.getInt("FavouriteID"),
+                            rs.getInt("UserID"),
+                            rs.getInt("ContentID"),
+                            rs.getTimestamp("AddedDate").toLocalDateTime()
+                    );
+                    list.add(fav);
+                }
+                return list;
             }
-            return list;
-        }
+        });
+    }
+
+    /**
+     * Retrieve all favourites for a given user joined with the title and type
+     * of the referenced content in a single query.
+     *
+     * @param userId the ID of the user
+     * @return a list of favourites with content details attached
+     * @throws SQLException if a database error occurs
+     */
+    public List<Favourite> getFavouritesWithContentByUser(int userId) throws SQLException {
+        return SqlCalls.call("favourite.getFavouritesWithContentByUser", () -> {
+            String sql = "SELECT f.FavouriteID, f.UserID, f.ContentID, f.AddedDate, c.Title, c.FileType " +
+                         "FROM Favourites f LEFT JOIN Contents c ON c.ContentID = f.ContentID " +
+                         "WHERE f.UserID = ? ORDER BY f.AddedDate DESC";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                ResultSet rs = ps.executeQuery();
+                List<Favourite> list = new ArrayList<>();
+                while (rs.next()) {
+                    Favourite fav = new Favourite(
+                            rs.getInt("FavouriteID"),
+                            rs.getInt("UserID"),
+                            rs.getInt("ContentID"),
+                            rs.getTimestamp("AddedDate").toLocalDateTime()
+                    );
+                    fav.setContentTitle(rs.getString("Title"));
+                    fav.setContentType(rs.getString("FileType"));
+                    list.add(fav);
+                }
+                return list;
+            }
+        });
     }
 
     /**
@@ -82,13 +186,15 @@ public class FavouriteDAO {
      * @throws SQLException if a database error occurs
      */
     public boolean isFavourite(int userId, int contentId) throws SQLException {
-        String sql = "SELECT 1 FROM Favourites WHERE UserID = ? AND ContentID = ?";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-            ps.setInt(2, contentId);
-            ResultSet rs = ps.executeQuery();
-            return rs.next();
-        }
+        return SqlCalls.call("favourite.isFavourite", () -> {
+            String sql = "SELECT 1 FROM Favourites WHERE UserID = ? AND ContentID = ?";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                ps.setInt(2, contentId);
+                ResultSet rs = ps.executeQuery();
+                return rs.next();
+            }
+        });
     }
 }
\ No newline at end of file
@@ -12,6 +12,8 @@ import java.util.List;
  * updating history entries and retrieving a user's reading history.
  */
 public class HistoryDAO {
+    /** Rows per JDBC batch. */
+    private static final int BATCH_SIZE = 500;
 
     /**
      * Insert a new history record or update an existing one.  If a record for
@@ -22,31 +24,94 @@ public class HistoryDAO {
      * @throws SQLException if a database error occurs
      */
     public void upsertHistory(HistoryRecord record) throws SQLException {
-        String checkSql = "SELECT HistoryID FROM History WHERE UserID = ? AND ContentID = ?";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement check = conn.prepareStatement(checkSql)) {
-            check.setInt(1, record.getUserID());
-            check.setInt(2, record.getContentID());
-            ResultSet rs = check.executeQuery();
-            if (rs.next()) {
-                // Update existing
-                String updateSql = "UPDATE History SET LastReadTime = GETDATE(), PageNumber = ? WHERE HistoryID = ?";
-                try (PreparedStatement update = conn.prepareStatement(updateSql)) {
-                    update.setInt(1, record.getPageNumber());
-                    update.setInt(2, rs.getInt("HistoryID"));
-                    update.executeUpdate();
+        SqlCalls.run("history.upsertHistory", () -> {
+            String checkSql = "SELECT HistoryID FROM History WHERE UserID = ? AND ContentID = ?";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement check = conn.prepareStatement(checkSql)) {
+                check.setInt(1, record.getUserID());
+                check.setInt(2, record.getContentID());
+                ResultSet rs = check.executeQuery();
+                if (rs.next()) {
+                    // Update existing
+                    String updateSql = "UPDATE History SET LastReadTime = GETDATE(), PageNumber = ? WHERE HistoryID = ?";
+                    try (PreparedStatement update = conn.prepareStatement(updateSql)) {
+                        update.setInt(1, record.getPageNumber());
+                        update.setInt(2, rs.getInt("HistoryID"));
+                        update.executeUpdate();
+                    }
+                } else {
+                    // Insert new
+                    String insertSql = "INSERT INTO History (UserID, ContentID, LastReadTime, PageNumber) VALUES (?, ?, GETDATE(), ?)";
+                    try (PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                        insert.setInt(1, record.getUserID());
+                        insert.setInt(2, record.getContentID());
+                        insert.setInt(3, record.getPageNumber());
+                        insert.executeUpdate();
+                    }
                 }
-            } else {
-                // Insert new
-                String insertSql = "INSERT INTO History (UserID, ContentID, LastReadTime, PageNumber) VALUES (?, ?, GETDATE(), ?)";
-                try (PreparedStatement insert = conn.prepareStatement(insertSql)) {
-                    insert.setInt(1, record.getUserID());
-                    insert.setInt(2, record.getContentID());
-                    insert.setInt(3, record.getPageNumber());
-                    insert.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Write reading positions recorded offline in one batched transaction.
+     * Each record carries the time it was recorded; a row that was updated
+     * more recently in the database (e.g. from another machine) is left
+     * alone, so the latest position wins.
+     *
+     * @param records the history records to apply
+     * @throws SQLException if a database error occurs
+     */
+    public void applyHistory(List<HistoryRecord> records) throws SQLException {
+        SqlCalls.run("history.applyHistory", () -> {
+            if (records.isEmpty()) {
+                return;
+            }
+            String updateSql = "UPDATE History SET PageNumber = ?, LastReadTime = ? " +
+                               "WHERE UserID = ? AND ContentID = ? AND LastReadTime < ?";
+            String insertSql = "INSERT INTO History (UserID, ContentID, LastReadTime, PageNumber) " +
+                               "SELECT ?, ?, ?, ? WHERE NOT EXISTS " +
+                               "(SELECT 1 FROM History WHERE UserID = ? AND ContentID = ?)";
+            try (Connection conn = DBConnectionManager.getConnection()) {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try (PreparedStatement update = conn.prepareStatement(updateSql);
+                     PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                    int pending = 0;
+                    for (HistoryRecord record : records) {
+                        Timestamp readTime = Timestamp.valueOf(record.getLastReadTime());
+                        update.setInt(1, record.getPageNumber());
+                        update.setTimestamp(2, readTime);
+                        update.setInt(3, record.getUserID());
+                        update.setInt(4, record.getContentID());
+                        update.setTimestamp(5, readTime);
+                        update.addBatch();
+                        insert.setInt(1, record.getUserID());
+                        insert.setInt(2, record.getContentID());
+                        insert.setTimestamp(3, readTime);
+                        insert.setInt(4, record.getPageNumber());
+                        insert.setInt(5, record.getUserID());
+                        insert.setInt(6, record.getContentID());
+                        insert.addBatch();
+                        if (++pending == BATCH_SIZE) {
+                            update.executeBatch();
+                            insert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        update.executeBatch();
+                        insert.executeBatch();
+                    }
+                    conn.commit();
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
                 }
             }
-        }
+        });
     }
 
     /**
@@ -58,24 +123,62 @@ public class HistoryDAO {
      * @throws SQLException if a database error occurs
      */
     public List<HistoryRecord> getHistoryByUser(int userId) throws SQLException {
-        String sql = "SELECT * FROM History WHERE UserID = ? ORDER BY LastReadTime DESC";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-            ResultSet rs = ps.executeQuery();
-            List<HistoryRecord> list = new ArrayList<>();
-            while (rs.next()) {
-                HistoryRecord rec = new HistoryRecord(
-                        rs.getInt("HistoryID"),
-                        rs.getInt("UserID"),
-                        rs.getInt("ContentID"),
-                        rs.getTimestamp("LastReadTime").toLocalDateTime(),
-                        rs.getInt("PageNumber")
-                );
-                list.add(rec);
+        return SqlCalls.call("history.getHistoryByUser", () -> {
+            String sql = "SELECT * FROM History WHERE UserID = ? ORDER BY LastReadTime DESC";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                ResultSet rs = ps.executeQuery();
+                List<HistoryRecord> list = new ArrayList<>();
+                while (rs.next()) {
+                    HistoryRecord rec = new HistoryRecord(
+                            rs.getInt("HistoryID"),
+                            rs.getInt("UserID"),
+                            rs.getInt("ContentID"),
+                            rs.getTimestamp("LastReadTime").toLocalDateTime(),
+                            rs.getInt("PageNumber")
+                    );
+                    list.add(rec);
+                }
+                return list;
             }
-            return list;
-        }
+        });
+    }
+
+    /**
+     * Retrieve all history records for a given user joined with the title and
+     * type of the referenced content in a single query.
+     *
+     * @param userId the ID of the user
+     * @return a list of history records with content details attached
+     * @throws SQLException if a database error occurs
+     */
+    public List<HistoryRecord> getHistoryWithContentByUser(int userId) throws SQLException {
+        return SqlCalls.call("history.getHistoryWithContentByUser", () -> {
+            String sql = "SELECT h.HistoryID, h.UserID, h.ContentID, h.LastReadTime, h.PageNumber, " +
+                         "c.Title, c.FileType FROM History h " +
+                         "LEFT JOIN Contents c ON c.ContentID = h.ContentID " +
+                         "WHERE h.UserID = ? ORDER BY h.LastReadTime DESC";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                ResultSet rs = ps.executeQuery();
+                List<HistoryRecord> list = new ArrayList<>();
+                while (rs.next()) {
+                    HistoryRecord rec = new HistoryRecord(
+                            rs.getInt("HistoryID"),
+                            rs.getInt("UserID"),
+                            rs.getInt("ContentID"),
+                            rs.getTimestamp("LastReadTime").toLocalDateTime(),
+                            rs.getInt("PageNumber")
+                    );
+                    rec.setContentTitle(rs.getString("Title"));
+                    rec.setContentType(rs.getString("FileType"));
+                    list.add(rec);
+                }
+                return list;
+            }
+        });
     }
 
     /**
@@ -87,22 +190,24 @@ public class HistoryDAO {
      * @throws SQLException if a database error occurs
      */
     public HistoryRecord findHistory(int userId, int contentId) throws SQLException {
-        String sql = "SELECT TOP 1 * FROM History WHERE UserID = ? AND ContentID = ?";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, userId);
-            ps.setInt(2, contentId);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return new HistoryRecord(
-                        rs.getInt("HistoryID"),
-                        rs.getInt("UserID"),
-                        rs.getInt("ContentID"),
-                        rs.getTimestamp("LastReadTime").toLocalDateTime(),
-                        rs.getInt("PageNumber")
-                );
+        return SqlCalls.call("history.findHistory", () -> {
+            String sql = "SELECT TOP 1 * FROM History WHERE UserID = ? AND ContentID = ?";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                ps.setInt(2, contentId);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) {
+                    return new HistoryRecord(
+                            rs.getInt("HistoryID"),
+                            rs.getInt("UserID"),
+                            rs.getInt("ContentID"),
+                            rs.getTimestamp("LastReadTime").toLocalDateTime(),
+                            rs.getInt("PageNumber")
+                    );
+                }
+                return null;
             }
-            return null;
-        }
+        });
     }
 }
\ No newline at end of file
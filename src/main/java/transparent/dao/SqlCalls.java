@@ -0,0 +1,70 @@
+package transparent.dao;
+
+import transparent.metrics.Metrics;
+import transparent.metrics.SqlCallEvent;
+
+import java.sql.SQLException;
+
+/**
+ * Times DAO calls, counts the failed ones and reports each call to the
+ * flight recorder.  A failed call is what makes the services fall back to
+ * the local repository, so the failure counters double as fallback counts.
+ */
+final class SqlCalls {
+    @FunctionalInterface
+    interface SqlSupplier<T> {
+        T get() throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface SqlRunnable {
+        void run() throws SQLException;
+    }
+
+    private SqlCalls() {
+    }
+
+    /**
+     * Run a query and record its latency under {@code dao.<name>}.
+     */
+    static <T> T call(String name, SqlSupplier<T> call) throws SQLException {
+        return timed(name, "query", call);
+    }
+
+    /**
+     * Run an update and record its latency under {@code dao.<name>}.
+     */
+    static void run(String name, SqlRunnable call) throws SQLException {
+        timed(name, "update", () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private static <T> T timed(String name, String kind, SqlSupplier<T> call) throws SQLException {
+        SqlCallEvent event = new SqlCallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } catch (SQLException ex) {
+            recordFallback(name);
+            event.fallback = true;
+            throw ex;
+        } finally {
+            Metrics.getInstance().timer("dao." + name).recordSince(start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.statement = name;
+                event.kind = kind;
+                event.commit();
+            }
+        }
+    }
+
+    private static void recordFallback(String name) {
+        Metrics metrics = Metrics.getInstance();
+        metrics.counter("dao.fallbacks").increment();
+        metrics.counter("dao." + name + ".fallbacks").increment();
+    }
+}
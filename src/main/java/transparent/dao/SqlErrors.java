@@ -0,0 +1,28 @@
+package transparent.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Tells database errors that will go away, such as a lost connection, from
+ * those that will not.  Services treat the first kind as "offline" and queue
+ * the write for later; a write rejected for the second kind would be
+ * rejected again on every retry.
+ */
+public final class SqlErrors {
+    private SqlErrors() {
+    }
+
+    /**
+     * Whether the database refused the statement for breaking a constraint
+     * (SQLState class 23), e.g. a foreign key or a unique index.
+     */
+    public static boolean isIntegrityViolation(SQLException ex) {
+        for (SQLException current = ex; current != null; current = current.getNextException()) {
+            String state = current.getSQLState();
+            if (state != null && state.startsWith("23")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -21,28 +21,30 @@ public class UserDAO {
      * @throws SQLException if a database error occurs
      */
     public User findOrCreateByUsername(String username) throws SQLException {
-        // First, attempt to find an existing user
-        String selectSql = "SELECT UserID, Username FROM Users WHERE Username = ?";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(selectSql)) {
-            ps.setString(1, username);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return new User(rs.getInt("UserID"), rs.getString("Username"));
+        return SqlCalls.call("user.findOrCreateByUsername", () -> {
+            // First, attempt to find an existing user
+            String selectSql = "SELECT UserID, Username FROM Users WHERE Username = ?";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(selectSql)) {
+                ps.setString(1, username);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) {
+                    return new User(rs.getInt("UserID"), rs.getString("Username"));
+                }
             }
-        }
 
-        // No existing user found; insert a new user
-        String insertSql = "INSERT INTO Users (Username) OUTPUT INSERTED.UserID VALUES (?)";
-        try (Connection conn = DBConnectionManager.getConnection();
-             PreparedStatement ps = conn.prepareStatement(insertSql)) {
-            ps.setString(1, username);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                int newId = rs.getInt(1);
-                return new User(newId, username);
+            // No existing user found; insert a new user
+            String insertSql = "INSERT INTO Users (Username) OUTPUT INSERTED.UserID VALUES (?)";
+            try (Connection conn = DBConnectionManager.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(insertSql)) {
+                ps.setString(1, username);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) {
+                    int newId = rs.getInt(1);
+                    return new User(newId, username);
+                }
             }
-        }
-        throw new SQLException("Unable to create user");
+            throw new SQLException("Unable to create user");
+        });
     }
 }
\ No newline at end of file
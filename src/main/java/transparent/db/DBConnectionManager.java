@@ -1,5 +1,7 @@
 package transparent.db;
 
+import transparent.metrics.Metrics;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -29,6 +31,11 @@ public final class DBConnectionManager {
      * @throws SQLException if a connection cannot be established
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        long start = System.nanoTime();
+        try {
+            return DriverManager.getConnection(URL, USER, PASSWORD);
+        } finally {
+            Metrics.getInstance().timer("db.connect").recordSince(start);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package transparent.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for opening a document in the reader, from reading
+ * the file until the first page is shown.
+ */
+@Name("transparent.DocumentOpen")
+@Label("Document Open")
+@Category({"Transparent", "Reader"})
+@Description("A document opened in the reader")
+@StackTrace(false)
+public final class DocumentOpenEvent extends Event {
+    @Label("Content ID")
+    public int contentId;
+
+    @Label("File Type")
+    public String fileType;
+
+    @Label("Pages")
+    public int pages;
+
+    @Label("Failed")
+    public boolean failed;
+}
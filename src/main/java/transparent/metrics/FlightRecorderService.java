@@ -0,0 +1,96 @@
+package transparent.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a continuous, bounded flight recording so that when the application
+ * misbehaves the last minutes can be dumped to a file and sent along with a
+ * bug report.  The recording uses the JDK's low-overhead "default" settings
+ * plus the application's own events ({@link PageRenderEvent},
+ * {@link SqlCallEvent}, ...).  Disable it with
+ * {@code -Dtransparent.jfr=false}.
+ */
+public final class FlightRecorderService {
+    private static final Logger LOG = Logger.getLogger(FlightRecorderService.class.getName());
+    private static final Path RECORDINGS_DIR = Paths.get(
+            System.getProperty("user.home"), ".transparent", "recordings");
+    private static final Duration MAX_AGE = Duration.ofMinutes(15);
+    private static final long MAX_SIZE_BYTES = 64L * 1024 * 1024;
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private Recording recording;
+
+    private FlightRecorderService() {
+    }
+
+    private static final class Holder {
+        private static final FlightRecorderService INSTANCE = new FlightRecorderService();
+    }
+
+    public static FlightRecorderService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Start the continuous recording unless disabled or unsupported by the
+     * JVM.  Calling this more than once has no effect.
+     */
+    public synchronized void start() {
+        if (recording != null || !Boolean.parseBoolean(System.getProperty("transparent.jfr", "true"))
+                || !FlightRecorder.isAvailable()) {
+            return;
+        }
+        try {
+            Recording continuous = new Recording(Configuration.getConfiguration("default"));
+            continuous.setName("transparent");
+            continuous.setToDisk(true);
+            continuous.setMaxAge(MAX_AGE);
+            continuous.setMaxSize(MAX_SIZE_BYTES);
+            continuous.start();
+            recording = continuous;
+        } catch (IOException | ParseException | IllegalStateException | SecurityException ex) {
+            LOG.log(Level.WARNING, "Unable to start flight recording", ex);
+        }
+    }
+
+    public synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Suggest a file for the next dump under {@code ~/.transparent/recordings}.
+     */
+    public Path defaultDumpFile() {
+        return RECORDINGS_DIR.resolve("transparent-" + LocalDateTime.now().format(FILE_STAMP) + ".jfr");
+    }
+
+    /**
+     * Write what was recorded in the last 15 minutes (at most 64 MB) to
+     * {@code target}; the recording keeps running.
+     *
+     * @throws IOException if nothing is being recorded or the file cannot be written
+     */
+    public synchronized Path dump(Path target) throws IOException {
+        if (recording == null) {
+            throw new IOException("Flight recording is not running");
+        }
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        recording.dump(target);
+        return target;
+    }
+}
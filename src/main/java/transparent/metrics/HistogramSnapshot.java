@@ -0,0 +1,70 @@
+package transparent.metrics;
+
+/**
+ * Summary of a {@link LatencyHistogram} at one point in time.  All durations
+ * are in nanoseconds.
+ */
+public final class HistogramSnapshot {
+    private final String name;
+    private final long count;
+    private final long mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    HistogramSnapshot(String name, long count, long mean, long p50, long p90, long p99, long p999, long max) {
+        this.name = name;
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return name + " count=" + count
+                + " mean=" + LatencyHistogram.format(mean)
+                + " p50=" + LatencyHistogram.format(p50)
+                + " p90=" + LatencyHistogram.format(p90)
+                + " p99=" + LatencyHistogram.format(p99)
+                + " p99.9=" + LatencyHistogram.format(p999)
+                + " max=" + LatencyHistogram.format(max);
+    }
+}
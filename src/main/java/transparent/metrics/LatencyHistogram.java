@@ -0,0 +1,128 @@
+package transparent.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram in the style of HdrHistogram: values are
+ * counted in log-linear buckets, 64 per power of two, so every recorded
+ * duration from a nanosecond to days is kept within about 1.6% of its true
+ * value in a fixed 29 KB table.  Recording is a few atomic increments and
+ * never allocates, so it is safe on hot paths.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record a duration in nanoseconds.  Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(indexOf(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Record the time elapsed since {@code startNanos}, a value previously
+     * obtained from {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Capture the current distribution.  Concurrent recordings may or may not
+     * be included.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        long highest = max.get();
+        return new HistogramSnapshot(name, total, total == 0 ? 0 : sum.sum() / total,
+                percentile(copy, total, 50, highest), percentile(copy, total, 90, highest),
+                percentile(copy, total, 99, highest), percentile(copy, total, 99.9, highest), highest);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    private static long percentile(long[] counts, long total, double percentile, long highest) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), highest);
+            }
+        }
+        return highest;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - (SUB_BUCKET_BITS - 1);
+        int mantissa = (int) (value >>> shift);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + (mantissa - HALF_SUB_BUCKETS);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int offset = index - SUB_BUCKETS;
+        int exponent = SUB_BUCKET_BITS + offset / HALF_SUB_BUCKETS;
+        long mantissa = HALF_SUB_BUCKETS + offset % HALF_SUB_BUCKETS;
+        int shift = exponent - (SUB_BUCKET_BITS - 1);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Format a duration in nanoseconds with a unit suited to its size.
+     */
+    public static String format(long nanos) {
+        if (nanos < TimeUnit.MICROSECONDS.toNanos(10)) {
+            return nanos + " ns";
+        }
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(10)) {
+            return String.format("%.1f µs", nanos / 1_000.0);
+        }
+        if (nanos < TimeUnit.SECONDS.toNanos(10)) {
+            return String.format("%.1f ms", nanos / 1_000_000.0);
+        }
+        return String.format("%.1f s", nanos / 1_000_000_000.0);
+    }
+}
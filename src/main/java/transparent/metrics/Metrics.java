@@ -0,0 +1,157 @@
+package transparent.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Application-wide registry of latency timers and event counters.  Metrics
+ * are created on first use by name; names are dotted paths such as
+ * {@code dao.content.getAll} or {@code thumbnails.hit}.
+ *
+ * <p>The data is shown in the diagnostics window (Ctrl+Shift+D in the
+ * library).  Two optional exports are configured with system properties:
+ * {@code -Dtransparent.metrics.jmx=true} registers an MXBean, and
+ * {@code -Dtransparent.metrics.logSeconds=N} writes a report to the
+ * {@code transparent.metrics} logger every N seconds.</p>
+ */
+public final class Metrics {
+    private static final Logger LOG = Logger.getLogger("transparent.metrics");
+    private static final String OBJECT_NAME = "transparent:type=Metrics";
+
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private ScheduledExecutorService logDump;
+    private boolean started;
+
+    private Metrics() {
+    }
+
+    private static final class Holder {
+        private static final Metrics INSTANCE = new Metrics();
+    }
+
+    public static Metrics getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Return the timer with the given name, creating it on first use.
+     */
+    public LatencyHistogram timer(String name) {
+        LatencyHistogram timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * Return the counter with the given name, creating it on first use.
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Summaries of every timer, sorted by name.
+     */
+    public List<HistogramSnapshot> timerSnapshots() {
+        List<HistogramSnapshot> snapshots = new ArrayList<>();
+        for (LatencyHistogram timer : new TreeMap<>(timers).values()) {
+            snapshots.add(timer.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Current value of every counter, sorted by name.
+     */
+    public Map<String, Long> counterValues() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.get()));
+        return values;
+    }
+
+    /**
+     * Clear every timer and counter, e.g. before reproducing a problem.
+     */
+    public void reset() {
+        timers.values().forEach(LatencyHistogram::reset);
+        counters.values().forEach(Counter::reset);
+    }
+
+    /**
+     * Render every metric as plain text, one per line.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (HistogramSnapshot snapshot : timerSnapshots()) {
+            report.append(snapshot).append('\n');
+        }
+        counterValues().forEach((name, value) -> report.append(name).append(" = ").append(value).append('\n'));
+        return report.toString();
+    }
+
+    /**
+     * Enable the exports requested through system properties.  Calling this
+     * more than once has no effect.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        if (Boolean.getBoolean("transparent.metrics.jmx")) {
+            registerMBean();
+        }
+        long logSeconds = Long.getLong("transparent.metrics.logSeconds", 0L);
+        if (logSeconds > 0) {
+            logDump = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "transparent-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            logDump.scheduleAtFixedRate(() -> LOG.info(() -> "Metrics\n" + report()),
+                    logSeconds, logSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            LOG.log(Level.WARNING, "Unable to register metrics MBean", ex);
+        }
+    }
+
+    private final class MXBean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            return counterValues();
+        }
+
+        @Override
+        public List<String> getTimers() {
+            return timerSnapshots().stream().map(HistogramSnapshot::toString).toList();
+        }
+
+        @Override
+        public String dump() {
+            return report();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.this.reset();
+        }
+    }
+}
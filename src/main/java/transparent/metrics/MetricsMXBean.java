@@ -0,0 +1,23 @@
+package transparent.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of {@link Metrics}, registered as
+ * {@code transparent:type=Metrics} when JMX export is enabled.  Everything is
+ * exposed as open types so generic consoles such as JConsole can show it.
+ */
+public interface MetricsMXBean {
+    /** Current value of every counter by name. */
+    Map<String, Long> getCounters();
+
+    /** One summary line per timer: count, mean, percentiles and maximum. */
+    List<String> getTimers();
+
+    /** The same report that is written to the log. */
+    String dump();
+
+    /** Clear every counter and timer. */
+    void reset();
+}
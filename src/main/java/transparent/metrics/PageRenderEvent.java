@@ -0,0 +1,33 @@
+package transparent.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one document page rendered to an image.
+ */
+@Name("transparent.PageRender")
+@Label("Page Render")
+@Category({"Transparent", "Reader"})
+@Description("A document page rendered to an image by the reader")
+@StackTrace(false)
+public final class PageRenderEvent extends Event {
+    @Label("Content ID")
+    public int contentId;
+
+    @Label("Page")
+    @Description("One-based page number")
+    public int page;
+
+    @Label("DPI")
+    public float dpi;
+
+    @Label("Image Size")
+    @DataAmount
+    public long bytes;
+}
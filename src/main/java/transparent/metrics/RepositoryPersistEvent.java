@@ -0,0 +1,28 @@
+package transparent.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a rewrite of the local library store.  The stack
+ * trace shows which operation caused the write.
+ */
+@Name("transparent.RepositoryPersist")
+@Label("Repository Persist")
+@Category({"Transparent", "Storage"})
+@Description("The local library store written to disk")
+public final class RepositoryPersistEvent extends Event {
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+
+    @Label("Content Entries")
+    public int contentEntries;
+
+    @Label("Failed")
+    public boolean failed;
+}
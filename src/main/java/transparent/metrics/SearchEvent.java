@@ -0,0 +1,28 @@
+package transparent.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a library search.
+ */
+@Name("transparent.Search")
+@Label("Search")
+@Category({"Transparent", "Search"})
+@Description("A catalogue filter, full-text or in-document search")
+@StackTrace(false)
+public final class SearchEvent extends Event {
+    @Label("Kind")
+    @Description("filter, fulltext or document")
+    public String kind;
+
+    @Label("Query")
+    public String query;
+
+    @Label("Hits")
+    public int hits;
+}
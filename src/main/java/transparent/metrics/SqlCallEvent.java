@@ -0,0 +1,28 @@
+package transparent.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for one DAO call, including connection setup.
+ */
+@Name("transparent.SqlCall")
+@Label("SQL Call")
+@Category({"Transparent", "Database"})
+@Description("A DAO call against the database")
+public final class SqlCallEvent extends Event {
+    @Label("Statement")
+    @Description("DAO operation, e.g. content.getAllContents")
+    public String statement;
+
+    @Label("Kind")
+    @Description("query or update")
+    public String kind;
+
+    @Label("Fallback")
+    @Description("The call failed and the caller fell back to the local repository")
+    public boolean fallback;
+}
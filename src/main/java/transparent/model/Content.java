@@ -11,7 +11,9 @@ import java.util.List;
  * or image.  The metadata stored here reflects the database schema: title,
  * file path, type, size and the date it was added to the library.  Additional
  * descriptive metadata such as author, category and tags are stored to support
- * the enhanced browsing experience and offline persistence layer.
+ * the enhanced browsing experience and offline persistence layer.  Page count
+ * and image dimensions are filled in when a file is imported and its metadata
+ * can be extracted.
  */
 public class Content implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -25,6 +27,11 @@ public class Content implements Serializable {
     private String category;
     private List<String> tags = new ArrayList<>();
     private String description;
+    private int pageCount;
+    private int imageWidth;
+    private int imageHeight;
+    private long lastModified;
+    private String contentHash;
     private transient boolean favourite;
 
     public Content() {
@@ -58,6 +65,11 @@ public class Content implements Serializable {
         this.category = other.category;
         setTags(other.tags);
         this.description = other.description;
+        this.pageCount = other.pageCount;
+        this.imageWidth = other.imageWidth;
+        this.imageHeight = other.imageHeight;
+        this.lastModified = other.lastModified;
+        this.contentHash = other.contentHash;
         this.favourite = other.favourite;
     }
 
@@ -141,6 +153,61 @@ public class Content implements Serializable {
         this.description = description;
     }
 
+    /**
+     * Number of pages detected when the file was imported, or {@code 0} when
+     * unknown.
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public void setPageCount(int pageCount) {
+        this.pageCount = pageCount;
+    }
+
+    /**
+     * Pixel width of an image file, or {@code 0} when unknown or not an image.
+     */
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public void setImageWidth(int imageWidth) {
+        this.imageWidth = imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(int imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
+    /**
+     * Last modification time of the file in epoch milliseconds as seen when
+     * the library last scanned it, or {@code 0} when unknown.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Hex encoded SHA-256 digest of the file contents, or {@code null} when
+     * the file has not been fingerprinted yet.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public boolean isFavourite() {
         return favourite;
     }
@@ -6,6 +6,8 @@ import java.time.LocalDateTime;
 /**
  * Represents a favourite entry linking a user to a piece of content.  When a
  * user marks content as a favourite the current date and time is stored.
+ * Display details of the referenced content (title, type, author) may be
+ * attached by the service layer; they are transient and never persisted.
  */
 public class Favourite implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -13,6 +15,9 @@ public class Favourite implements Serializable {
     private int userID;
     private int contentID;
     private LocalDateTime addedDate;
+    private transient String contentTitle;
+    private transient String contentType;
+    private transient String contentAuthor;
 
     public Favourite() {
     }
@@ -34,6 +39,9 @@ public class Favourite implements Serializable {
         this.userID = other.userID;
         this.contentID = other.contentID;
         this.addedDate = other.addedDate;
+        this.contentTitle = other.contentTitle;
+        this.contentType = other.contentType;
+        this.contentAuthor = other.contentAuthor;
     }
 
     public int getFavouriteID() {
@@ -67,4 +75,28 @@ public class Favourite implements Serializable {
     public void setAddedDate(LocalDateTime addedDate) {
         this.addedDate = addedDate;
     }
+
+    public String getContentTitle() {
+        return contentTitle;
+    }
+
+    public void setContentTitle(String contentTitle) {
+        this.contentTitle = contentTitle;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentAuthor() {
+        return contentAuthor;
+    }
+
+    public void setContentAuthor(String contentAuthor) {
+        this.contentAuthor = contentAuthor;
+    }
 }
\ No newline at end of file
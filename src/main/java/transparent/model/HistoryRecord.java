@@ -6,6 +6,8 @@ import java.time.LocalDateTime;
 /**
  * Represents a history entry for a user reading a piece of content.  It
  * records the last page read and the last time the content was opened.
+ * Display details of the referenced content (title, type, author) may be
+ * attached by the service layer; they are transient and never persisted.
  */
 public class HistoryRecord implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -14,6 +16,9 @@ public class HistoryRecord implements Serializable {
     private int contentID;
     private LocalDateTime lastReadTime;
     private int pageNumber;
+    private transient String contentTitle;
+    private transient String contentType;
+    private transient String contentAuthor;
 
     public HistoryRecord() {
     }
@@ -39,6 +44,9 @@ public class HistoryRecord implements Serializable {
         this.contentID = other.contentID;
         this.lastReadTime = other.lastReadTime;
         this.pageNumber = other.pageNumber;
+        this.contentTitle = other.contentTitle;
+        this.contentType = other.contentType;
+        this.contentAuthor = other.contentAuthor;
     }
 
     public int getHistoryID() {
@@ -80,4 +88,28 @@ public class HistoryRecord implements Serializable {
     public void setPageNumber(int pageNumber) {
         this.pageNumber = pageNumber;
     }
+
+    public String getContentTitle() {
+        return contentTitle;
+    }
+
+    public void setContentTitle(String contentTitle) {
+        this.contentTitle = contentTitle;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentAuthor() {
+        return contentAuthor;
+    }
+
+    public void setContentAuthor(String contentAuthor) {
+        this.contentAuthor = contentAuthor;
+    }
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package transparent.repository;
 import transparent.model.Content;
 import transparent.model.Favourite;
 import transparent.model.HistoryRecord;
+import transparent.metrics.Metrics;
+import transparent.metrics.RepositoryPersistEvent;
 import transparent.model.User;
 
 import java.io.IOException;
@@ -14,8 +16,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -23,7 +31,13 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
@@ -34,17 +48,88 @@ import java.util.stream.Collectors;
  * keeps the implementation dependency free.
  */
 public final class FileBackedLibraryRepository {
+    private static final Logger LOG = Logger.getLogger(FileBackedLibraryRepository.class.getName());
     private static final Path STORAGE_PATH = Paths.get(
             System.getProperty("user.home"), ".transparent", "library-store.bin");
 
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private final List<java.util.function.Consumer<String>> themeListeners = new CopyOnWriteArrayList<>();
+    private final Path storagePath;
+    /** One lock per {@link Domain}. */
+    private final Map<Domain, StampedLock> locks = new EnumMap<>(Domain.class);
+    /** Held while the store file is written. */
+    private final ReentrantLock persistLock = new ReentrantLock();
+    private final List<Consumer<String>> themeListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<List<LibraryChange>>> changeListeners = new CopyOnWriteArrayList<>();
+    /**
+     * Change batches not yet delivered, in the order their writes were
+     * applied; guarded by itself.
+     */
+    private final Deque<List<LibraryChange>> unpublished = new ArrayDeque<>();
+    /** Held while batches are delivered, so listeners see them one at a time and in order. */
+    private final ReentrantLock publishLock = new ReentrantLock();
     private LibraryState state;
+    /** Lookup of {@code state.contents} by ID; rebuilt on load and kept in step by upserts. */
+    private Map<Integer, Content> contentsById = new HashMap<>();
+    /** Content IDs by file digest, for constant time duplicate checks. */
+    private Map<String, Set<Integer>> contentIdsByHash = new HashMap<>();
 
     private FileBackedLibraryRepository() {
+        this(STORAGE_PATH);
+    }
+
+    /**
+     * Create a repository backed by its own store file instead of the shared
+     * one in the user's home directory, e.g. for benchmarks.
+     */
+    FileBackedLibraryRepository(Path storagePath) {
+        this.storagePath = storagePath;
+        for (Domain domain : Domain.values()) {
+            locks.put(domain, new StampedLock());
+        }
         load();
     }
 
+    /**
+     * Parts of the state with a lock of their own, so that e.g. saving a
+     * reading position does not hold up catalogue or favourite reads.
+     * Methods that need several domains lock them in declaration order,
+     * which rules out deadlocks.  The locks are not reentrant: a method must
+     * release its locks before calling {@link #persist()}.
+     */
+    private enum Domain {
+        /** Users, the next local user ID and user ID remaps. */
+        USERS,
+        /** Catalogue entries with their indexes, the next local content ID and content ID remaps. */
+        CONTENTS,
+        HISTORY,
+        FAVOURITES,
+        /** Offline changes awaiting replay. */
+        OUTBOX,
+        /** Theme and watched folders. */
+        PREFERENCES
+    }
+
+    /**
+     * The locks taken by one method, released in reverse order by
+     * {@link #release()}.
+     */
+    private static final class Held {
+        private final StampedLock[] locks = new StampedLock[Domain.values().length];
+        private final long[] stamps = new long[Domain.values().length];
+        private int count;
+
+        void add(StampedLock lock, long stamp) {
+            locks[count] = lock;
+            stamps[count] = stamp;
+            count++;
+        }
+
+        void release() {
+            for (int i = count - 1; i >= 0; i--) {
+                locks[i].unlock(stamps[i]);
+            }
+        }
+    }
+
     private static final class Holder {
         private static final FileBackedLibraryRepository INSTANCE = new FileBackedLibraryRepository();
     }
@@ -54,40 +139,132 @@ public final class FileBackedLibraryRepository {
     }
 
     private void load() {
-        lock.writeLock().lock();
+        long start = System.nanoTime();
+        Held held = writing(Domain.values());
         try {
-            if (Files.exists(STORAGE_PATH)) {
-                try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(STORAGE_PATH))) {
+            if (Files.exists(storagePath)) {
+                try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(storagePath))) {
                     Object obj = in.readObject();
                     if (obj instanceof LibraryState loaded) {
                         state = loaded;
                     }
                 } catch (IOException | ClassNotFoundException ex) {
+                    Metrics.getInstance().counter("repository.load.failures").increment();
+                    LOG.log(Level.WARNING, "Unable to read " + storagePath + "; starting with an empty library", ex);
                     state = new LibraryState();
                 }
             }
             if (state == null) {
                 state = new LibraryState();
             }
-        } catch (IOException ioException) {
-            state = new LibraryState();
+            // Fields added after the first release are null in older stores; fill them in once
+            // so that read-locked methods never have to create them.
+            if (state.watchedFolders == null) {
+                state.watchedFolders = new ArrayList<>();
+            }
+            if (state.outbox == null) {
+                state.outbox = new ArrayList<>();
+            }
+            if (state.contentIdRemaps == null) {
+                state.contentIdRemaps = new HashMap<>();
+            }
+            if (state.userIdRemaps == null) {
+                state.userIdRemaps = new HashMap<>();
+            }
+            reindexContentsLocked();
         } finally {
-            lock.writeLock().unlock();
+            held.release();
+            Metrics.getInstance().timer("repository.load").recordSince(start);
         }
     }
 
+    /**
+     * Write the whole store file.  Callers make their change and release its
+     * locks first: the state is then serialised under the read locks of every
+     * domain, so reads carry on while the file is written, and writes of the
+     * file are serialised with each other so an older snapshot never replaces
+     * a newer one.
+     */
     private void persist() {
-        lock.writeLock().lock();
+        RepositoryPersistEvent event = new RepositoryPersistEvent();
+        event.begin();
+        long start = System.nanoTime();
+        persistLock.lock();
+        Held held = reading(Domain.values());
         try {
-            Files.createDirectories(STORAGE_PATH.getParent());
+            event.contentEntries = state.contents.size();
+            Files.createDirectories(storagePath.getParent());
             try (ObjectOutputStream out = new ObjectOutputStream(
-                    Files.newOutputStream(STORAGE_PATH, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
+                    Files.newOutputStream(storagePath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
                 out.writeObject(state);
             }
+            event.bytesWritten = Files.size(storagePath);
+            Metrics.getInstance().counter("repository.persist.bytes").add(event.bytesWritten);
         } catch (IOException ex) {
-            // Persisting is best-effort; swallow exceptions to avoid impacting the UI.
+            // Persisting is best-effort; the UI carries on, but the failure is counted and logged.
+            event.failed = true;
+            Metrics.getInstance().counter("repository.persist.failures").increment();
+            LOG.log(Level.WARNING, "Unable to write " + storagePath, ex);
         } finally {
-            lock.writeLock().unlock();
+            held.release();
+            persistLock.unlock();
+            Metrics.getInstance().timer("repository.persist").recordSince(start);
+            event.commit();
+        }
+    }
+
+    private Held reading(Domain... domains) {
+        return locking(EnumSet.noneOf(Domain.class), domains);
+    }
+
+    private Held writing(Domain... domains) {
+        return locking(EnumSet.copyOf(Arrays.asList(domains)), new Domain[0]);
+    }
+
+    /**
+     * Take the write locks of {@code writes} and the read locks of
+     * {@code reads}, in domain order.
+     */
+    private Held locking(Set<Domain> writes, Domain... reads) {
+        Set<Domain> readSet = reads.length == 0 ? EnumSet.noneOf(Domain.class) : EnumSet.copyOf(Arrays.asList(reads));
+        Held held = new Held();
+        for (Domain domain : Domain.values()) {
+            StampedLock lock = locks.get(domain);
+            if (writes.contains(domain)) {
+                held.add(lock, lock.writeLock());
+            } else if (readSet.contains(domain)) {
+                held.add(lock, lock.readLock());
+            }
+        }
+        return held;
+    }
+
+    /**
+     * Run a short lookup without taking the read lock, and keep its result
+     * if no writer touched the domain meanwhile, which is the common case.
+     * Otherwise, or if the lookup tripped over a structure being modified,
+     * it runs again under the read lock.  The lookup must only read and must
+     * return copies.
+     */
+    private <T> T readOptimistically(Domain domain, Supplier<T> lookup) {
+        StampedLock lock = locks.get(domain);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                T value = lookup.get();
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException ex) {
+                // A torn read of a collection being modified; the retry below sees it whole.
+            }
+        }
+        Metrics.getInstance().counter("repository.read.retried").increment();
+        stamp = lock.readLock();
+        try {
+            return lookup.get();
+        } finally {
+            lock.unlockRead(stamp);
         }
     }
 
@@ -121,8 +298,47 @@ public final class FileBackedLibraryRepository {
         return snapshot;
     }
 
+    private void reindexContentsLocked() {
+        contentsById = new HashMap<>(Math.max(16, state.contents.size() * 4 / 3 + 1));
+        contentIdsByHash = new HashMap<>();
+        for (Content content : state.contents) {
+            contentsById.put(content.getContentID(), content);
+            indexHashLocked(content);
+        }
+    }
+
+    private void indexHashLocked(Content content) {
+        if (content.getContentHash() != null) {
+            contentIdsByHash.computeIfAbsent(content.getContentHash(), hash -> new HashSet<>())
+                    .add(content.getContentID());
+        }
+    }
+
+    private void unindexHashLocked(Content content) {
+        if (content.getContentHash() == null) {
+            return;
+        }
+        Set<Integer> ids = contentIdsByHash.get(content.getContentHash());
+        if (ids != null) {
+            ids.remove(content.getContentID());
+            if (ids.isEmpty()) {
+                contentIdsByHash.remove(content.getContentHash());
+            }
+        }
+    }
+
     private Optional<Content> findContentLocked(int contentId) {
-        return state.contents.stream().filter(c -> c.getContentID() == contentId).findFirst();
+        return Optional.ofNullable(contentsById.get(contentId));
+    }
+
+    private Map<Integer, Content> indexContentsLocked(Set<Integer> contentIds) {
+        Map<Integer, Content> index = new HashMap<>();
+        for (Content content : state.contents) {
+            if (contentIds.contains(content.getContentID())) {
+                index.put(content.getContentID(), content);
+            }
+        }
+        return index;
     }
 
     private Optional<User> findUserLocked(int userId) {
@@ -144,37 +360,42 @@ public final class FileBackedLibraryRepository {
      * snapshot of the merged state.
      */
     public List<Content> mergeFromDatabase(List<Content> databaseContents) {
-        lock.writeLock().lock();
+        List<LibraryChange> changes = new ArrayList<>();
+        List<Content> merged;
+        Held held = writing(Domain.CONTENTS);
         try {
-            boolean changed = false;
             for (Content dbContent : databaseContents) {
                 Content copy = new Content(dbContent);
                 copy.setFavourite(false);
-                changed |= upsertContentLocked(copy, false);
-            }
-            if (changed) {
-                persist();
+                if (upsertContentLocked(copy, false)) {
+                    contentUpsertedLocked(copy.getContentID(), changes);
+                }
             }
-            return snapshotContentsLocked();
+            merged = snapshotContentsLocked();
         } finally {
-            lock.writeLock().unlock();
+            queueLocked(changes);
+            held.release();
+        }
+        if (!changes.isEmpty()) {
+            persist();
+            publish();
         }
+        return merged;
     }
 
     private boolean upsertContentLocked(Content incoming, boolean allowNewId) {
         Optional<Content> existingOpt = findContentLocked(incoming.getContentID());
-        if (existingOpt.isEmpty() && allowNewId) {
-            incoming.setContentID(state.nextContentId--);
-            if (incoming.getDayAdded() == null) {
-                incoming.setDayAdded(LocalDateTime.now());
+        if (existingOpt.isEmpty()) {
+            // Only unsaved content gets a local ID; IDs issued by the database are kept.
+            if (allowNewId && incoming.getContentID() == 0) {
+                incoming.setContentID(state.nextContentId--);
             }
-            state.contents.add(incoming);
-            return true;
-        } else if (existingOpt.isEmpty()) {
             if (incoming.getDayAdded() == null) {
                 incoming.setDayAdded(LocalDateTime.now());
             }
             state.contents.add(incoming);
+            contentsById.put(incoming.getContentID(), incoming);
+            indexHashLocked(incoming);
             return true;
         }
         Content existing = existingOpt.get();
@@ -215,6 +436,27 @@ public final class FileBackedLibraryRepository {
             existing.setDescription(incoming.getDescription());
             changed = true;
         }
+        // Extracted metadata is local only; the database never supplies it.
+        if (incoming.getPageCount() > 0 && existing.getPageCount() != incoming.getPageCount()) {
+            existing.setPageCount(incoming.getPageCount());
+            changed = true;
+        }
+        if (incoming.getContentHash() != null && !incoming.getContentHash().equals(existing.getContentHash())) {
+            unindexHashLocked(existing);
+            existing.setContentHash(incoming.getContentHash());
+            indexHashLocked(existing);
+            changed = true;
+        }
+        if (incoming.getLastModified() > 0 && existing.getLastModified() != incoming.getLastModified()) {
+            existing.setLastModified(incoming.getLastModified());
+            changed = true;
+        }
+        if (incoming.getImageWidth() > 0 && (existing.getImageWidth() != incoming.getImageWidth()
+                || existing.getImageHeight() != incoming.getImageHeight())) {
+            existing.setImageWidth(incoming.getImageWidth());
+            existing.setImageHeight(incoming.getImageHeight());
+            changed = true;
+        }
         return changed;
     }
 
@@ -226,20 +468,214 @@ public final class FileBackedLibraryRepository {
      * Persist a new or updated content entry when operating offline.
      */
     public Content saveOfflineContent(Content content) {
-        lock.writeLock().lock();
+        Content copy = new Content(content);
+        List<LibraryChange> changes = new ArrayList<>(1);
+        Held held = writing(Domain.CONTENTS);
         try {
-            Content copy = new Content(content);
             if (copy.getContentID() == 0) {
                 copy.setContentID(state.nextContentId--);
             }
             if (copy.getDayAdded() == null) {
                 copy.setDayAdded(LocalDateTime.now());
             }
-            upsertContentLocked(copy, true);
+            if (upsertContentLocked(copy, true)) {
+                contentUpsertedLocked(copy.getContentID(), changes);
+            }
+            copy = new Content(copy);
+        } finally {
+            queueLocked(changes);
+            held.release();
+        }
+        persist();
+        publish();
+        return copy;
+    }
+
+    /**
+     * Store many new or updated content entries under a single lock and a
+     * single write of the store file.  Entries without an ID receive local
+     * IDs as in {@link #saveOfflineContent(Content)}.
+     *
+     * @return copies of the stored entries, in input order
+     */
+    public List<Content> saveContents(List<Content> contents) {
+        List<Content> stored = new ArrayList<>(contents.size());
+        List<LibraryChange> changes = new ArrayList<>();
+        Held held = writing(Domain.CONTENTS);
+        try {
+            for (Content content : contents) {
+                Content copy = new Content(content);
+                if (upsertContentLocked(copy, true)) {
+                    contentUpsertedLocked(copy.getContentID(), changes);
+                }
+                stored.add(new Content(copy));
+            }
+        } finally {
+            queueLocked(changes);
+            held.release();
+        }
+        if (!contents.isEmpty()) {
+            persist();
+            publish();
+        }
+        return stored;
+    }
+
+    /**
+     * Store new file locations or sizes recorded while the database is
+     * unreachable and queue them for replay.
+     */
+    public void saveOfflineContentFiles(List<Content> contents) {
+        List<LibraryChange> changes = new ArrayList<>();
+        Held held = writing(Domain.CONTENTS, Domain.OUTBOX);
+        try {
+            for (Content content : contents) {
+                Content copy = new Content(content);
+                copy.setContentID(resolveContentIdLocked(copy.getContentID()));
+                if (upsertContentLocked(copy, true)) {
+                    contentUpsertedLocked(copy.getContentID(), changes);
+                }
+                if (copy.getContentID() > 0) {
+                    enqueueLocked(PendingChange.Kind.CONTENT_FILE, 0, copy.getContentID(), 0, false,
+                            LocalDateTime.now());
+                }
+            }
+        } finally {
+            queueLocked(changes);
+            held.release();
+        }
+        persist();
+        publish();
+    }
+
+    /**
+     * Remove content entries.  Favourites and reading history of them are
+     * kept so past activity stays visible, as in the database.
+     *
+     * @return the number of entries removed
+     */
+    public int removeContents(Set<Integer> contentIds) {
+        List<LibraryChange> changes = new ArrayList<>();
+        Held held = writing(Domain.CONTENTS, Domain.FAVOURITES, Domain.OUTBOX);
+        try {
+            removeContentsLocked(contentIds, changes);
+        } finally {
+            queueLocked(changes);
+            held.release();
+        }
+        if (!changes.isEmpty()) {
             persist();
-            return new Content(copy);
+            publish();
+        }
+        return changes.size();
+    }
+
+    /**
+     * Remove content entries while the database is unreachable and queue the
+     * deletion of those already stored in the database.
+     *
+     * @return the number of entries removed
+     */
+    public int removeOfflineContents(Set<Integer> contentIds) {
+        List<LibraryChange> changes = new ArrayList<>();
+        Held held = writing(Domain.CONTENTS, Domain.FAVOURITES, Domain.OUTBOX);
+        try {
+            removeContentsLocked(contentIds, changes);
+            for (Integer contentId : contentIds) {
+                if (contentId > 0) {
+                    enqueueLocked(PendingChange.Kind.CONTENT_DELETE, 0, contentId, 0, false, LocalDateTime.now());
+                }
+            }
         } finally {
-            lock.writeLock().unlock();
+            queueLocked(changes);
+            held.release();
+        }
+        persist();
+        publish();
+        return changes.size();
+    }
+
+    private void removeContentsLocked(Set<Integer> contentIds, List<LibraryChange> changes) {
+        int before = state.contents.size();
+        state.contents.removeIf(content -> contentIds.contains(content.getContentID()));
+        if (state.contents.size() < before) {
+            for (Integer contentId : contentIds) {
+                Content content = contentsById.remove(contentId);
+                if (content != null) {
+                    unindexHashLocked(content);
+                    changes.add(LibraryChange.contentRemoved(contentId));
+                }
+            }
+            // Content that never reached the database takes its queued changes with it.
+            outboxLocked().removeIf(change -> change.getContentId() < 0 && contentIds.contains(change.getContentId()));
+        }
+    }
+
+    /**
+     * Return copies of the content entries whose file lives below the given
+     * directory.
+     */
+    public List<Content> findContentsUnder(Path directory) {
+        Path root = directory.toAbsolutePath().normalize();
+        Held held = reading(Domain.CONTENTS);
+        try {
+            List<Content> matches = new ArrayList<>();
+            for (Content content : state.contents) {
+                if (content.getFilePath() != null && Paths.get(content.getFilePath()).startsWith(root)) {
+                    matches.add(new Content(content));
+                }
+            }
+            return matches;
+        } finally {
+            held.release();
+        }
+    }
+
+    /**
+     * Determine whether any catalogued entry has the given file digest.
+     */
+    public boolean containsContentHash(String contentHash) {
+        return readOptimistically(Domain.CONTENTS, () -> contentIdsByHash.containsKey(contentHash));
+    }
+
+    /**
+     * Return groups of entries sharing a file digest, largest files first.
+     * Entries without a digest are never reported.
+     */
+    public List<List<Content>> findDuplicateGroups() {
+        Held held = reading(Domain.CONTENTS);
+        try {
+            List<List<Content>> groups = new ArrayList<>();
+            for (Set<Integer> ids : contentIdsByHash.values()) {
+                if (ids.size() > 1) {
+                    List<Content> group = new ArrayList<>(ids.size());
+                    for (Integer id : ids) {
+                        group.add(new Content(contentsById.get(id)));
+                    }
+                    group.sort(Comparator.comparing(Content::getDayAdded, Comparator.nullsLast(Comparator.naturalOrder())));
+                    groups.add(group);
+                }
+            }
+            groups.sort(Comparator.comparingLong((List<Content> group) -> group.get(0).getSizeBytes()).reversed());
+            return groups;
+        } finally {
+            held.release();
+        }
+    }
+
+    /**
+     * Return the file paths of every catalogued content entry.
+     */
+    public Set<String> listContentPaths() {
+        Held held = reading(Domain.CONTENTS);
+        try {
+            Set<String> paths = new HashSet<>(Math.max(16, state.contents.size() * 4 / 3 + 1));
+            for (Content content : state.contents) {
+                paths.add(content.getFilePath());
+            }
+            return paths;
+        } finally {
+            held.release();
         }
     }
 
@@ -249,36 +685,36 @@ public final class FileBackedLibraryRepository {
      * database.
      */
     public void updateContentMetadata(Content content) {
-        lock.writeLock().lock();
+        List<LibraryChange> changes = new ArrayList<>(1);
+        Held held = writing(Domain.CONTENTS);
         try {
             Content copy = new Content(content);
-            upsertContentLocked(copy, true);
-            persist();
+            if (upsertContentLocked(copy, true)) {
+                contentUpsertedLocked(copy.getContentID(), changes);
+            }
         } finally {
-            lock.writeLock().unlock();
+            queueLocked(changes);
+            held.release();
         }
+        persist();
+        publish();
     }
 
     public List<Content> getAllContents() {
-        lock.readLock().lock();
+        Held held = reading(Domain.CONTENTS);
         try {
             return snapshotContentsLocked();
         } finally {
-            lock.readLock().unlock();
+            held.release();
         }
     }
 
     public Optional<Content> findContent(int contentId) {
-        lock.readLock().lock();
-        try {
-            return findContentLocked(contentId).map(Content::new);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return readOptimistically(Domain.CONTENTS, () -> findContentLocked(contentId).map(Content::new));
     }
 
     public List<String> listCategories() {
-        lock.readLock().lock();
+        Held held = reading(Domain.CONTENTS);
         try {
             return state.contents.stream()
                     .map(Content::getCategory)
@@ -288,12 +724,12 @@ public final class FileBackedLibraryRepository {
                     .stream()
                     .toList();
         } finally {
-            lock.readLock().unlock();
+            held.release();
         }
     }
 
     public List<String> listTags() {
-        lock.readLock().lock();
+        Held held = reading(Domain.CONTENTS);
         try {
             return state.contents.stream()
                     .flatMap(content -> content.getTags().stream())
@@ -303,241 +739,830 @@ public final class FileBackedLibraryRepository {
                     .stream()
                     .toList();
         } finally {
-            lock.readLock().unlock();
+            held.release();
         }
     }
 
+    /**
+     * Merge a user's history as read from the database.  The store is only
+     * written when the merge changed something, so refreshing a view does
+     * not rewrite it.
+     */
     public List<HistoryRecord> mergeHistoryFromDatabase(int userId, List<HistoryRecord> records) {
-        lock.writeLock().lock();
+        List<HistoryRecord> merged;
+        List<LibraryChange> changes = new ArrayList<>();
+        boolean renumbered = false;
+        IntPredicate user = id -> id == userId;
+        Held held = locking(EnumSet.of(Domain.HISTORY), Domain.OUTBOX);
         try {
+            Map<List<Integer>, HistoryRecord> before = historyByKeyLocked(user);
             Map<Integer, HistoryRecord> byContent = new HashMap<>();
             for (HistoryRecord record : state.history) {
                 if (record.getUserID() == userId) {
                     byContent.put(record.getContentID(), record);
                 }
             }
+            Map<Integer, PendingChange> pending = pendingChangesLocked(PendingChange.Kind.HISTORY, userId);
             for (HistoryRecord record : records) {
                 HistoryRecord copy = new HistoryRecord(record);
                 HistoryRecord existing = byContent.get(copy.getContentID());
+                PendingChange change = pending.get(copy.getContentID());
+                if (change != null && copy.getLastReadTime() != null
+                        && !copy.getLastReadTime().isAfter(change.getTimestamp())) {
+                    // The position recorded offline is newer and has not been replayed yet.
+                    continue;
+                }
                 if (existing == null) {
                     state.history.add(copy);
                 } else {
+                    renumbered |= existing.getHistoryID() != copy.getHistoryID();
                     existing.setLastReadTime(copy.getLastReadTime());
                     existing.setPageNumber(copy.getPageNumber());
                     existing.setHistoryID(copy.getHistoryID());
+                    if (copy.getContentTitle() != null) {
+                        existing.setContentTitle(copy.getContentTitle());
+                        existing.setContentType(copy.getContentType());
+                    }
                 }
             }
-            persist();
-            return snapshotHistoryLocked(userId);
+            historyChangesLocked(before, user, changes);
+            merged = snapshotHistoryLocked(userId);
         } finally {
-            lock.writeLock().unlock();
+            queueLocked(changes);
+            held.release();
+        }
+        if (renumbered || !changes.isEmpty()) {
+            persist();
+            publish();
         }
+        return merged;
     }
 
     public void saveHistory(HistoryRecord record) {
-        lock.writeLock().lock();
+        List<LibraryChange> changes = new ArrayList<>(1);
+        Held held = writing(Domain.HISTORY);
+        try {
+            saveHistoryLocked(new HistoryRecord(record), changes);
+        } finally {
+            queueLocked(changes);
+            held.release();
+        }
+        if (!changes.isEmpty()) {
+            persist();
+            publish();
+        }
+    }
+
+    /**
+     * Store a reading position recorded while the database is unreachable and
+     * queue it for replay, in a single write of the store file.
+     */
+    public void saveOfflineHistory(HistoryRecord record) {
+        List<LibraryChange> changes = new ArrayList<>(1);
+        Held held = locking(EnumSet.of(Domain.HISTORY, Domain.OUTBOX), Domain.USERS, Domain.CONTENTS);
         try {
             HistoryRecord copy = new HistoryRecord(record);
-            if (copy.getHistoryID() == 0) {
-                copy.setHistoryID(state.nextHistoryId--);
+            copy.setUserID(resolveUserIdLocked(copy.getUserID()));
+            copy.setContentID(resolveContentIdLocked(copy.getContentID()));
+            if (copy.getLastReadTime() == null) {
+                copy.setLastReadTime(LocalDateTime.now());
             }
-            boolean updated = false;
-            for (HistoryRecord existing : state.history) {
-                if (existing.getUserID() == copy.getUserID() && existing.getContentID() == copy.getContentID()) {
-                    existing.setPageNumber(copy.getPageNumber());
-                    existing.setLastReadTime(copy.getLastReadTime());
-                    updated = true;
-                    break;
-                }
+            saveHistoryLocked(copy, changes);
+            enqueueLocked(PendingChange.Kind.HISTORY, copy.getUserID(), copy.getContentID(), copy.getPageNumber(),
+                    false, copy.getLastReadTime());
+        } finally {
+            queueLocked(changes);
+            held.release();
+        }
+        persist();
+        publish();
+    }
+
+    private void saveHistoryLocked(HistoryRecord copy, List<LibraryChange> changes) {
+        if (copy.getHistoryID() == 0) {
+            copy.setHistoryID(state.nextHistoryId--);
+        }
+        HistoryRecord stored = null;
+        for (HistoryRecord existing : state.history) {
+            if (existing.getUserID() == copy.getUserID() && existing.getContentID() == copy.getContentID()) {
+                stored = existing;
+                break;
             }
-            if (!updated) {
-                if (copy.getLastReadTime() == null) {
-                    copy.setLastReadTime(LocalDateTime.now());
-                }
-                state.history.add(copy);
+        }
+        if (stored == null) {
+            if (copy.getLastReadTime() == null) {
+                copy.setLastReadTime(LocalDateTime.now());
             }
-            persist();
-        } finally {
-            lock.writeLock().unlock();
+            state.history.add(copy);
+            stored = copy;
+        } else if (stored.getPageNumber() != copy.getPageNumber()
+                || !equals(stored.getLastReadTime(), copy.getLastReadTime())) {
+            stored.setPageNumber(copy.getPageNumber());
+            stored.setLastReadTime(copy.getLastReadTime());
+        } else {
+            return;
         }
+        changes.add(LibraryChange.historyUpdated(stored.getUserID(), stored.getContentID(), new HistoryRecord(stored)));
     }
 
     public List<HistoryRecord> getHistory(int userId) {
-        lock.readLock().lock();
+        Held held = reading(Domain.HISTORY);
         try {
             return snapshotHistoryLocked(userId);
         } finally {
-            lock.readLock().unlock();
+            held.release();
         }
     }
 
     public Optional<HistoryRecord> findHistory(int userId, int contentId) {
-        lock.readLock().lock();
+        return readOptimistically(Domain.HISTORY, () -> state.history.stream()
+                .filter(record -> record.getUserID() == userId && record.getContentID() == contentId)
+                .findFirst()
+                .map(HistoryRecord::new));
+    }
+
+    /**
+     * Attach title, type and author of the referenced content to each record.
+     * The catalogue is scanned once for the whole batch; local metadata wins
+     * over details already present on the records (e.g. from a SQL join).
+     */
+    public List<HistoryRecord> describeHistory(List<HistoryRecord> records) {
+        Held held = reading(Domain.CONTENTS);
         try {
-            return state.history.stream()
-                    .filter(record -> record.getUserID() == userId && record.getContentID() == contentId)
-                    .findFirst()
-                    .map(HistoryRecord::new);
+            Map<Integer, Content> index = indexContentsLocked(records.stream()
+                    .map(HistoryRecord::getContentID)
+                    .collect(Collectors.toSet()));
+            for (HistoryRecord record : records) {
+                Content content = index.get(record.getContentID());
+                if (content != null) {
+                    record.setContentTitle(content.getTitle());
+                    record.setContentType(content.getFileType());
+                    record.setContentAuthor(content.getAuthor());
+                }
+            }
+            return records;
         } finally {
-            lock.readLock().unlock();
+            held.release();
         }
     }
 
+    /**
+     * Toggle a favourite while the database is unreachable.  The new state is
+     * queued for replay in the same write of the store file.
+     *
+     * @return {@code true} if the item is now favourite
+     */
     public boolean toggleFavourite(int userId, int contentId) {
-        lock.writeLock().lock();
+        boolean favourite;
+        LibraryChange change;
+        Held held = locking(EnumSet.of(Domain.FAVOURITES, Domain.OUTBOX), Domain.USERS, Domain.CONTENTS);
         try {
-            Optional<Favourite> existing = findFavouriteLocked(userId, contentId);
+            int resolvedUserId = resolveUserIdLocked(userId);
+            int resolvedContentId = resolveContentIdLocked(contentId);
+            LocalDateTime now = LocalDateTime.now();
+            Optional<Favourite> existing = findFavouriteLocked(resolvedUserId, resolvedContentId);
+            favourite = existing.isEmpty();
+            Favourite added = null;
             if (existing.isPresent()) {
                 state.favourites.remove(existing.get());
-                persist();
-                return false;
+            } else {
+                added = new Favourite(resolvedUserId, resolvedContentId);
+                added.setFavouriteID(state.nextFavouriteId--);
+                added.setAddedDate(now);
+                state.favourites.add(added);
+                added = new Favourite(added);
             }
-            Favourite favourite = new Favourite(userId, contentId);
-            favourite.setFavouriteID(state.nextFavouriteId--);
-            favourite.setAddedDate(LocalDateTime.now());
-            state.favourites.add(favourite);
-            persist();
-            return true;
+            enqueueLocked(PendingChange.Kind.FAVOURITE, resolvedUserId, resolvedContentId, 0, favourite, now);
+            change = LibraryChange.favouriteChanged(resolvedUserId, resolvedContentId, added);
+            queueLocked(List.of(change));
         } finally {
-            lock.writeLock().unlock();
+            held.release();
         }
+        persist();
+        publish();
+        return favourite;
     }
 
     public void setFavouriteState(int userId, int contentId, boolean favourite, LocalDateTime timestamp) {
-        lock.writeLock().lock();
+        List<LibraryChange> changes = new ArrayList<>(1);
+        boolean written;
+        Held held = writing(Domain.FAVOURITES);
         try {
             Optional<Favourite> existing = findFavouriteLocked(userId, contentId);
+            // Clearing a favourite that is not there changes nothing; setting one at least moves its date.
+            written = existing.isPresent() || favourite;
+            Favourite stored = null;
             if (favourite) {
-                Favourite target = existing.orElseGet(() -> {
+                stored = existing.orElseGet(() -> {
                     Favourite fav = new Favourite(userId, contentId);
                     fav.setFavouriteID(state.nextFavouriteId--);
                     state.favourites.add(fav);
                     return fav;
                 });
-                target.setAddedDate(timestamp != null ? timestamp : LocalDateTime.now());
+                stored.setAddedDate(timestamp != null ? timestamp : LocalDateTime.now());
+                stored = new Favourite(stored);
             } else {
                 existing.ifPresent(state.favourites::remove);
             }
-            persist();
+            if (existing.isPresent() != favourite) {
+                changes.add(LibraryChange.favouriteChanged(userId, contentId, stored));
+            }
         } finally {
-            lock.writeLock().unlock();
+            queueLocked(changes);
+            held.release();
+        }
+        if (written) {
+            persist();
+            publish();
         }
     }
 
     public boolean isFavourite(int userId, int contentId) {
-        lock.readLock().lock();
-        try {
-            return findFavouriteLocked(userId, contentId).isPresent();
-        } finally {
-            lock.readLock().unlock();
-        }
+        return readOptimistically(Domain.FAVOURITES, () -> findFavouriteLocked(userId, contentId).isPresent());
     }
 
+    /**
+     * Merge a user's favourites as read from the database.  Like
+     * {@link #mergeHistoryFromDatabase}, writes the store only on a change.
+     */
     public List<Favourite> mergeFavouritesFromDatabase(int userId, List<Favourite> favourites) {
-        lock.writeLock().lock();
+        List<Favourite> merged;
+        List<LibraryChange> changes = new ArrayList<>();
+        boolean updated = false;
+        IntPredicate user = id -> id == userId;
+        Held held = locking(EnumSet.of(Domain.FAVOURITES), Domain.OUTBOX);
         try {
+            Map<List<Integer>, Favourite> before = favouritesByKeyLocked(user);
             Set<Integer> seenContent = new HashSet<>();
+            Map<Integer, PendingChange> pending = pendingChangesLocked(PendingChange.Kind.FAVOURITE, userId);
             for (Favourite favourite : favourites) {
                 Favourite copy = new Favourite(favourite);
                 seenContent.add(copy.getContentID());
+                PendingChange change = pending.get(copy.getContentID());
+                if (change != null && !change.isFavourite()) {
+                    // Removed offline; the database still has it until the outbox is replayed.
+                    continue;
+                }
                 Optional<Favourite> existing = findFavouriteLocked(userId, copy.getContentID());
                 if (existing.isEmpty()) {
                     state.favourites.add(copy);
                 } else {
+                    updated |= existing.get().getFavouriteID() != copy.getFavouriteID()
+                            || !equals(existing.get().getAddedDate(), copy.getAddedDate());
                     existing.get().setAddedDate(copy.getAddedDate());
                     existing.get().setFavouriteID(copy.getFavouriteID());
+                    if (copy.getContentTitle() != null) {
+                        existing.get().setContentTitle(copy.getContentTitle());
+                        existing.get().setContentType(copy.getContentType());
+                    }
                 }
             }
-            state.favourites.removeIf(fav -> fav.getUserID() == userId && !seenContent.contains(fav.getContentID()));
-            persist();
-            return snapshotFavouritesLocked(userId);
+            state.favourites.removeIf(fav -> fav.getUserID() == userId && !seenContent.contains(fav.getContentID())
+                    && !(pending.containsKey(fav.getContentID()) && pending.get(fav.getContentID()).isFavourite()));
+            favouriteChangesLocked(before, user, changes);
+            merged = snapshotFavouritesLocked(userId);
         } finally {
-            lock.writeLock().unlock();
+            queueLocked(changes);
+            held.release();
+        }
+        if (updated || !changes.isEmpty()) {
+            persist();
+            publish();
         }
+        return merged;
     }
 
     public List<Favourite> getFavourites(int userId) {
-        lock.readLock().lock();
+        Held held = reading(Domain.FAVOURITES);
         try {
             return snapshotFavouritesLocked(userId);
         } finally {
-            lock.readLock().unlock();
+            held.release();
         }
     }
 
+    /**
+     * Attach title, type and author of the referenced content to each
+     * favourite.  See {@link #describeHistory(List)}.
+     */
+    public List<Favourite> describeFavourites(List<Favourite> favourites) {
+        Held held = reading(Domain.CONTENTS);
+        try {
+            Map<Integer, Content> index = indexContentsLocked(favourites.stream()
+                    .map(Favourite::getContentID)
+                    .collect(Collectors.toSet()));
+            for (Favourite favourite : favourites) {
+                Content content = index.get(favourite.getContentID());
+                if (content != null) {
+                    favourite.setContentTitle(content.getTitle());
+                    favourite.setContentType(content.getFileType());
+                    favourite.setContentAuthor(content.getAuthor());
+                }
+            }
+            return favourites;
+        } finally {
+            held.release();
+        }
+    }
+
+    /**
+     * Record a user as stored in the database; the store is written only
+     * when this is news, so logging in normally writes nothing.
+     */
     public User mergeUser(User user) {
-        lock.writeLock().lock();
+        User merged;
+        boolean changed = true;
+        List<LibraryChange> changes = new ArrayList<>();
+        // Remapping an offline user rewrites their activity as well.
+        Held held = writing(Domain.USERS, Domain.HISTORY, Domain.FAVOURITES, Domain.OUTBOX);
         try {
             Optional<User> existingById = findUserLocked(user.getUserID());
             Optional<User> existingByName = findUserByUsernameLocked(user.getUsername());
             if (existingById.isPresent()) {
+                changed = !equals(existingById.get().getUsername(), user.getUsername());
                 existingById.get().setUsername(user.getUsername());
-                persist();
-                return new User(existingById.get());
-            }
-            if (existingByName.isPresent()) {
-                existingByName.get().setUserID(user.getUserID());
-                persist();
-                return new User(existingByName.get());
+                merged = new User(existingById.get());
+            } else if (existingByName.isPresent()) {
+                int localId = existingByName.get().getUserID();
+                if (localId < 0) {
+                    // A user created offline: move their history and favourites to the database ID.
+                    remapUserIdsLocked(Map.of(localId, user.getUserID()), changes);
+                } else {
+                    existingByName.get().setUserID(user.getUserID());
+                }
+                merged = new User(existingByName.get());
+            } else {
+                User copy = new User(user);
+                state.users.add(copy);
+                merged = new User(copy);
             }
-            User copy = new User(user);
-            state.users.add(copy);
-            persist();
-            return new User(copy);
         } finally {
-            lock.writeLock().unlock();
+            queueLocked(changes);
+            held.release();
+        }
+        if (changed) {
+            persist();
+            publish();
         }
+        return merged;
     }
 
     public User findOrCreateUser(String username) {
-        lock.writeLock().lock();
+        User user;
+        Held held = writing(Domain.USERS);
         try {
             Optional<User> existing = findUserByUsernameLocked(username);
             if (existing.isPresent()) {
                 return new User(existing.get());
             }
-            User user = new User(username);
+            user = new User(username);
             user.setUserID(state.nextUserId--);
             state.users.add(user);
+            user = new User(user);
+        } finally {
+            held.release();
+        }
+        persist();
+        return user;
+    }
+
+    // --- offline outbox --------------------------------------------------
+
+    private List<PendingChange> outboxLocked() {
+        return state.outbox;
+    }
+
+    private void enqueueLocked(PendingChange.Kind kind, int userId, int contentId, int pageNumber, boolean favourite,
+                               LocalDateTime timestamp) {
+        PendingChange change = new PendingChange(state.nextChangeSequence++, kind, userId, contentId, pageNumber,
+                favourite, timestamp);
+        // Only the latest change per row is replayed.
+        List<PendingChange> outbox = outboxLocked();
+        outbox.removeIf(change::replaces);
+        outbox.add(change);
+    }
+
+    private Map<Integer, PendingChange> pendingChangesLocked(PendingChange.Kind kind, int userId) {
+        Map<Integer, PendingChange> byContent = new HashMap<>();
+        for (PendingChange change : outboxLocked()) {
+            if (change.getKind() == kind && change.getUserId() == userId) {
+                byContent.put(change.getContentId(), change);
+            }
+        }
+        return byContent;
+    }
+
+    private int resolveContentIdLocked(int contentId) {
+        return contentId >= 0 ? contentId : state.contentIdRemaps.getOrDefault(contentId, contentId);
+    }
+
+    private int resolveUserIdLocked(int userId) {
+        return userId >= 0 ? userId : state.userIdRemaps.getOrDefault(userId, userId);
+    }
+
+    /**
+     * Determine whether anything created or changed offline still has to be
+     * written to the database.
+     */
+    public boolean hasPendingSync() {
+        Held held = reading(Domain.USERS, Domain.CONTENTS, Domain.OUTBOX);
+        try {
+            return !outboxLocked().isEmpty()
+                    || state.contents.stream().anyMatch(content -> content.getContentID() < 0)
+                    || state.users.stream().anyMatch(user -> user.getUserID() < 0);
+        } finally {
+            held.release();
+        }
+    }
+
+    /**
+     * Return copies of the users created offline (with local IDs).
+     */
+    public List<User> listOfflineUsers() {
+        Held held = reading(Domain.USERS);
+        try {
+            return state.users.stream().filter(user -> user.getUserID() < 0).map(User::new).toList();
+        } finally {
+            held.release();
+        }
+    }
+
+    /**
+     * Return copies of the content entries created offline (with local IDs).
+     */
+    public List<Content> listOfflineContents() {
+        Held held = reading(Domain.CONTENTS);
+        try {
+            return state.contents.stream().filter(content -> content.getContentID() < 0).map(Content::new).toList();
+        } finally {
+            held.release();
+        }
+    }
+
+    /**
+     * Return copies of the queued changes in the order they were made.
+     */
+    public List<PendingChange> getPendingChanges() {
+        Held held = reading(Domain.OUTBOX);
+        try {
+            List<PendingChange> changes = new ArrayList<>();
+            for (PendingChange change : outboxLocked()) {
+                changes.add(new PendingChange(change));
+            }
+            changes.sort(Comparator.comparingLong(PendingChange::getSequence));
+            return changes;
+        } finally {
+            held.release();
+        }
+    }
+
+    /**
+     * Drop changes that were written to the database.  Changes queued for the
+     * same rows after they were read are kept.
+     */
+    public void acknowledgeChanges(Collection<PendingChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Set<Long> sequences = changes.stream().map(PendingChange::getSequence).collect(Collectors.toSet());
+        boolean removed;
+        Held held = writing(Domain.OUTBOX);
+        try {
+            removed = outboxLocked().removeIf(change -> sequences.contains(change.getSequence()));
+        } finally {
+            held.release();
+        }
+        if (removed) {
             persist();
-            return new User(user);
+        }
+    }
+
+    /**
+     * Replace local user IDs with the IDs the database assigned, in users,
+     * history, favourites and queued changes.
+     *
+     * @param remaps local ID to database ID
+     */
+    public void remapUserIds(Map<Integer, Integer> remaps) {
+        if (remaps.isEmpty()) {
+            return;
+        }
+        List<LibraryChange> changes = new ArrayList<>();
+        Held held = writing(Domain.USERS, Domain.HISTORY, Domain.FAVOURITES, Domain.OUTBOX);
+        try {
+            remapUserIdsLocked(remaps, changes);
         } finally {
-            lock.writeLock().unlock();
+            queueLocked(changes);
+            held.release();
         }
+        persist();
+        publish();
     }
 
-    public String getTheme() {
-        lock.readLock().lock();
+    private void remapUserIdsLocked(Map<Integer, Integer> remaps, List<LibraryChange> changes) {
+        IntPredicate affected = id -> remaps.containsKey(id) || remaps.containsValue(id);
+        Map<List<Integer>, HistoryRecord> historyBefore = historyByKeyLocked(affected);
+        Map<List<Integer>, Favourite> favouritesBefore = favouritesByKeyLocked(affected);
+        for (Map.Entry<Integer, Integer> remap : remaps.entrySet()) {
+            int localId = remap.getKey();
+            int storedId = remap.getValue();
+            boolean known = state.users.stream().anyMatch(user -> user.getUserID() == storedId);
+            if (known) {
+                state.users.removeIf(user -> user.getUserID() == localId);
+            } else {
+                state.users.stream().filter(user -> user.getUserID() == localId)
+                        .forEach(user -> user.setUserID(storedId));
+            }
+        }
+        for (HistoryRecord record : state.history) {
+            record.setUserID(remaps.getOrDefault(record.getUserID(), record.getUserID()));
+        }
+        for (Favourite favourite : state.favourites) {
+            favourite.setUserID(remaps.getOrDefault(favourite.getUserID(), favourite.getUserID()));
+        }
+        for (PendingChange change : outboxLocked()) {
+            change.setUserId(remaps.getOrDefault(change.getUserId(), change.getUserId()));
+        }
+        state.userIdRemaps.putAll(remaps);
+        dedupeActivityLocked();
+        historyChangesLocked(historyBefore, affected, changes);
+        favouriteChangesLocked(favouritesBefore, affected, changes);
+    }
+
+    /**
+     * Replace local content IDs with the IDs the database assigned after the
+     * entries were inserted.  If the database row was already merged into the
+     * catalogue, the local entry is folded into it.
+     *
+     * @param remaps local ID to database ID
+     */
+    public void remapContentIds(Map<Integer, Integer> remaps) {
+        if (remaps.isEmpty()) {
+            return;
+        }
+        List<LibraryChange> changes = new ArrayList<>();
+        Held held = writing(Domain.CONTENTS, Domain.HISTORY, Domain.FAVOURITES, Domain.OUTBOX);
         try {
-            return state.theme;
+            IntPredicate everyone = id -> true;
+            Map<List<Integer>, HistoryRecord> historyBefore = historyByKeyLocked(everyone);
+            Map<List<Integer>, Favourite> favouritesBefore = favouritesByKeyLocked(everyone);
+            for (Map.Entry<Integer, Integer> remap : remaps.entrySet()) {
+                Content local = contentsById.remove(remap.getKey());
+                if (local == null) {
+                    continue;
+                }
+                changes.add(LibraryChange.contentRemoved(remap.getKey()));
+                unindexHashLocked(local);
+                if (contentsById.containsKey(remap.getValue())) {
+                    state.contents.removeIf(content -> content == local);
+                    local.setContentID(remap.getValue());
+                    upsertContentLocked(local, false);
+                } else {
+                    local.setContentID(remap.getValue());
+                    contentsById.put(local.getContentID(), local);
+                    indexHashLocked(local);
+                }
+                changes.add(LibraryChange.contentRemapped(remap.getKey(),
+                        new Content(contentsById.get(remap.getValue()))));
+            }
+            for (HistoryRecord record : state.history) {
+                record.setContentID(remaps.getOrDefault(record.getContentID(), record.getContentID()));
+            }
+            for (Favourite favourite : state.favourites) {
+                favourite.setContentID(remaps.getOrDefault(favourite.getContentID(), favourite.getContentID()));
+            }
+            for (PendingChange change : outboxLocked()) {
+                change.setContentId(remaps.getOrDefault(change.getContentId(), change.getContentId()));
+            }
+            state.contentIdRemaps.putAll(remaps);
+            dedupeActivityLocked();
+            historyChangesLocked(historyBefore, everyone, changes);
+            favouriteChangesLocked(favouritesBefore, everyone, changes);
         } finally {
-            lock.readLock().unlock();
+            queueLocked(changes);
+            held.release();
         }
+        persist();
+        publish();
     }
 
-    public void setTheme(String theme) {
-        lock.writeLock().lock();
+    /**
+     * After a remap two rows may describe the same user and content; keep the
+     * most recent history record and a single favourite.
+     */
+    private void dedupeActivityLocked() {
+        Map<List<Integer>, HistoryRecord> latest = new HashMap<>();
+        for (HistoryRecord record : state.history) {
+            latest.merge(List.of(record.getUserID(), record.getContentID()), record, (a, b) ->
+                    b.getLastReadTime() != null && (a.getLastReadTime() == null
+                            || b.getLastReadTime().isAfter(a.getLastReadTime())) ? b : a);
+        }
+        state.history.removeIf(record -> latest.get(List.of(record.getUserID(), record.getContentID())) != record);
+        Set<List<Integer>> seen = new HashSet<>();
+        state.favourites.removeIf(favourite -> !seen.add(List.of(favourite.getUserID(), favourite.getContentID())));
+    }
+
+    public List<String> getWatchedFolders() {
+        Held held = reading(Domain.PREFERENCES);
         try {
-            if (!equals(state.theme, theme)) {
-                state.theme = theme;
-                persist();
+            return List.copyOf(state.watchedFolders);
+        } finally {
+            held.release();
+        }
+    }
+
+    /**
+     * Register a library root folder to keep in sync with the file system.
+     *
+     * @return {@code true} if the folder was not watched before
+     */
+    public boolean addWatchedFolder(String folder) {
+        Held held = writing(Domain.PREFERENCES);
+        try {
+            if (state.watchedFolders.contains(folder)) {
+                return false;
             }
+            state.watchedFolders.add(folder);
         } finally {
-            lock.writeLock().unlock();
+            held.release();
+        }
+        persist();
+        return true;
+    }
+
+    public boolean removeWatchedFolder(String folder) {
+        Held held = writing(Domain.PREFERENCES);
+        try {
+            if (!state.watchedFolders.remove(folder)) {
+                return false;
+            }
+        } finally {
+            held.release();
+        }
+        persist();
+        return true;
+    }
+
+    public String getTheme() {
+        return readOptimistically(Domain.PREFERENCES, () -> state.theme);
+    }
+
+    public void setTheme(String theme) {
+        boolean changed;
+        Held held = writing(Domain.PREFERENCES);
+        try {
+            changed = !equals(state.theme, theme);
+            state.theme = theme;
+        } finally {
+            held.release();
+        }
+        if (changed) {
+            persist();
         }
         notifyThemeListeners(theme);
     }
 
-    public void addThemeListener(java.util.function.Consumer<String> listener) {
+    /**
+     * Register a callback for theme changes.  It is held strongly until
+     * {@link #removeThemeListener} is called with the same instance.
+     */
+    public void addThemeListener(Consumer<String> listener) {
         themeListeners.add(listener);
     }
 
+    public void removeThemeListener(Consumer<String> listener) {
+        themeListeners.remove(listener);
+    }
+
     private void notifyThemeListeners(String theme) {
-        for (java.util.function.Consumer<String> listener : themeListeners) {
+        for (Consumer<String> listener : themeListeners) {
             listener.accept(theme);
         }
     }
 
+    /**
+     * Register a callback for library changes.  Each call receives the
+     * changes of one write, after it was persisted, on the thread of that or
+     * a later write; batches arrive one at a time in the order the writes
+     * were applied.  Listeners must be quick and hand UI work to the FX
+     * thread.
+     * Held strongly until {@link #removeChangeListener} is called with the
+     * same instance.
+     */
+    public void addChangeListener(Consumer<List<LibraryChange>> listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(Consumer<List<LibraryChange>> listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Queue the changes of a write for {@link #publish()}.  Called before the
+     * write locks are released, so batches touching the same domain queue in
+     * the order they were applied.
+     */
+    private void queueLocked(List<LibraryChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        synchronized (unpublished) {
+            unpublished.addLast(List.copyOf(changes));
+        }
+    }
+
+    /**
+     * Deliver every queued batch, oldest first.  Called after
+     * {@link #persist()}; a batch queued by another write whose own publish
+     * has not run yet goes out too, as the file just written includes it.
+     */
+    private void publish() {
+        publishLock.lock();
+        try {
+            while (true) {
+                List<LibraryChange> batch;
+                synchronized (unpublished) {
+                    batch = unpublished.pollFirst();
+                }
+                if (batch == null) {
+                    return;
+                }
+                for (Consumer<List<LibraryChange>> listener : changeListeners) {
+                    try {
+                        listener.accept(batch);
+                    } catch (RuntimeException ex) {
+                        // The write has happened; a failing view must not undo it for the caller.
+                        LOG.log(Level.WARNING, "Library change listener failed", ex);
+                    }
+                }
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    private void contentUpsertedLocked(int contentId, List<LibraryChange> changes) {
+        changes.add(LibraryChange.contentUpserted(new Content(contentsById.get(contentId))));
+    }
+
+    /** Copies of the history entries of matching users, by user and content ID. */
+    private Map<List<Integer>, HistoryRecord> historyByKeyLocked(IntPredicate users) {
+        Map<List<Integer>, HistoryRecord> byKey = new HashMap<>();
+        for (HistoryRecord record : state.history) {
+            if (users.test(record.getUserID())) {
+                byKey.put(List.of(record.getUserID(), record.getContentID()), new HistoryRecord(record));
+            }
+        }
+        return byKey;
+    }
+
+    /** Copies of the favourites of matching users, by user and content ID. */
+    private Map<List<Integer>, Favourite> favouritesByKeyLocked(IntPredicate users) {
+        Map<List<Integer>, Favourite> byKey = new HashMap<>();
+        for (Favourite favourite : state.favourites) {
+            if (users.test(favourite.getUserID())) {
+                byKey.put(List.of(favourite.getUserID(), favourite.getContentID()), new Favourite(favourite));
+            }
+        }
+        return byKey;
+    }
+
+    /** Add a change for every history entry of matching users that differs from {@code before}. */
+    private void historyChangesLocked(Map<List<Integer>, HistoryRecord> before, IntPredicate users,
+                                      List<LibraryChange> changes) {
+        Map<List<Integer>, HistoryRecord> after = historyByKeyLocked(users);
+        for (Map.Entry<List<Integer>, HistoryRecord> entry : after.entrySet()) {
+            HistoryRecord previous = before.get(entry.getKey());
+            HistoryRecord current = entry.getValue();
+            if (previous == null || previous.getPageNumber() != current.getPageNumber()
+                    || !equals(previous.getLastReadTime(), current.getLastReadTime())) {
+                changes.add(LibraryChange.historyUpdated(current.getUserID(), current.getContentID(), current));
+            }
+        }
+        for (List<Integer> key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                changes.add(LibraryChange.historyUpdated(key.get(0), key.get(1), null));
+            }
+        }
+    }
+
+    /** Add a change for every favourite of matching users added or removed since {@code before}. */
+    private void favouriteChangesLocked(Map<List<Integer>, Favourite> before, IntPredicate users,
+                                        List<LibraryChange> changes) {
+        Map<List<Integer>, Favourite> after = favouritesByKeyLocked(users);
+        for (Map.Entry<List<Integer>, Favourite> entry : after.entrySet()) {
+            if (!before.containsKey(entry.getKey())) {
+                changes.add(LibraryChange.favouriteChanged(entry.getKey().get(0), entry.getKey().get(1),
+                        entry.getValue()));
+            }
+        }
+        for (List<Integer> key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                changes.add(LibraryChange.favouriteChanged(key.get(0), key.get(1), null));
+            }
+        }
+    }
+
     private static final class LibraryState implements Serializable {
         private static final long serialVersionUID = 1L;
         private List<Content> contents = new ArrayList<>();
@@ -549,5 +1574,13 @@ public final class FileBackedLibraryRepository {
         private int nextFavouriteId = -1;
         private int nextUserId = -1;
         private String theme = "LIGHT";
+        /** Absent (null) in stores written before folders could be watched. */
+        private List<String> watchedFolders = new ArrayList<>();
+        /** Offline changes awaiting replay to the database; null in older stores. */
+        private List<PendingChange> outbox = new ArrayList<>();
+        private long nextChangeSequence;
+        /** Local IDs replaced by database IDs after replay, so stale references still resolve; null in older stores. */
+        private Map<Integer, Integer> contentIdRemaps = new HashMap<>();
+        private Map<Integer, Integer> userIdRemaps = new HashMap<>();
     }
 }
@@ -0,0 +1,118 @@
+package transparent.repository;
+
+import transparent.model.Content;
+import transparent.model.Favourite;
+import transparent.model.HistoryRecord;
+
+import java.util.Optional;
+
+/**
+ * One change to the library, as published by
+ * {@link FileBackedLibraryRepository} to its change listeners so that views
+ * can update the affected rows instead of reloading everything.  Changes are
+ * delivered in batches, one batch per repository write, after the write has
+ * been persisted.  Carried values are copies, shared by every listener of
+ * the batch, so receivers must not modify them.
+ */
+public final class LibraryChange {
+
+    public enum Kind {
+        /**
+         * A content entry was added or changed; {@link #getContent()} holds it.
+         * An entry created offline that received its database ID is upserted
+         * under the new ID, with the local one in {@link #getPreviousContentId()}.
+         */
+        CONTENT_UPSERTED,
+        /** A content entry was removed; favourites and history of it are kept. */
+        CONTENT_REMOVED,
+        /**
+         * A favourite was added or removed; {@link #getFavourite()} holds it,
+         * or is empty if it was removed.
+         */
+        FAVOURITE_CHANGED,
+        /**
+         * A reading position was saved; {@link #getHistory()} holds it, or is
+         * empty if the entry moved to another ID.
+         */
+        HISTORY_UPDATED
+    }
+
+    private final Kind kind;
+    private final int userId;
+    private final int contentId;
+    private final int previousContentId;
+    private final Content content;
+    private final Favourite favourite;
+    private final HistoryRecord history;
+
+    private LibraryChange(Kind kind, int userId, int contentId, int previousContentId, Content content,
+                          Favourite favourite, HistoryRecord history) {
+        this.kind = kind;
+        this.userId = userId;
+        this.contentId = contentId;
+        this.previousContentId = previousContentId;
+        this.content = content;
+        this.favourite = favourite;
+        this.history = history;
+    }
+
+    static LibraryChange contentUpserted(Content content) {
+        return contentRemapped(content.getContentID(), content);
+    }
+
+    static LibraryChange contentRemapped(int previousContentId, Content content) {
+        return new LibraryChange(Kind.CONTENT_UPSERTED, 0, content.getContentID(), previousContentId, content,
+                null, null);
+    }
+
+    static LibraryChange contentRemoved(int contentId) {
+        return new LibraryChange(Kind.CONTENT_REMOVED, 0, contentId, contentId, null, null, null);
+    }
+
+    static LibraryChange favouriteChanged(int userId, int contentId, Favourite favourite) {
+        return new LibraryChange(Kind.FAVOURITE_CHANGED, userId, contentId, contentId, null, favourite, null);
+    }
+
+    static LibraryChange historyUpdated(int userId, int contentId, HistoryRecord history) {
+        return new LibraryChange(Kind.HISTORY_UPDATED, userId, contentId, contentId, null, null, history);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** The user a favourite or history change belongs to; unused for content changes. */
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getContentId() {
+        return contentId;
+    }
+
+    /**
+     * The ID the entry had before this change: the local ID of a remapped
+     * entry, otherwise {@link #getContentId()}.
+     */
+    public int getPreviousContentId() {
+        return previousContentId;
+    }
+
+    /** The stored entry after a {@link Kind#CONTENT_UPSERTED} change. */
+    public Content getContent() {
+        return content;
+    }
+
+    /** Whether the content is a favourite of the user after a {@link Kind#FAVOURITE_CHANGED} change. */
+    public boolean isFavourite() {
+        return favourite != null;
+    }
+
+    public Optional<Favourite> getFavourite() {
+        return Optional.ofNullable(favourite);
+    }
+
+    public Optional<HistoryRecord> getHistory() {
+        return Optional.ofNullable(history);
+    }
+}
@@ -0,0 +1,104 @@
+package transparent.repository;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * A change made while the database was unreachable that still has to be
+ * replayed to it.  Changes are queued by {@link FileBackedLibraryRepository}
+ * in the same store write as the local change itself, so the outbox survives
+ * restarts.  Content created offline is not queued here: every entry with a
+ * local (negative) ID is pending insertion by definition.
+ */
+public final class PendingChange implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        /** A reading position; {@link #getPageNumber()} holds the page. */
+        HISTORY,
+        /** A favourite added or removed; {@link #isFavourite()} holds the new state. */
+        FAVOURITE,
+        /** File path, type or size of a stored content entry changed. */
+        CONTENT_FILE,
+        /** A stored content entry was removed from the library; its row is marked missing. */
+        CONTENT_DELETE
+    }
+
+    private final long sequence;
+    private final Kind kind;
+    private int userId;
+    private int contentId;
+    private final int pageNumber;
+    private final boolean favourite;
+    private final LocalDateTime timestamp;
+
+    PendingChange(long sequence, Kind kind, int userId, int contentId, int pageNumber, boolean favourite,
+                  LocalDateTime timestamp) {
+        this.sequence = sequence;
+        this.kind = kind;
+        this.userId = userId;
+        this.contentId = contentId;
+        this.pageNumber = pageNumber;
+        this.favourite = favourite;
+        this.timestamp = timestamp;
+    }
+
+    PendingChange(PendingChange other) {
+        this(other.sequence, other.kind, other.userId, other.contentId, other.pageNumber, other.favourite,
+                other.timestamp);
+    }
+
+    /** Position in the outbox; later changes have higher numbers. */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** The user the change belongs to; unused for content changes. */
+    public int getUserId() {
+        return userId;
+    }
+
+    void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getContentId() {
+        return contentId;
+    }
+
+    void setContentId(int contentId) {
+        this.contentId = contentId;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public boolean isFavourite() {
+        return favourite;
+    }
+
+    /** When the change was made locally; used to resolve conflicts with the database. */
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Return whether this change supersedes {@code other}: both describe the
+     * same row, so only the later one needs replaying.
+     */
+    boolean replaces(PendingChange other) {
+        if (other.contentId != contentId) {
+            return false;
+        }
+        return switch (kind) {
+            case HISTORY, FAVOURITE -> other.kind == kind && other.userId == userId;
+            case CONTENT_FILE -> other.kind == Kind.CONTENT_FILE;
+            case CONTENT_DELETE -> other.kind == Kind.CONTENT_FILE || other.kind == Kind.CONTENT_DELETE;
+        };
+    }
+}
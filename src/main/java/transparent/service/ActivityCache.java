@@ -0,0 +1,175 @@
+package transparent.service;
+
+import transparent.metrics.Metrics;
+import transparent.model.Favourite;
+import transparent.model.HistoryRecord;
+import transparent.repository.FileBackedLibraryRepository;
+import transparent.repository.LibraryChange;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory favourites and latest reading positions of each user, so that
+ * opening a book answers "is this a favourite?" and "where was I?" without a
+ * query or a write.  A user's activity is loaded once, from the database
+ * when reachable, either ahead of time at login with {@link #preload} or by
+ * the first read.  From then on it follows the
+ * {@link LibraryChange library changes}, which every write of a favourite or
+ * a position publishes, so it stays current without being reloaded.
+ */
+public final class ActivityCache {
+    private static final Executor LOADER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "transparent-activity-load");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Integer, UserActivity> users = new ConcurrentHashMap<>();
+
+    private ActivityCache() {
+        FileBackedLibraryRepository.getInstance().addChangeListener(this::apply);
+    }
+
+    private static final class Holder {
+        private static final ActivityCache INSTANCE = new ActivityCache();
+    }
+
+    public static ActivityCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Load a user's activity in the background, e.g. right after login, so
+     * the first book opens without waiting for it.
+     */
+    public CompletableFuture<Void> preload(int userId) {
+        return CompletableFuture.runAsync(() -> loaded(userId), LOADER);
+    }
+
+    public boolean isFavourite(int userId, int contentId) {
+        return loaded(userId).favourites.contains(contentId);
+    }
+
+    /** IDs of the content the user has marked as favourite. */
+    public Set<Integer> getFavouriteIds(int userId) {
+        return Set.copyOf(loaded(userId).favourites);
+    }
+
+    /** A copy of the user's latest position in the content, if they opened it before. */
+    public Optional<HistoryRecord> findLatest(int userId, int contentId) {
+        return Optional.ofNullable(loaded(userId).latest.get(contentId)).map(HistoryRecord::new);
+    }
+
+    /**
+     * Return the user's activity, loading it on this thread if nobody has
+     * started to, or waiting for the load in progress.
+     */
+    private UserActivity loaded(int userId) {
+        UserActivity activity = users.computeIfAbsent(userId, id -> new UserActivity());
+        if (activity.loading.compareAndSet(false, true)) {
+            Metrics metrics = Metrics.getInstance();
+            long start = System.nanoTime();
+            try {
+                // Favourites and history are separate queries; run them side by side.
+                CompletableFuture<List<Favourite>> favourites = CompletableFuture.supplyAsync(
+                        () -> new FavouriteService().getFavourites(userId), LOADER);
+                List<HistoryRecord> history = new HistoryService().getHistory(userId);
+                activity.fill(favourites.join(), history);
+                activity.loaded.complete(null);
+            } catch (RuntimeException ex) {
+                // Let the next read try again.
+                users.remove(userId, activity);
+                activity.loaded.completeExceptionally(ex);
+            } finally {
+                metrics.timer("activity.load").recordSince(start);
+            }
+        }
+        activity.loaded.join();
+        return activity;
+    }
+
+    private void apply(List<LibraryChange> changes) {
+        for (LibraryChange change : changes) {
+            switch (change.getKind()) {
+                case FAVOURITE_CHANGED -> {
+                    UserActivity activity = users.get(change.getUserId());
+                    if (activity != null) {
+                        activity.favouriteChanged(change.getContentId(), change.isFavourite());
+                    }
+                }
+                case HISTORY_UPDATED -> {
+                    UserActivity activity = users.get(change.getUserId());
+                    if (activity != null) {
+                        activity.historyChanged(change.getContentId(), change.getHistory().orElse(null));
+                    }
+                }
+                case CONTENT_UPSERTED, CONTENT_REMOVED -> {
+                    // Nothing cached depends on content details.
+                }
+            }
+        }
+    }
+
+    /**
+     * One user's favourites and latest positions.  Reads go straight to the
+     * concurrent collections; updates are serialised on the instance.
+     */
+    private static final class UserActivity {
+        private final Set<Integer> favourites = ConcurrentHashMap.newKeySet();
+        private final Map<Integer, HistoryRecord> latest = new ConcurrentHashMap<>();
+        private final AtomicBoolean loading = new AtomicBoolean();
+        private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+        /**
+         * Content changed while the load ran, whose loaded state may be older
+         * than the change; {@code null} once loaded.
+         */
+        private Set<Integer> changedFavourites = new HashSet<>();
+        private Set<Integer> changedHistory = new HashSet<>();
+
+        synchronized void fill(List<Favourite> loadedFavourites, List<HistoryRecord> loadedHistory) {
+            for (Favourite favourite : loadedFavourites) {
+                if (!changedFavourites.contains(favourite.getContentID())) {
+                    favourites.add(favourite.getContentID());
+                }
+            }
+            for (HistoryRecord record : loadedHistory) {
+                if (!changedHistory.contains(record.getContentID())) {
+                    latest.put(record.getContentID(), new HistoryRecord(record));
+                }
+            }
+            changedFavourites = null;
+            changedHistory = null;
+        }
+
+        synchronized void favouriteChanged(int contentId, boolean favourite) {
+            if (changedFavourites != null) {
+                changedFavourites.add(contentId);
+            }
+            if (favourite) {
+                favourites.add(contentId);
+            } else {
+                favourites.remove(contentId);
+            }
+        }
+
+        synchronized void historyChanged(int contentId, HistoryRecord record) {
+            if (changedHistory != null) {
+                changedHistory.add(contentId);
+            }
+            if (record == null) {
+                latest.remove(contentId);
+            } else {
+                latest.put(contentId, new HistoryRecord(record));
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package transparent.service;
+
+import transparent.model.Content;
+import transparent.repository.FileBackedLibraryRepository;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports every supported file below a directory in one operation.  The tree
+ * is walked first, metadata is then extracted in parallel on a bounded thread
+ * pool and the resulting entries are written with a single batched database
+ * transaction and a single repository write.  Files already in the library
+ * are skipped: by path before any work is done, and by content fingerprint
+ * (computed alongside the metadata) for copies stored under another name.
+ */
+public class BulkImportService {
+    /** Minimum interval between progress callbacks while extracting. */
+    private static final long PROGRESS_INTERVAL_NANOS = 200_000_000L;
+
+    public enum Stage { SCANNING, EXTRACTING, SAVING, DONE }
+
+    /**
+     * Immutable snapshot of an import's progress.
+     */
+    public static final class Progress {
+        private final Stage stage;
+        private final int processed;
+        private final int total;
+        private final int imported;
+        private final int skipped;
+        private final int failed;
+        private final int duplicates;
+        private final long elapsedNanos;
+
+        Progress(Stage stage, int processed, int total, int imported, int skipped, int failed, int duplicates,
+                 long elapsedNanos) {
+            this.stage = stage;
+            this.processed = processed;
+            this.total = total;
+            this.imported = imported;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.duplicates = duplicates;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        /** Files whose metadata has been extracted so far. */
+        public int getProcessed() {
+            return processed;
+        }
+
+        /** Files found that are not yet in the library. */
+        public int getTotal() {
+            return total;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        /** Supported files skipped because they are already in the library. */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        /** Files skipped because identical content is already in the library or earlier in this import. */
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000L;
+        }
+
+        /** Extraction throughput in files per second. */
+        public double getFilesPerSecond() {
+            return elapsedNanos <= 0 ? 0 : processed * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        /** Called from the importing thread; implementations must hand off to the UI thread themselves. */
+        void onProgress(Progress progress);
+    }
+
+    private final ContentService contentService = new ContentService();
+    private final MetadataExtractor extractor = new MetadataExtractor();
+    private final FileBackedLibraryRepository repository = FileBackedLibraryRepository.getInstance();
+    private final int parallelism;
+
+    public BulkImportService() {
+        this(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8)));
+    }
+
+    public BulkImportService(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Import all supported files below {@code root}.  Blocks until the import
+     * completes; run it off the JavaFX application thread.
+     *
+     * @param root     the directory to walk
+     * @param listener receives progress updates, may be {@code null}
+     * @return the final progress snapshot
+     * @throws IOException          if the directory cannot be walked
+     * @throws InterruptedException if the calling thread is interrupted; nothing is saved
+     */
+    public Progress importFolder(Path root, ProgressListener listener) throws IOException, InterruptedException {
+        ProgressListener sink = listener == null ? progress -> { } : listener;
+        long start = System.nanoTime();
+        sink.onProgress(new Progress(Stage.SCANNING, 0, 0, 0, 0, 0, 0, 0));
+
+        Set<String> known = repository.listContentPaths();
+        List<Path> candidates = new ArrayList<>();
+        int skipped = collectCandidates(root, known, candidates);
+        int total = candidates.size();
+
+        List<Content> extracted = new ArrayList<>(total);
+        Set<String> seenHashes = new HashSet<>();
+        int failed = 0;
+        int duplicates = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, total)),
+                new ImportThreadFactory());
+        try {
+            CompletionService<Content> completion = new ExecutorCompletionService<>(pool);
+            for (Path path : candidates) {
+                completion.submit(() -> {
+                    Content content = extractor.extract(path);
+                    content.setContentHash(FingerprintService.fingerprint(path));
+                    return content;
+                });
+            }
+            long lastReport = 0;
+            for (int processed = 1; processed <= total; processed++) {
+                try {
+                    Content content = completion.take().get();
+                    String hash = content.getContentHash();
+                    if (!seenHashes.add(hash) || repository.containsContentHash(hash)) {
+                        duplicates++;
+                    } else {
+                        extracted.add(content);
+                    }
+                } catch (ExecutionException ex) {
+                    failed++;
+                }
+                long now = System.nanoTime();
+                if (now - lastReport >= PROGRESS_INTERVAL_NANOS || processed == total) {
+                    lastReport = now;
+                    sink.onProgress(new Progress(Stage.EXTRACTING, processed, total, 0, skipped, failed, duplicates,
+                            now - start));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        sink.onProgress(new Progress(Stage.SAVING, total, total, 0, skipped, failed, duplicates,
+                System.nanoTime() - start));
+        List<Content> saved = extracted.isEmpty() ? List.of() : contentService.saveContents(extracted);
+        Progress done = new Progress(Stage.DONE, total, total, saved.size(), skipped, failed, duplicates,
+                System.nanoTime() - start);
+        sink.onProgress(done);
+        return done;
+    }
+
+    private int collectCandidates(Path root, Set<String> known, List<Path> candidates) throws IOException {
+        int[] skipped = {0};
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && MetadataExtractor.isSupported(file)) {
+                    if (known.contains(file.toAbsolutePath().toString())) {
+                        skipped[0]++;
+                    } else {
+                        candidates.add(file);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // Unreadable entries are skipped rather than aborting the whole import.
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return skipped[0];
+    }
+
+    private static final class ImportThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "transparent-import-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package transparent.service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Read-only view of a comic book archive (CBZ, or any ZIP of images).  Only
+ * the zip central directory is read when opening, so even a very large
+ * archive opens at once; each page is inflated and decoded on request with a
+ * random-access read of its entry.
+ *
+ * <p>Pages are the image entries in natural order ({@code page2} before
+ * {@code page10}), ignoring directories, hidden files and macOS resource
+ * forks.  {@link ZipFile} is thread-safe, so pages may be decoded
+ * concurrently.</p>
+ */
+public final class ComicArchive implements PagedImage {
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "gif", "bmp");
+
+    /**
+     * Orders names the way people number pages: runs of digits compare by
+     * value, everything else case-insensitively.
+     */
+    public static final Comparator<String> NATURAL_ORDER = ComicArchive::compareNatural;
+
+    private final ZipFile zip;
+    private final List<ZipEntry> pages;
+
+    private ComicArchive(ZipFile zip, List<ZipEntry> pages) {
+        this.zip = zip;
+        this.pages = pages;
+    }
+
+    /**
+     * Open the archive at {@code path} and list its pages.
+     *
+     * @throws IOException if the file is not a readable zip archive
+     */
+    public static ComicArchive open(Path path) throws IOException {
+        ZipFile zip = new ZipFile(path.toFile());
+        try {
+            List<ZipEntry> pages = new ArrayList<>();
+            zip.stream().filter(ComicArchive::isPage).forEach(pages::add);
+            pages.sort(Comparator.comparing(ZipEntry::getName, NATURAL_ORDER));
+            return new ComicArchive(zip, List.copyOf(pages));
+        } catch (RuntimeException ex) {
+            zip.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /** Name of the zero-based page's entry in the archive. */
+    public String getPageName(int pageIndex) {
+        return pages.get(pageIndex).getName();
+    }
+
+    /** Stream the raw bytes of the zero-based page. */
+    public InputStream openPage(int pageIndex) throws IOException {
+        return zip.getInputStream(pages.get(pageIndex));
+    }
+
+    @Override
+    public BufferedImage readPage(int pageIndex, int maxWidth) throws IOException {
+        try (InputStream in = openPage(pageIndex)) {
+            return Decoding.read(ImageIO.createImageInputStream(in), maxWidth, getPageName(pageIndex));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    private static boolean isPage(ZipEntry entry) {
+        if (entry.isDirectory()) {
+            return false;
+        }
+        String name = entry.getName();
+        int slash = name.lastIndexOf('/');
+        String fileName = name.substring(slash + 1);
+        int dot = fileName.lastIndexOf('.');
+        return !name.startsWith("__MACOSX/") && !fileName.startsWith(".") && dot > 0
+                && IMAGE_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static int compareNatural(String left, String right) {
+        int i = 0;
+        int j = 0;
+        while (i < left.length() && j < right.length()) {
+            char a = left.charAt(i);
+            char b = right.charAt(j);
+            if (Character.isDigit(a) && Character.isDigit(b)) {
+                int startA = i;
+                int startB = j;
+                while (i < left.length() && Character.isDigit(left.charAt(i))) {
+                    i++;
+                }
+                while (j < right.length() && Character.isDigit(right.charAt(j))) {
+                    j++;
+                }
+                int result = compareNumbers(left.substring(startA, i), right.substring(startB, j));
+                if (result != 0) {
+                    return result;
+                }
+            } else {
+                int result = Character.compare(Character.toLowerCase(a), Character.toLowerCase(b));
+                if (result != 0) {
+                    return result;
+                }
+                i++;
+                j++;
+            }
+        }
+        int result = Integer.compare(left.length() - i, right.length() - j);
+        return result != 0 ? result : left.compareTo(right);
+    }
+
+    /** Compare digit runs of any length by value; on a tie fewer leading zeros first. */
+    private static int compareNumbers(String a, String b) {
+        String trimmedA = a.replaceFirst("^0+(?=.)", "");
+        String trimmedB = b.replaceFirst("^0+(?=.)", "");
+        int result = Integer.compare(trimmedA.length(), trimmedB.length());
+        if (result == 0) {
+            result = trimmedA.compareTo(trimmedB);
+        }
+        return result != 0 ? result : Integer.compare(a.length(), b.length());
+    }
+}
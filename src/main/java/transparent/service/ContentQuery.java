@@ -2,17 +2,21 @@ package transparent.service;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * Represents the filters applied when retrieving content for the library view.
- * The query supports keyword, category and tag filtering.
+ * The query supports keyword, category and tag filtering.  Content whose text
+ * matched the keyword in the full-text index also satisfies the keyword filter.
  */
 public final class ContentQuery {
     private String keyword = "";
     private String category = "";
     private final List<String> tags = new ArrayList<>();
+    private final Set<Integer> textMatches = new HashSet<>();
 
     public String getKeyword() {
         return keyword;
@@ -50,6 +54,21 @@ public final class ContentQuery {
         }
     }
 
+    /**
+     * Content IDs whose text matches the keyword, as found by the full-text
+     * index.
+     */
+    public Set<Integer> getTextMatches() {
+        return Collections.unmodifiableSet(textMatches);
+    }
+
+    public void setTextMatches(Set<Integer> contentIds) {
+        textMatches.clear();
+        if (contentIds != null) {
+            textMatches.addAll(contentIds);
+        }
+    }
+
     public boolean hasKeyword() {
         return !keyword.isBlank();
     }
@@ -1,8 +1,12 @@
 package transparent.service;
 
 import transparent.dao.ContentDAO;
+import transparent.dao.SqlErrors;
+import transparent.metrics.Metrics;
+import transparent.metrics.SearchEvent;
 import transparent.model.Content;
 import transparent.repository.FileBackedLibraryRepository;
+import transparent.repository.LibraryChange;
 
 import java.io.File;
 import java.sql.SQLException;
@@ -11,6 +15,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -29,8 +35,35 @@ public class ContentService {
      * offline repository is used.
      */
     public List<Content> listContents(ContentQuery query) {
+        Metrics metrics = Metrics.getInstance();
+        long start = System.nanoTime();
         List<Content> contents = fetchContents();
-        return applyFilters(contents, query);
+        metrics.timer("library.fetch").recordSince(start);
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        start = System.nanoTime();
+        List<Content> filtered = applyFilters(contents, query);
+        metrics.timer("search.filter").recordSince(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = "filter";
+            event.query = query == null ? "" : query.getKeyword();
+            event.hits = filtered.size();
+            event.commit();
+        }
+        return filtered;
+    }
+
+    /**
+     * Like {@link #listContents} but from the local repository alone, without
+     * fetching from the database first.
+     */
+    public List<Content> listLocalContents(ContentQuery query) {
+        List<Content> contents = repository.getAllContents();
+        long start = System.nanoTime();
+        List<Content> filtered = applyFilters(contents, query);
+        Metrics.getInstance().timer("search.filter").recordSince(start);
+        return filtered;
     }
 
     public List<Content> getAllContents() {
@@ -46,17 +79,24 @@ public class ContentService {
         }
     }
 
-    private List<Content> applyFilters(List<Content> contents, ContentQuery query) {
+    List<Content> applyFilters(List<Content> contents, ContentQuery query) {
         if (query == null) {
             return contents;
         }
         return contents.stream()
-                .filter(content -> matchesKeyword(content, query))
-                .filter(content -> matchesCategory(content, query))
-                .filter(content -> matchesTags(content, query))
+                .filter(content -> matches(content, query))
                 .collect(Collectors.toCollection(ArrayList::new));
     }
 
+    /**
+     * Whether {@code content} passes the filters of {@code query}, as applied
+     * by {@link #listContents}.  Lets a view place a changed entry without
+     * listing the library again.
+     */
+    public boolean matches(Content content, ContentQuery query) {
+        return matchesKeyword(content, query) && matchesCategory(content, query) && matchesTags(content, query);
+    }
+
     private boolean matchesKeyword(Content content, ContentQuery query) {
         if (!query.hasKeyword()) {
             return true;
@@ -64,7 +104,8 @@ public class ContentService {
         String keyword = query.getKeyword().toLowerCase(Locale.ROOT);
         return containsIgnoreCase(content.getTitle(), keyword)
                 || containsIgnoreCase(content.getAuthor(), keyword)
-                || content.getTags().stream().anyMatch(tag -> containsIgnoreCase(tag, keyword));
+                || content.getTags().stream().anyMatch(tag -> containsIgnoreCase(tag, keyword))
+                || query.getTextMatches().contains(content.getContentID());
     }
 
     private boolean matchesCategory(Content content, ContentQuery query) {
@@ -125,6 +166,66 @@ public class ContentService {
         }
     }
 
+    /**
+     * Persist many new content entries at once.  The database receives a
+     * single batched transaction and the local repository a single write; when
+     * the database is unreachable the entries are stored offline only.
+     *
+     * @return the stored entries with their IDs assigned
+     */
+    public List<Content> saveContents(List<Content> contents) {
+        try {
+            contentDAO.insertContents(contents);
+        } catch (SQLException e) {
+            // IDs assigned by a failed batch are meaningless; let the repository issue offline IDs.
+            contents.forEach(content -> content.setContentID(0));
+        }
+        return repository.saveContents(contents);
+    }
+
+    /**
+     * Record new file locations or sizes for existing entries, e.g. after a
+     * file was modified or moved on disk.  The database update is best-effort
+     * and the local repository is always updated.
+     */
+    public void updateContentFiles(List<Content> contents) {
+        if (contents.isEmpty()) {
+            return;
+        }
+        try {
+            contentDAO.updateContentFiles(contents);
+            repository.saveContents(contents);
+        } catch (SQLException e) {
+            // offline: the local repository remains the source of truth until replayed
+            repository.saveOfflineContentFiles(contents);
+        }
+    }
+
+    /**
+     * Remove entries whose files no longer exist from the local repository
+     * and mark them missing in the database.  Favourites and reading history
+     * of them are kept.
+     */
+    public void removeContents(List<Content> contents) {
+        if (contents.isEmpty()) {
+            return;
+        }
+        Set<Integer> contentIds = contents.stream().map(Content::getContentID).collect(Collectors.toSet());
+        try {
+            contentDAO.markContentsMissing(contents);
+            repository.removeContents(contentIds);
+        } catch (SQLException e) {
+            if (SqlErrors.isIntegrityViolation(e)) {
+                // Retrying would be refused again; the files are gone either way.
+                Metrics.getInstance().counter("content.remove.rejected").increment();
+                repository.removeContents(contentIds);
+                return;
+            }
+            // offline: the local repository remains the source of truth until replayed
+            repository.removeOfflineContents(contentIds);
+        }
+    }
+
     public void updateMetadata(Content content) {
         repository.updateContentMetadata(content);
     }
@@ -143,4 +244,16 @@ public class ContentService {
     public List<String> getKnownTags() {
         return repository.listTags();
     }
+
+    /**
+     * Register a callback for changes to content, favourites and history;
+     * see {@link FileBackedLibraryRepository#addChangeListener}.
+     */
+    public void addChangeListener(Consumer<List<LibraryChange>> listener) {
+        repository.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(Consumer<List<LibraryChange>> listener) {
+        repository.removeChangeListener(listener);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+package transparent.service;
+
+import transparent.metrics.Metrics;
+import transparent.metrics.SearchEvent;
+import transparent.model.Content;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Find-in-document for the reader.  Text is extracted page by page on a
+ * background thread and every page's matches are handed to the listener as
+ * soon as the page is scanned, so the first hits appear while the rest of a
+ * large book is still being read.  Complete results are cached per content
+ * and query, so searching again, or reopening the book, is instant.
+ *
+ * <p>Matching is literal and case-insensitive.  Offsets refer to the text
+ * produced by {@link TextExtractor}.</p>
+ */
+public final class DocumentFinder {
+    /** Scanning stops after this many hits so a one-letter query cannot exhaust memory. */
+    public static final int MAX_HITS = 10_000;
+    private static final int CACHE_ENTRIES = 32;
+
+    /**
+     * One occurrence of the query.
+     */
+    public static final class Match {
+        private final int pageIndex;
+        private final int start;
+        private final int end;
+
+        Match(int pageIndex, int start, int end) {
+            this.pageIndex = pageIndex;
+            this.start = start;
+            this.end = end;
+        }
+
+        /** Zero-based reader page. */
+        public int getPageIndex() {
+            return pageIndex;
+        }
+
+        /** Offset of the first matched character in the page text. */
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * Receives results of one search on the search thread.  Scanned pages
+     * arrive in reading order; {@link #completed} is called last, with every
+     * match, unless the search was cancelled.  A cached result skips
+     * straight to {@link #completed}.
+     */
+    public interface Listener {
+        void pageScanned(int pageIndex, List<Match> matches);
+
+        /**
+         * @param truncated whether scanning stopped at {@link #MAX_HITS}
+         */
+        void completed(List<Match> matches, boolean truncated);
+
+        void failed(IOException error);
+    }
+
+    private final TextExtractor extractor = new TextExtractor();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transparent-find");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Map<String, List<Match>> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<Match>> eldest) {
+                    return size() > CACHE_ENTRIES;
+                }
+            });
+
+    private DocumentFinder() {
+    }
+
+    private static final class Holder {
+        private static final DocumentFinder INSTANCE = new DocumentFinder();
+    }
+
+    public static DocumentFinder getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Compile {@code query} the way searches match it, for highlighting the
+     * same occurrences in other renderings of a page.
+     */
+    public static Pattern pattern(String query) {
+        return Pattern.compile(query, Pattern.LITERAL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * Search {@code content} for {@code query} in the background.  Cancel
+     * the returned future, with interruption, when the query or the document
+     * changes.
+     */
+    public Future<?> find(Content content, String query, Listener listener) {
+        String key = content.getContentID() + ":" + content.getLastModified() + ":" + query.toLowerCase(Locale.ROOT);
+        Content snapshot = new Content(content);
+        return executor.submit(() -> {
+            List<Match> cached = cache.get(key);
+            if (cached != null) {
+                Metrics.getInstance().counter("search.document.cached").increment();
+                listener.completed(cached, cached.size() >= MAX_HITS);
+                return;
+            }
+            scan(snapshot, query, key, listener);
+        });
+    }
+
+    private void scan(Content content, String query, String key, Listener listener) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Pattern pattern = pattern(query);
+        List<Match> matches = new ArrayList<>();
+        PageScanner scanner = new PageScanner(pattern, query.length(), matches, listener);
+        try {
+            extractor.extract(content, scanner);
+            scanner.finishPage();
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            List<Match> result = List.copyOf(matches);
+            cache.put(key, result);
+            listener.completed(result, false);
+        } catch (HitLimitReached full) {
+            List<Match> result = List.copyOf(matches);
+            cache.put(key, result);
+            listener.completed(result, true);
+        } catch (IOException ex) {
+            if (!Thread.currentThread().isInterrupted()) {
+                listener.failed(ex);
+            }
+        } finally {
+            Metrics.getInstance().timer("search.document").recordSince(start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.kind = "document";
+                event.query = query;
+                event.hits = matches.size();
+                event.commit();
+            }
+        }
+    }
+
+    /** Thrown from the page consumer to stop extraction at {@link #MAX_HITS}. */
+    private static final class HitLimitReached extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        HitLimitReached() {
+            super(null, null);
+        }
+    }
+
+    /**
+     * Finds matches in the chunks of each page.  Chunks of one page are
+     * searched with the end of the previous chunk prepended, so a phrase
+     * split between two chunks is still found.
+     */
+    private static final class PageScanner implements TextExtractor.PageTextConsumer {
+        private final Pattern pattern;
+        private final int overlap;
+        private final List<Match> matches;
+        private final Listener listener;
+        private int page = -1;
+        private int pageOffset;
+        private String tail = "";
+        private List<Match> pageMatches = new ArrayList<>();
+
+        PageScanner(Pattern pattern, int queryLength, List<Match> matches, Listener listener) {
+            this.pattern = pattern;
+            this.overlap = Math.max(0, queryLength - 1);
+            this.matches = matches;
+            this.listener = listener;
+        }
+
+        @Override
+        public void accept(int pageIndex, String text) throws IOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("Search cancelled");
+            }
+            if (pageIndex != page) {
+                finishPage();
+                page = pageIndex;
+                pageOffset = 0;
+                tail = "";
+            }
+            String window = tail + text;
+            Matcher matcher = pattern.matcher(window);
+            int base = pageOffset - tail.length();
+            while (matcher.find()) {
+                pageMatches.add(new Match(page, base + matcher.start(), base + matcher.end()));
+                if (matches.size() + pageMatches.size() >= MAX_HITS) {
+                    finishPage();
+                    throw new HitLimitReached();
+                }
+            }
+            pageOffset += text.length();
+            tail = window.substring(Math.max(0, window.length() - overlap));
+        }
+
+        void finishPage() {
+            if (page < 0) {
+                return;
+            }
+            matches.addAll(pageMatches);
+            listener.pageScanned(page, List.copyOf(pageMatches));
+            pageMatches = new ArrayList<>();
+            page = -1;
+        }
+    }
+}
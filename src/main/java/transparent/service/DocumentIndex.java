@@ -0,0 +1,209 @@
+package transparent.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import transparent.metrics.Metrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Remembers the layout of documents between openings so the reader can show
+ * any page without parsing the whole file first.  Each document gets a small
+ * sidecar under {@code ~/.transparent/index}, named after its absolute path.
+ * The sidecar records the size and modification time of the file it was
+ * built from and is ignored, then rebuilt, once the file changes.
+ *
+ * <p>A layout holds the page count, the page sizes of a PDF and the title and
+ * spine chapter entries of an EPUB.  Reading and writing sidecars is
+ * best-effort: a missing or damaged one only means the document is parsed
+ * as it was before.  Safe to use from any thread.</p>
+ */
+public final class DocumentIndex {
+    private static final Path INDEX_DIR = Paths.get(System.getProperty("user.home"), ".transparent", "index");
+    private static final int MAGIC = 0x54584458;
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * What is known about one version of a document.
+     */
+    public static final class Layout {
+        private final int pageCount;
+        private final float[] pageWidths;
+        private final float[] pageHeights;
+        private final String title;
+        private final List<String> chapters;
+
+        private Layout(int pageCount, float[] pageWidths, float[] pageHeights, String title, List<String> chapters) {
+            this.pageCount = pageCount;
+            this.pageWidths = pageWidths;
+            this.pageHeights = pageHeights;
+            this.title = title;
+            this.chapters = List.copyOf(chapters);
+        }
+
+        /**
+         * Read the page sizes of a PDF.  Only the page tree is walked; no
+         * content stream is parsed.
+         */
+        public static Layout ofPdf(PDDocument document) {
+            int count = document.getNumberOfPages();
+            float[] widths = new float[count];
+            float[] heights = new float[count];
+            for (int i = 0; i < count; i++) {
+                PDPage page = document.getPage(i);
+                PDRectangle box = page.getCropBox();
+                boolean rotated = page.getRotation() == 90 || page.getRotation() == 270;
+                widths[i] = Math.max(1f, rotated ? box.getHeight() : box.getWidth());
+                heights[i] = Math.max(1f, rotated ? box.getWidth() : box.getHeight());
+            }
+            return new Layout(count, widths, heights, null, List.of());
+        }
+
+        /**
+         * @param chapters zip entry names of the spine chapters in reading order
+         */
+        static Layout ofEpub(String title, List<String> chapters) {
+            return new Layout(chapters.size(), new float[0], new float[0], title, chapters);
+        }
+
+        public int getPageCount() {
+            return pageCount;
+        }
+
+        /** Whether {@link #getPageWidth} and {@link #getPageHeight} are known. */
+        public boolean hasPageSizes() {
+            return pageWidths.length == pageCount && pageCount > 0;
+        }
+
+        /** Width of the zero-based page in points as displayed, rotation applied. */
+        public float getPageWidth(int pageIndex) {
+            return pageWidths[pageIndex];
+        }
+
+        public float getPageHeight(int pageIndex) {
+            return pageHeights[pageIndex];
+        }
+
+        /** Title declared by the document, or {@code null}. */
+        public String getTitle() {
+            return title;
+        }
+
+        List<String> getChapters() {
+            return chapters;
+        }
+    }
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private DocumentIndex() {
+    }
+
+    private static final class Holder {
+        private static final DocumentIndex INSTANCE = new DocumentIndex();
+    }
+
+    public static DocumentIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Return the stored layout of the file at {@code path}, if one was built
+     * from the file as it is now.
+     */
+    public Optional<Layout> find(Path path) {
+        Path file = sidecar(path);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || !in.readUTF().equals(path.toAbsolutePath().toString())
+                    || in.readLong() != Files.size(path)
+                    || in.readLong() != Files.getLastModifiedTime(path).toMillis()) {
+                metrics.counter("index.layout.stale").increment();
+                return Optional.empty();
+            }
+            int pageCount = in.readInt();
+            float[] widths = new float[in.readInt()];
+            float[] heights = new float[widths.length];
+            for (int i = 0; i < widths.length; i++) {
+                widths[i] = in.readFloat();
+                heights[i] = in.readFloat();
+            }
+            String title = in.readBoolean() ? in.readUTF() : null;
+            int chapterCount = in.readInt();
+            List<String> chapters = new ArrayList<>(chapterCount);
+            for (int i = 0; i < chapterCount; i++) {
+                chapters.add(in.readUTF());
+            }
+            metrics.counter("index.layout.hit").increment();
+            return Optional.of(new Layout(pageCount, widths, heights, title, chapters));
+        } catch (NoSuchFileException ex) {
+            metrics.counter("index.layout.miss").increment();
+            return Optional.empty();
+        } catch (IOException | RuntimeException ex) {
+            // A damaged sidecar is rebuilt by the next store.
+            metrics.counter("index.layout.stale").increment();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Remember {@code layout} for the file at {@code path} as it is now.
+     */
+    public void store(Path path, Layout layout) {
+        Path file = sidecar(path);
+        try {
+            Files.createDirectories(INDEX_DIR);
+            long size = Files.size(path);
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            Path temp = Files.createTempFile(INDEX_DIR, "layout", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeUTF(path.toAbsolutePath().toString());
+                    out.writeLong(size);
+                    out.writeLong(modified);
+                    out.writeInt(layout.pageCount);
+                    out.writeInt(layout.pageWidths.length);
+                    for (int i = 0; i < layout.pageWidths.length; i++) {
+                        out.writeFloat(layout.pageWidths[i]);
+                        out.writeFloat(layout.pageHeights[i]);
+                    }
+                    out.writeBoolean(layout.title != null);
+                    if (layout.title != null) {
+                        out.writeUTF(layout.title);
+                    }
+                    out.writeInt(layout.chapters.size());
+                    for (String chapter : layout.chapters) {
+                        out.writeUTF(chapter);
+                    }
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            // Without a sidecar the document is simply parsed again next time.
+        }
+    }
+
+    private static Path sidecar(Path path) {
+        String key = path.toAbsolutePath().toString();
+        return INDEX_DIR.resolve(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + ".layout");
+    }
+}
@@ -0,0 +1,80 @@
+package transparent.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An EPUB opened for reading chapter by chapter.  The spine is taken from the
+ * {@link DocumentIndex} when the book was opened before, so reopening reads
+ * only the zip directory; otherwise the package document is parsed once and
+ * the result stored.  Chapters are read from the archive when asked for.
+ *
+ * <p>Chapters are the spine items present in the archive, as for
+ * {@link TextExtractor}, so page numbers agree with search results.</p>
+ */
+public final class EpubBook implements AutoCloseable {
+    private final ZipFile zip;
+    private final String title;
+    private final List<ZipEntry> chapters;
+
+    private EpubBook(ZipFile zip, String title, List<ZipEntry> chapters) {
+        this.zip = zip;
+        this.title = title;
+        this.chapters = chapters;
+    }
+
+    /**
+     * Open the EPUB at {@code path}.
+     *
+     * @throws IOException if the file is not a readable EPUB
+     */
+    public static EpubBook open(Path path) throws IOException {
+        DocumentIndex index = DocumentIndex.getInstance();
+        DocumentIndex.Layout layout = index.find(path).orElse(null);
+        if (layout == null) {
+            try (EpubPackage epub = EpubPackage.open(path)) {
+                layout = DocumentIndex.Layout.ofEpub(epub.title(),
+                        epub.spine().stream().map(ZipEntry::getName).toList());
+            }
+            index.store(path, layout);
+        }
+        ZipFile zip = new ZipFile(path.toFile());
+        List<ZipEntry> chapters = new ArrayList<>(layout.getChapters().size());
+        for (String name : layout.getChapters()) {
+            ZipEntry entry = zip.getEntry(name);
+            if (entry == null) {
+                zip.close();
+                throw new IOException("EPUB chapter missing: " + name);
+            }
+            chapters.add(entry);
+        }
+        return new EpubBook(zip, layout.getTitle(), chapters);
+    }
+
+    /** Title declared in the package document, or {@code null}. */
+    public String getTitle() {
+        return title;
+    }
+
+    public int getChapterCount() {
+        return chapters.size();
+    }
+
+    /** Read the XHTML of the zero-based chapter. */
+    public String readChapter(int chapterIndex) throws IOException {
+        try (InputStream in = zip.getInputStream(chapters.get(chapterIndex))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}
@@ -0,0 +1,188 @@
+package transparent.service;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Minimal read-only view of an EPUB's OPF package document.  Only the zip
+ * central directory, the container and the OPF are read, so metadata and the
+ * cover can be located without decoding any chapter.
+ */
+final class EpubPackage implements AutoCloseable {
+    private static final String DC_NAMESPACE = "http://purl.org/dc/elements/1.1/";
+
+    private final ZipFile zip;
+    private final Document opf;
+    private final String baseDirectory;
+
+    private EpubPackage(ZipFile zip, Document opf, String opfPath) {
+        this.zip = zip;
+        this.opf = opf;
+        int slash = opfPath.lastIndexOf('/');
+        this.baseDirectory = slash >= 0 ? opfPath.substring(0, slash + 1) : "";
+    }
+
+    /**
+     * Open the EPUB at {@code path}.
+     *
+     * @throws IOException if the file is not a readable EPUB
+     */
+    static EpubPackage open(Path path) throws IOException {
+        ZipFile zip = new ZipFile(path.toFile());
+        try {
+            String opfPath = findOpfPath(zip);
+            ZipEntry entry = opfPath == null ? null : zip.getEntry(opfPath);
+            if (entry == null) {
+                throw new IOException("EPUB has no package document");
+            }
+            return new EpubPackage(zip, parse(zip, entry), opfPath);
+        } catch (IOException | RuntimeException ex) {
+            zip.close();
+            throw ex;
+        }
+    }
+
+    String title() {
+        return firstDublinCore("title");
+    }
+
+    String creator() {
+        return firstDublinCore("creator");
+    }
+
+    int spineLength() {
+        return opf.getElementsByTagNameNS("*", "itemref").getLength();
+    }
+
+    /**
+     * Resolve the spine to zip entries in reading order.  Items that are
+     * missing from the archive are skipped.
+     */
+    List<ZipEntry> spine() {
+        Map<String, String> hrefsById = new HashMap<>();
+        NodeList items = opf.getElementsByTagNameNS("*", "item");
+        for (int i = 0; i < items.getLength(); i++) {
+            Element item = (Element) items.item(i);
+            hrefsById.put(item.getAttribute("id"), item.getAttribute("href"));
+        }
+        NodeList itemrefs = opf.getElementsByTagNameNS("*", "itemref");
+        List<ZipEntry> entries = new ArrayList<>(itemrefs.getLength());
+        for (int i = 0; i < itemrefs.getLength(); i++) {
+            String href = hrefsById.get(((Element) itemrefs.item(i)).getAttribute("idref"));
+            ZipEntry entry = href == null ? null : resolve(href);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Locate the cover image entry.  EPUB 3 marks it with
+     * {@code properties="cover-image"}, EPUB 2 with a {@code <meta name="cover">}
+     * pointing at a manifest item; otherwise the first image in the manifest
+     * is used.
+     *
+     * @return the zip entry of the cover, or {@code null} if there is no image
+     */
+    ZipEntry coverImage() {
+        NodeList items = opf.getElementsByTagNameNS("*", "item");
+        String coverId = null;
+        NodeList metas = opf.getElementsByTagNameNS("*", "meta");
+        for (int i = 0; i < metas.getLength(); i++) {
+            Element meta = (Element) metas.item(i);
+            if ("cover".equals(meta.getAttribute("name"))) {
+                coverId = meta.getAttribute("content");
+                break;
+            }
+        }
+        Element firstImage = null;
+        for (int i = 0; i < items.getLength(); i++) {
+            Element item = (Element) items.item(i);
+            boolean image = item.getAttribute("media-type").startsWith("image/");
+            if (image && (item.getAttribute("properties").contains("cover-image")
+                    || (coverId != null && coverId.equals(item.getAttribute("id"))))) {
+                return resolve(item.getAttribute("href"));
+            }
+            if (image && firstImage == null) {
+                firstImage = item;
+            }
+        }
+        return firstImage == null ? null : resolve(firstImage.getAttribute("href"));
+    }
+
+    InputStream open(ZipEntry entry) throws IOException {
+        return zip.getInputStream(entry);
+    }
+
+    private ZipEntry resolve(String href) {
+        return zip.getEntry(Path.of(baseDirectory + href).normalize().toString().replace('\\', '/'));
+    }
+
+    private String firstDublinCore(String element) {
+        NodeList nodes = opf.getElementsByTagNameNS(DC_NAMESPACE, element);
+        if (nodes.getLength() == 0) {
+            return null;
+        }
+        return nodes.item(0).getTextContent();
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    private static String findOpfPath(ZipFile zip) throws IOException {
+        ZipEntry container = zip.getEntry("META-INF/container.xml");
+        if (container != null) {
+            NodeList rootfiles = parse(zip, container).getElementsByTagNameNS("*", "rootfile");
+            if (rootfiles.getLength() > 0) {
+                String fullPath = ((Element) rootfiles.item(0)).getAttribute("full-path");
+                if (!fullPath.isBlank()) {
+                    return fullPath;
+                }
+            }
+        }
+        // Some generators omit the container; fall back to the first package document.
+        return zip.stream()
+                .map(ZipEntry::getName)
+                .filter(entry -> entry.toLowerCase(Locale.ROOT).endsWith(".opf"))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static Document parse(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream in = zip.getInputStream(entry)) {
+            return newDocumentBuilder().parse(in);
+        } catch (SAXException | ParserConfigurationException ex) {
+            throw new IOException("Invalid XML in " + entry.getName(), ex);
+        }
+    }
+
+    private static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setExpandEntityReferences(false);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        return factory.newDocumentBuilder();
+    }
+}
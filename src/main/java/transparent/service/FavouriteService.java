@@ -7,6 +7,7 @@ import transparent.repository.FileBackedLibraryRepository;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Service layer for managing favourites.  Provides methods to toggle
@@ -48,15 +49,33 @@ public class FavouriteService {
     }
 
     /**
-     * Check whether the given content is marked as favourite by the user.
+     * Retrieve a user's favourites with the title, type and author of each
+     * referenced content already attached.
      */
-    public boolean isFavourite(int userId, int contentId) {
+    public List<Favourite> getFavouritesWithContent(int userId) {
+        List<Favourite> favourites;
         try {
-            boolean favourite = favouriteDAO.isFavourite(userId, contentId);
-            repository.setFavouriteState(userId, contentId, favourite, LocalDateTime.now());
-            return favourite;
+            List<Favourite> joined = favouriteDAO.getFavouritesWithContentByUser(userId);
+            favourites = repository.mergeFavouritesFromDatabase(userId, joined);
         } catch (SQLException e) {
-            return repository.isFavourite(userId, contentId);
+            favourites = repository.getFavourites(userId);
         }
+        return repository.describeFavourites(favourites);
+    }
+
+    /**
+     * Check whether the given content is marked as favourite by the user.
+     * Answered from the {@link ActivityCache}: no query and no write.
+     */
+    public boolean isFavourite(int userId, int contentId) {
+        return ActivityCache.getInstance().isFavourite(userId, contentId);
+    }
+
+    /**
+     * IDs of the content a user has marked as favourite, from the
+     * {@link ActivityCache}.
+     */
+    public Set<Integer> getFavouriteIds(int userId) {
+        return ActivityCache.getInstance().getFavouriteIds(userId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,195 @@
+package transparent.service;
+
+import transparent.model.Content;
+import transparent.repository.FileBackedLibraryRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes content fingerprints (SHA-256 of the whole file) and finds
+ * duplicate files in the library.
+ *
+ * <p>Files are read through a {@link FileChannel} into a per-thread direct
+ * buffer rather than memory-mapped: mapped regions are only released by the
+ * garbage collector, which keeps files locked on Windows and would interfere
+ * with moving or deleting watched library files.  Duplicate detection over
+ * existing entries narrows candidates by size and then by a cheap partial
+ * hash of the head and tail before any full hash is computed.</p>
+ */
+public class FingerprintService {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int PARTIAL_BYTES = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private final FileBackedLibraryRepository repository = FileBackedLibraryRepository.getInstance();
+
+    /**
+     * Compute the full SHA-256 digest of a file.
+     *
+     * @return the lower-case hex digest
+     * @throws IOException if the file cannot be read
+     */
+    public static String fingerprint(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hash only the first and last {@value #PARTIAL_BYTES} bytes together with
+     * the size.  Different partial hashes prove files differ; equal ones only
+     * make them candidates for a full comparison.
+     */
+    static String partialFingerprint(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+            readRange(channel, 0, Math.min(size, PARTIAL_BYTES), buffer, digest);
+            if (size > PARTIAL_BYTES) {
+                long tailStart = Math.max(PARTIAL_BYTES, size - PARTIAL_BYTES);
+                readRange(channel, tailStart, size - tailStart, buffer, digest);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void readRange(FileChannel channel, long position, long length, ByteBuffer buffer,
+                                  MessageDigest digest) throws IOException {
+        long remaining = length;
+        long offset = position;
+        while (remaining > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                break;
+            }
+            buffer.flip();
+            digest.update(buffer);
+            offset += read;
+            remaining -= read;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", ex);
+        }
+    }
+
+    /**
+     * Find groups of library entries whose files have identical contents.
+     * Entries that were never fingerprinted are hashed on demand (in parallel)
+     * when another entry has the same size, and the digests are stored.
+     *
+     * @return groups of two or more duplicates, largest files first
+     * @throws InterruptedException if interrupted while hashing
+     */
+    public List<List<Content>> findDuplicateGroups() throws InterruptedException {
+        Map<Long, List<Content>> bySize = new HashMap<>();
+        for (Content content : repository.getAllContents()) {
+            bySize.computeIfAbsent(content.getSizeBytes(), size -> new ArrayList<>()).add(content);
+        }
+        List<Content> unhashed = new ArrayList<>();
+        for (List<Content> sameSize : bySize.values()) {
+            if (sameSize.size() > 1) {
+                for (Content content : sameSize) {
+                    if (content.getContentHash() == null) {
+                        unhashed.add(content);
+                    }
+                }
+            }
+        }
+        if (!unhashed.isEmpty()) {
+            fingerprintCandidates(unhashed, bySize);
+        }
+        return repository.findDuplicateGroups();
+    }
+
+    private void fingerprintCandidates(List<Content> unhashed, Map<Long, List<Content>> bySize)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4)), runnable -> {
+                    Thread thread = new Thread(runnable, "transparent-fingerprint");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            // Stage 1: partial hashes separate most same-size files cheaply.
+            Map<Content, String> partial = hashAll(pool, unhashed, true);
+            Map<String, Integer> partialCounts = new HashMap<>();
+            for (String value : partial.values()) {
+                partialCounts.merge(value, 1, Integer::sum);
+            }
+            // Stage 2: full hashes for partial collisions, or when an already
+            // hashed file of the same size could be the original.
+            List<Content> needFull = new ArrayList<>();
+            for (Map.Entry<Content, String> entry : partial.entrySet()) {
+                Content content = entry.getKey();
+                boolean hashedPeer = bySize.get(content.getSizeBytes()).stream()
+                        .anyMatch(peer -> peer.getContentHash() != null);
+                if (partialCounts.get(entry.getValue()) > 1 || hashedPeer) {
+                    needFull.add(content);
+                }
+            }
+            Map<Content, String> full = hashAll(pool, needFull, false);
+            List<Content> updated = new ArrayList<>(full.size());
+            for (Map.Entry<Content, String> entry : full.entrySet()) {
+                entry.getKey().setContentHash(entry.getValue());
+                updated.add(entry.getKey());
+            }
+            if (!updated.isEmpty()) {
+                repository.saveContents(updated);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Map<Content, String> hashAll(ExecutorService pool, List<Content> contents, boolean partial)
+            throws InterruptedException {
+        Map<Content, Future<String>> futures = new HashMap<>();
+        for (Content content : contents) {
+            Path path = Paths.get(content.getFilePath());
+            futures.put(content, pool.submit(() -> partial ? partialFingerprint(path) : fingerprint(path)));
+        }
+        Map<Content, String> results = new HashMap<>();
+        for (Map.Entry<Content, Future<String>> entry : futures.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException ex) {
+                // missing or unreadable files cannot be compared
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,707 @@
+package transparent.service;
+
+import transparent.metrics.Metrics;
+import transparent.metrics.SearchEvent;
+import transparent.model.Content;
+import transparent.repository.FileBackedLibraryRepository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * On-disk full-text index over the text of PDF, EPUB and plain text entries.
+ *
+ * <p>Every indexed document has a postings file under
+ * {@code ~/.transparent/fulltext/postings} holding, for each term, the pages
+ * it occurs on and its word positions within each page.  A catalogue file
+ * records which version of each file was indexed together with the
+ * term-to-document dictionary, so a query only opens the postings of
+ * documents that contain every term, and only reads the blocks of the query
+ * terms from them.</p>
+ *
+ * <p>Indexing runs on a single low priority daemon thread.  Only new or
+ * changed files (by size and modification time) are indexed, the worker sleeps
+ * between documents for as long as the previous document took, and the
+ * catalogue is checkpointed regularly so an interrupted run resumes where it
+ * stopped.</p>
+ */
+public final class FullTextIndex {
+    private static final Path INDEX_DIR = Paths.get(System.getProperty("user.home"), ".transparent", "fulltext");
+    private static final Path CATALOG_FILE = INDEX_DIR.resolve("catalog.bin");
+    private static final Path POSTINGS_DIR = INDEX_DIR.resolve("postings");
+    private static final int CATALOG_MAGIC = 0x54584349;
+    private static final int POSTINGS_MAGIC = 0x54585049;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int CHECKPOINT_DOCUMENTS = 25;
+    private static final long CHECKPOINT_NANOS = 15_000_000_000L;
+    private static final long MAX_PAUSE_MILLIS = 2_000L;
+    private static final int MAX_PAGES_PER_HIT = 100;
+
+    /**
+     * A document matching a query.
+     */
+    public static final class Hit {
+        private final int contentId;
+        private final List<Integer> pages;
+        private final int occurrences;
+
+        Hit(int contentId, List<Integer> pages, int occurrences) {
+            this.contentId = contentId;
+            this.pages = List.copyOf(pages);
+            this.occurrences = occurrences;
+        }
+
+        public int getContentId() {
+            return contentId;
+        }
+
+        /** One-based page numbers containing the query, in reading order. */
+        public List<Integer> getPages() {
+            return pages;
+        }
+
+        public int getOccurrences() {
+            return occurrences;
+        }
+    }
+
+    private final FileBackedLibraryRepository repository = FileBackedLibraryRepository.getInstance();
+    private final TextExtractor extractor = new TextExtractor();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, String> stamps = new HashMap<>();
+    private final Map<String, Set<Integer>> dictionary = new HashMap<>();
+    private final Object signal = new Object();
+    private boolean syncRequested;
+    private Thread worker;
+    private volatile int pendingDocuments;
+
+    private FullTextIndex() {
+    }
+
+    private static final class Holder {
+        private static final FullTextIndex INSTANCE = new FullTextIndex();
+    }
+
+    public static FullTextIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Start the background indexer and queue a first pass over the library.
+     * Calling it again has no effect.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(this::run, "transparent-fulltext");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+        requestSync();
+    }
+
+    /**
+     * Ask the indexer to bring the index up to date with the library.
+     * Requests made while a pass is running are coalesced into one more pass.
+     */
+    public void requestSync() {
+        synchronized (signal) {
+            syncRequested = true;
+            signal.notifyAll();
+        }
+    }
+
+    /** Documents still waiting to be indexed in the current pass. */
+    public int getPendingCount() {
+        return pendingDocuments;
+    }
+
+    private void run() {
+        loadCatalog();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                synchronized (signal) {
+                    while (!syncRequested) {
+                        signal.wait();
+                    }
+                    syncRequested = false;
+                }
+                sync();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sync() throws InterruptedException {
+        Set<Integer> live = new HashSet<>();
+        List<Content> changed = new ArrayList<>();
+        Map<Integer, String> changedStamps = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Content content : repository.getAllContents()) {
+                if (!TextExtractor.isTextual(content)) {
+                    continue;
+                }
+                live.add(content.getContentID());
+                String stamp = stampOf(Paths.get(content.getFilePath()));
+                if (stamp != null && !stamp.equals(stamps.get(content.getContentID()))) {
+                    changed.add(content);
+                    changedStamps.put(content.getContentID(), stamp);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        boolean dirty = removeMissing(live);
+        pendingDocuments = changed.size();
+        int sinceCheckpoint = 0;
+        long lastCheckpoint = System.nanoTime();
+        for (Content content : changed) {
+            long start = System.nanoTime();
+            try {
+                indexDocument(content, changedStamps.get(content.getContentID()));
+                dirty = true;
+                sinceCheckpoint++;
+            } catch (IOException | RuntimeException ex) {
+                // Unreadable documents stay unindexed and are retried on the next pass.
+            }
+            pendingDocuments--;
+            long now = System.nanoTime();
+            if (sinceCheckpoint >= CHECKPOINT_DOCUMENTS || now - lastCheckpoint >= CHECKPOINT_NANOS) {
+                saveCatalog();
+                dirty = false;
+                sinceCheckpoint = 0;
+                lastCheckpoint = now;
+            }
+            // Keep the indexer at roughly half of one core so the UI stays responsive.
+            Thread.sleep(Math.min(MAX_PAUSE_MILLIS, (now - start) / 1_000_000L));
+        }
+        pendingDocuments = 0;
+        if (dirty) {
+            saveCatalog();
+        }
+    }
+
+    private boolean removeMissing(Set<Integer> live) {
+        lock.writeLock().lock();
+        try {
+            List<Integer> removed = new ArrayList<>();
+            for (Integer contentId : stamps.keySet()) {
+                if (!live.contains(contentId)) {
+                    removed.add(contentId);
+                }
+            }
+            for (Integer contentId : removed) {
+                unindexLocked(contentId);
+                stamps.remove(contentId);
+                deleteQuietly(postingsFile(contentId));
+            }
+            return !removed.isEmpty();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void indexDocument(Content content, String stamp) throws IOException {
+        Map<String, PostingsBuilder> postings = new HashMap<>();
+        int[] position = {0};
+        int[] currentPage = {-1};
+        int pageCount = extractor.extract(content, (page, text) -> {
+            if (page != currentPage[0]) {
+                currentPage[0] = page;
+                position[0] = 0;
+            }
+            tokenize(text, term -> postings.computeIfAbsent(term, key -> new PostingsBuilder())
+                    .add(page, position[0]++));
+        });
+        int contentId = content.getContentID();
+        Path file = postingsFile(contentId);
+        Set<String> previousTerms = readTerms(file);
+        writePostings(file, pageCount, postings);
+        lock.writeLock().lock();
+        try {
+            for (String term : previousTerms) {
+                removeFromDictionaryLocked(term, contentId);
+            }
+            for (String term : postings.keySet()) {
+                dictionary.computeIfAbsent(term, key -> new HashSet<>()).add(contentId);
+            }
+            stamps.put(contentId, stamp);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindexLocked(int contentId) {
+        for (String term : readTerms(postingsFile(contentId))) {
+            removeFromDictionaryLocked(term, contentId);
+        }
+    }
+
+    private void removeFromDictionaryLocked(String term, int contentId) {
+        Set<Integer> ids = dictionary.get(term);
+        if (ids != null && ids.remove(contentId) && ids.isEmpty()) {
+            dictionary.remove(term);
+        }
+    }
+
+    /**
+     * Find documents containing every word of {@code query} on the same page.
+     * A query in double quotes matches the words as an exact phrase.
+     *
+     * @param limit maximum number of documents to return
+     * @return matches, most occurrences first
+     */
+    public List<Hit> search(String query, int limit) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<Hit> hits = List.of();
+        try {
+            hits = searchIndex(query, limit);
+            return hits;
+        } finally {
+            Metrics.getInstance().timer("search.fulltext").recordSince(start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.kind = "fulltext";
+                event.query = query;
+                event.hits = hits.size();
+                event.commit();
+            }
+        }
+    }
+
+    private List<Hit> searchIndex(String query, int limit) {
+        String trimmed = query == null ? "" : query.trim();
+        boolean phrase = trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"");
+        List<String> terms = new ArrayList<>();
+        tokenize(trimmed, terms::add);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        Set<String> distinct = new LinkedHashSet<>(terms);
+        List<Integer> candidates = candidates(distinct);
+        List<Hit> hits = new ArrayList<>();
+        for (Integer contentId : candidates) {
+            Map<String, TreeMap<Integer, int[]>> postings = readPostings(postingsFile(contentId), distinct);
+            if (postings.size() < distinct.size()) {
+                continue;
+            }
+            Hit hit = match(contentId, phrase ? terms : new ArrayList<>(distinct), postings, phrase);
+            if (hit != null) {
+                hits.add(hit);
+            }
+        }
+        hits.sort(Comparator.comparingInt(Hit::getOccurrences).reversed());
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    private List<Integer> candidates(Set<String> terms) {
+        lock.readLock().lock();
+        try {
+            List<Set<Integer>> sets = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Set<Integer> ids = dictionary.get(term);
+                if (ids == null) {
+                    return List.of();
+                }
+                sets.add(ids);
+            }
+            sets.sort(Comparator.comparingInt(Set::size));
+            List<Integer> result = new ArrayList<>();
+            for (Integer id : sets.get(0)) {
+                boolean all = true;
+                for (int i = 1; i < sets.size() && all; i++) {
+                    all = sets.get(i).contains(id);
+                }
+                if (all) {
+                    result.add(id);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Hit match(int contentId, List<String> terms, Map<String, TreeMap<Integer, int[]>> postings,
+                             boolean phrase) {
+        TreeMap<Integer, int[]> first = postings.get(terms.get(0));
+        List<Integer> pages = new ArrayList<>();
+        int occurrences = 0;
+        for (Map.Entry<Integer, int[]> page : first.entrySet()) {
+            int onPage = phrase ? countPhrase(page.getKey(), terms, postings) : countAll(page.getKey(), terms, postings);
+            if (onPage > 0) {
+                occurrences += onPage;
+                if (pages.size() < MAX_PAGES_PER_HIT) {
+                    pages.add(page.getKey() + 1);
+                }
+            }
+        }
+        return pages.isEmpty() ? null : new Hit(contentId, pages, occurrences);
+    }
+
+    private static int countAll(int page, List<String> terms, Map<String, TreeMap<Integer, int[]>> postings) {
+        int count = 0;
+        for (String term : terms) {
+            int[] positions = postings.get(term).get(page);
+            if (positions == null) {
+                return 0;
+            }
+            count += positions.length;
+        }
+        return count;
+    }
+
+    private static int countPhrase(int page, List<String> terms, Map<String, TreeMap<Integer, int[]>> postings) {
+        int[][] positions = new int[terms.size()][];
+        for (int i = 0; i < terms.size(); i++) {
+            positions[i] = postings.get(terms.get(i)).get(page);
+            if (positions[i] == null) {
+                return 0;
+            }
+        }
+        int count = 0;
+        for (int start : positions[0]) {
+            boolean matches = true;
+            for (int i = 1; i < positions.length && matches; i++) {
+                matches = Arrays.binarySearch(positions[i], start + i) >= 0;
+            }
+            if (matches) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Split text into lower-case words of letters and digits.
+     */
+    static void tokenize(String text, Consumer<String> sink) {
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    sink.accept(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static String stampOf(Path path) {
+        try {
+            return Files.size(path) + "-" + Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static Path postingsFile(int contentId) {
+        return POSTINGS_DIR.resolve(contentId + ".post");
+    }
+
+    // --- postings files -------------------------------------------------
+
+    /**
+     * Positions of one term in one document, appended in reading order.
+     */
+    private static final class PostingsBuilder {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int page, int position) {
+            if (size + 2 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = page;
+            values[size++] = position;
+        }
+
+        /** Encode as: page count, then per page the page delta, position count and position deltas. */
+        void writeTo(ByteArrayOutputStream out) {
+            int pages = 0;
+            for (int i = 0; i < size; i += 2) {
+                if (i == 0 || values[i] != values[i - 2]) {
+                    pages++;
+                }
+            }
+            writeVarInt(out, pages);
+            int previousPage = 0;
+            int i = 0;
+            while (i < size) {
+                int page = values[i];
+                int end = i;
+                while (end < size && values[end] == page) {
+                    end += 2;
+                }
+                writeVarInt(out, page - previousPage);
+                writeVarInt(out, (end - i) / 2);
+                int previousPosition = 0;
+                for (int j = i; j < end; j += 2) {
+                    writeVarInt(out, values[j + 1] - previousPosition);
+                    previousPosition = values[j + 1];
+                }
+                previousPage = page;
+                i = end;
+            }
+        }
+    }
+
+    private static void writePostings(Path file, int pageCount, Map<String, PostingsBuilder> postings)
+            throws IOException {
+        Files.createDirectories(file.getParent());
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+        try (DataOutputStream directory = new DataOutputStream(directoryBytes)) {
+            for (Map.Entry<String, PostingsBuilder> entry : new TreeMap<>(postings).entrySet()) {
+                int offset = data.size();
+                entry.getValue().writeTo(data);
+                directory.writeUTF(entry.getKey());
+                directory.writeInt(offset);
+                directory.writeInt(data.size() - offset);
+            }
+        }
+        Path temp = Files.createTempFile(file.getParent(), "postings", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(POSTINGS_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(pageCount);
+                out.writeInt(postings.size());
+                out.writeLong(4L * Integer.BYTES + Long.BYTES + directoryBytes.size());
+                directoryBytes.writeTo(out);
+                data.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Set<String> readTerms(Path file) {
+        Set<String> terms = new HashSet<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != POSTINGS_MAGIC || in.readInt() != FORMAT_VERSION) {
+                return terms;
+            }
+            in.readInt();
+            int termCount = in.readInt();
+            in.readLong();
+            for (int i = 0; i < termCount; i++) {
+                terms.add(in.readUTF());
+                in.readInt();
+                in.readInt();
+            }
+        } catch (IOException ex) {
+            // missing or damaged postings contribute no terms
+        }
+        return terms;
+    }
+
+    /**
+     * Read the page/position lists of the given terms.  The term directory is
+     * sorted, so reading stops once every requested term has been passed.
+     */
+    private static Map<String, TreeMap<Integer, int[]>> readPostings(Path file, Set<String> wanted) {
+        Map<String, TreeMap<Integer, int[]>> result = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Map<String, long[]> blocks = new HashMap<>();
+            long dataStart;
+            InputStream stream = new BufferedInputStream(Channels.newInputStream(channel));
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != POSTINGS_MAGIC || in.readInt() != FORMAT_VERSION) {
+                return result;
+            }
+            in.readInt();
+            int termCount = in.readInt();
+            dataStart = in.readLong();
+            String last = Collections.max(wanted);
+            for (int i = 0; i < termCount && blocks.size() < wanted.size(); i++) {
+                String term = in.readUTF();
+                int offset = in.readInt();
+                int length = in.readInt();
+                if (wanted.contains(term)) {
+                    blocks.put(term, new long[]{offset, length});
+                }
+                if (term.compareTo(last) > 0) {
+                    break;
+                }
+            }
+            for (Map.Entry<String, long[]> block : blocks.entrySet()) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) block.getValue()[1]);
+                long position = dataStart + block.getValue()[0];
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                    // keep reading until the block is complete
+                }
+                buffer.flip();
+                result.put(block.getKey(), decode(buffer));
+            }
+        } catch (NoSuchFileException ex) {
+            // removed concurrently; no match
+        } catch (IOException ex) {
+            result.clear();
+        }
+        return result;
+    }
+
+    private static TreeMap<Integer, int[]> decode(ByteBuffer buffer) {
+        TreeMap<Integer, int[]> pages = new TreeMap<>();
+        int pageCount = readVarInt(buffer);
+        int page = 0;
+        for (int p = 0; p < pageCount; p++) {
+            page += readVarInt(buffer);
+            int[] positions = new int[readVarInt(buffer)];
+            int position = 0;
+            for (int i = 0; i < positions.length; i++) {
+                position += readVarInt(buffer);
+                positions[i] = position;
+            }
+            pages.put(page, positions);
+        }
+        return pages;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    // --- catalogue ------------------------------------------------------
+
+    private void loadCatalog() {
+        lock.writeLock().lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(CATALOG_FILE)))) {
+            if (in.readInt() != CATALOG_MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown full-text catalogue format");
+            }
+            int documents = in.readInt();
+            for (int i = 0; i < documents; i++) {
+                stamps.put(in.readInt(), in.readUTF());
+            }
+            int terms = in.readInt();
+            for (int i = 0; i < terms; i++) {
+                String term = in.readUTF();
+                int count = in.readInt();
+                Set<Integer> ids = new HashSet<>(Math.max(4, count * 4 / 3 + 1));
+                for (int j = 0; j < count; j++) {
+                    ids.add(in.readInt());
+                }
+                dictionary.put(term, ids);
+            }
+        } catch (IOException ex) {
+            // No usable catalogue: start over so postings and catalogue agree.
+            stamps.clear();
+            dictionary.clear();
+            deletePostings();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void saveCatalog() {
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(INDEX_DIR);
+            Path temp = Files.createTempFile(INDEX_DIR, "catalog", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(CATALOG_MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeInt(stamps.size());
+                    for (Map.Entry<Integer, String> entry : stamps.entrySet()) {
+                        out.writeInt(entry.getKey());
+                        out.writeUTF(entry.getValue());
+                    }
+                    out.writeInt(dictionary.size());
+                    for (Map.Entry<String, Set<Integer>> entry : dictionary.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        out.writeInt(entry.getValue().size());
+                        for (Integer id : entry.getValue()) {
+                            out.writeInt(id);
+                        }
+                    }
+                }
+                Files.move(temp, CATALOG_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            // The next checkpoint retries; at worst documents are indexed again.
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void deletePostings() {
+        if (!Files.isDirectory(POSTINGS_DIR)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(POSTINGS_DIR)) {
+            files.forEach(FullTextIndex::deleteQuietly);
+        } catch (IOException ex) {
+            // stale postings are overwritten when their documents are indexed again
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            // left behind; harmless
+        }
+    }
+}
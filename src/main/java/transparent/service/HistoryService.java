@@ -20,6 +20,8 @@ public class HistoryService {
 
     /**
      * Save or update the current reading progress for a user and content.
+     * This writes immediately; page turns should go through
+     * {@link ProgressTracker} instead.
      */
     public void saveProgress(int userId, int contentId, int pageNumber) {
         HistoryRecord record = new HistoryRecord(userId, contentId, pageNumber);
@@ -28,7 +30,8 @@ public class HistoryService {
             historyDAO.upsertHistory(record);
             repository.saveHistory(record);
         } catch (SQLException e) {
-            repository.saveHistory(record);
+            // offline: keep the position locally and queue it for replay
+            repository.saveOfflineHistory(record);
         }
     }
 
@@ -44,18 +47,36 @@ public class HistoryService {
         }
     }
 
+    /**
+     * Retrieve the reading history for a user with the title, type and author
+     * of each referenced content already attached, so views do not need to
+     * resolve content per row.
+     */
+    public List<HistoryRecord> getHistoryWithContent(int userId) {
+        List<HistoryRecord> records;
+        try {
+            List<HistoryRecord> joined = historyDAO.getHistoryWithContentByUser(userId);
+            records = repository.mergeHistoryFromDatabase(userId, joined);
+        } catch (SQLException e) {
+            records = repository.getHistory(userId);
+        }
+        return repository.describeHistory(records);
+    }
+
     /**
      * Retrieve the most recent history record for a user and content pair.
+     * Answered from the {@link ActivityCache}: no query and no write.
      */
     public HistoryRecord getLatestEntry(int userId, int contentId) {
-        try {
-            HistoryRecord record = historyDAO.findHistory(userId, contentId);
-            if (record != null) {
-                repository.saveHistory(record);
+        HistoryRecord record = ActivityCache.getInstance().findLatest(userId, contentId).orElse(null);
+        // A page recorded by the progress tracker but not yet written is the most recent one.
+        Integer pendingPage = ProgressTracker.getInstance().pendingPage(userId, contentId);
+        if (pendingPage != null) {
+            if (record == null) {
+                record = new HistoryRecord(userId, contentId, pendingPage);
             }
-            return record;
-        } catch (SQLException e) {
-            return repository.findHistory(userId, contentId).orElse(null);
+            record.setPageNumber(pendingPage);
         }
+        return record;
     }
 }
@@ -0,0 +1,472 @@
+package transparent.service;
+
+import transparent.model.Content;
+import transparent.repository.FileBackedLibraryRepository;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the catalogue in sync with watched library folders.  Local folders
+ * are observed with a {@link WatchService}; folders on network shares (or
+ * where registration fails) are rescanned periodically by comparing file
+ * size and modification time.  Detected changes are applied incrementally:
+ * new files are imported, modified files updated, moved files re-pointed and
+ * deleted files removed from both the database and the local repository.
+ */
+public final class LibraryWatchService {
+    private static final long FLUSH_DELAY_SECONDS = 2;
+    private static final long POLL_INTERVAL_MINUTES = 5;
+    private static final Set<String> REMOTE_STORE_TYPES =
+            Set.of("nfs", "nfs4", "cifs", "smbfs", "smb2", "smb3", "afpfs", "webdav", "fuse.sshfs");
+
+    private final FileBackedLibraryRepository repository = FileBackedLibraryRepository.getInstance();
+    private final ContentService contentService = new ContentService();
+    private final MetadataExtractor extractor = new MetadataExtractor();
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final Set<Path> pollingRoots = ConcurrentHashMap.newKeySet();
+    private final Set<Path> pendingScopes = ConcurrentHashMap.newKeySet();
+    /**
+     * Modification times of files left out as duplicates of catalogued
+     * content, so later scans do not fingerprint them again.
+     */
+    private final Map<String, Long> skippedDuplicates = new ConcurrentHashMap<>();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+    private ScheduledExecutorService scheduler;
+
+    private LibraryWatchService() {
+    }
+
+    private static final class Holder {
+        private static final LibraryWatchService INSTANCE = new LibraryWatchService();
+    }
+
+    public static LibraryWatchService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Start watching every folder recorded in the repository and schedule a
+     * catch-up scan of each, since files may have changed while the
+     * application was closed.  Calling this more than once has no effect.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transparent-library-scan");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread watcher = new Thread(this::processEvents, "transparent-library-watch");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException | UnsupportedOperationException ex) {
+            watchService = null;
+        }
+        for (String folder : repository.getWatchedFolders()) {
+            attachRoot(Paths.get(folder));
+        }
+        scheduler.scheduleWithFixedDelay(this::flushPending, FLUSH_DELAY_SECONDS, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::pollRoots, POLL_INTERVAL_MINUTES, POLL_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stop watching.  Registered folders stay recorded and are picked up again
+     * by the next {@link #start()}.
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        scheduler = null;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+            watchService = null;
+        }
+        watchedDirectories.clear();
+        pollingRoots.clear();
+        pendingScopes.clear();
+    }
+
+    /**
+     * Add a library root folder and keep it in sync from now on.
+     */
+    public synchronized void watchFolder(Path folder) {
+        Path root = folder.toAbsolutePath().normalize();
+        if (repository.addWatchedFolder(root.toString()) && scheduler != null) {
+            attachRoot(root);
+        }
+    }
+
+    /**
+     * Stop keeping a root folder in sync.  Content already imported from it
+     * stays in the library.
+     */
+    public synchronized void unwatchFolder(Path folder) {
+        Path root = folder.toAbsolutePath().normalize();
+        repository.removeWatchedFolder(root.toString());
+        pollingRoots.remove(root);
+        Iterator<Map.Entry<WatchKey, Path>> entries = watchedDirectories.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<WatchKey, Path> entry = entries.next();
+            if (entry.getValue().startsWith(root)) {
+                entry.getKey().cancel();
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Register a callback invoked on a background thread after changes have
+     * been applied to the catalogue.
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    private void attachRoot(Path root) {
+        if (watchService == null || isRemote(root)) {
+            pollingRoots.add(root);
+        } else {
+            try {
+                registerTree(root);
+            } catch (IOException ex) {
+                pollingRoots.add(root);
+            }
+        }
+        pendingScopes.add(root);
+    }
+
+    private boolean isRemote(Path root) {
+        if (root.toString().startsWith("\\\\")) {
+            return true;
+        }
+        try {
+            return REMOTE_STORE_TYPES.contains(Files.getFileStore(root).type().toLowerCase(Locale.ROOT));
+        } catch (IOException ex) {
+            return true;
+        }
+    }
+
+    private void registerTree(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void processEvents() {
+        WatchService service = watchService;
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+            Path directory = watchedDirectories.get(key);
+            if (directory != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost; rescan the whole directory.
+                        pendingScopes.add(directory);
+                    } else if (event.context() instanceof Path relative) {
+                        pendingScopes.add(directory.resolve(relative));
+                    }
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    private void pollRoots() {
+        pendingScopes.addAll(pollingRoots);
+    }
+
+    private void flushPending() {
+        if (pendingScopes.isEmpty()) {
+            return;
+        }
+        Set<Path> scopes = new HashSet<>();
+        for (Iterator<Path> it = pendingScopes.iterator(); it.hasNext(); ) {
+            scopes.add(it.next());
+            it.remove();
+        }
+        try {
+            if (reconcile(scopes)) {
+                for (Runnable listener : changeListeners) {
+                    listener.run();
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Keep the scheduler alive; the next event or poll retries.
+        }
+    }
+
+    /**
+     * Compare the catalogue with the file system below each scope (a file or a
+     * directory) and apply the differences.
+     *
+     * @return {@code true} if the catalogue changed
+     */
+    boolean reconcile(Set<Path> scopes) {
+        Map<String, BasicFileAttributes> found = new HashMap<>();
+        Set<Path> unreadable = new HashSet<>();
+        for (Path scope : scopes) {
+            collectFiles(scope, found, unreadable);
+            if (Files.isDirectory(scope) && watchService != null && !isUnderAny(scope, pollingRoots)) {
+                try {
+                    registerTree(scope);
+                } catch (IOException ignored) {
+                    // the periodic rescan of the parent still covers it
+                }
+            }
+        }
+        // Entries below a path that could not be read are left alone: their files are unknown, not gone.
+        Map<String, Content> catalogued = new HashMap<>();
+        for (Content content : repository.getAllContents()) {
+            if (content.getFilePath() != null) {
+                Path path = Paths.get(content.getFilePath());
+                if (isUnderAny(path, scopes) && !isUnderAny(path, unreadable)) {
+                    catalogued.put(content.getFilePath(), content);
+                }
+            }
+        }
+
+        List<Content> modified = new ArrayList<>();
+        List<Content> removed = new ArrayList<>();
+        for (Content content : catalogued.values()) {
+            BasicFileAttributes attrs = found.remove(content.getFilePath());
+            if (attrs == null) {
+                removed.add(content);
+            } else if (attrs.size() != content.getSizeBytes()
+                    || attrs.lastModifiedTime().toMillis() != content.getLastModified()) {
+                modified.add(refresh(content, Paths.get(content.getFilePath()), attrs));
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            // A skipped copy may now be the only one left.
+            skippedDuplicates.clear();
+        }
+        List<Content> created = new ArrayList<>();
+        Set<String> seenHashes = new HashSet<>();
+        // Entries about to be removed are still catalogued; their copies are moves, not duplicates.
+        Set<String> removedHashes = new HashSet<>();
+        for (Content content : removed) {
+            if (content.getContentHash() != null) {
+                removedHashes.add(content.getContentHash());
+            }
+        }
+        for (Map.Entry<String, BasicFileAttributes> entry : found.entrySet()) {
+            Path path = Paths.get(entry.getKey());
+            Content moved = takeMoveSource(removed, path, entry.getValue());
+            if (moved != null) {
+                modified.add(moved(moved, entry));
+                continue;
+            }
+            long lastModified = entry.getValue().lastModifiedTime().toMillis();
+            if (skippedDuplicates.getOrDefault(entry.getKey(), -1L) == lastModified) {
+                continue;
+            }
+            try {
+                String hash = FingerprintService.fingerprint(path);
+                // A renamed file keeps its content, so a removed entry with its digest moved here.
+                moved = takeMoveSource(removed, hash);
+                if (moved != null) {
+                    modified.add(moved(moved, entry));
+                    continue;
+                }
+                // Same dedupe as a bulk import: skip copies of catalogued or just-found files.
+                if (!seenHashes.add(hash) || (repository.containsContentHash(hash) && !removedHashes.contains(hash))) {
+                    skippedDuplicates.put(entry.getKey(), lastModified);
+                    continue;
+                }
+                Content content = extractor.extract(path);
+                content.setContentHash(hash);
+                created.add(content);
+            } catch (IOException ex) {
+                // vanished or unreadable; a later event will pick it up
+            }
+        }
+
+        contentService.updateContentFiles(modified);
+        contentService.removeContents(removed);
+        if (!created.isEmpty()) {
+            contentService.saveContents(created);
+        }
+        return !modified.isEmpty() || !removed.isEmpty() || !created.isEmpty();
+    }
+
+    /**
+     * Add the supported files below {@code scope} to {@code found}.  Paths
+     * that could not be read are added to {@code unreadable}, and so is the
+     * scope itself when it is missing together with its library root, e.g.
+     * an unmounted drive or an offline share.
+     */
+    private void collectFiles(Path scope, Map<String, BasicFileAttributes> found, Set<Path> unreadable) {
+        if (!Files.exists(scope)) {
+            // Only a file or folder missing from a root that is there has really been deleted.
+            if (!isRootAvailable(scope)) {
+                unreadable.add(scope);
+            }
+            return;
+        }
+        try {
+            Files.walkFileTree(scope, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && MetadataExtractor.isSupported(file)) {
+                        found.put(file.toAbsolutePath().toString(), attrs);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    if (!(exc instanceof NoSuchFileException)) {
+                        unreadable.add(file.toAbsolutePath());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            unreadable.add(scope);
+        }
+    }
+
+    /**
+     * Whether the watched root containing {@code scope}, other than the scope
+     * itself, is present.
+     */
+    private boolean isRootAvailable(Path scope) {
+        for (String folder : repository.getWatchedFolders()) {
+            Path root = Paths.get(folder);
+            if (scope.startsWith(root) && !scope.equals(root)) {
+                return Files.isDirectory(root);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Re-read size, modification time and extracted metadata of a changed
+     * file while keeping the user's descriptive metadata.
+     */
+    private Content refresh(Content existing, Path path, BasicFileAttributes attrs) {
+        Content updated = new Content(existing);
+        boolean contentChanged = attrs.size() != existing.getSizeBytes() || existing.getLastModified() != 0;
+        updated.setSizeBytes(attrs.size());
+        updated.setLastModified(attrs.lastModifiedTime().toMillis());
+        if (contentChanged) {
+            try {
+                Content fresh = extractor.extract(path);
+                updated.setPageCount(fresh.getPageCount());
+                updated.setImageWidth(fresh.getImageWidth());
+                updated.setImageHeight(fresh.getImageHeight());
+                updated.setContentHash(FingerprintService.fingerprint(path));
+            } catch (IOException ignored) {
+                // keep previous extracted metadata
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * A delete and a create of a file with the same name and size within one
+     * flush is treated as a move so the entry keeps its ID, history and
+     * favourites.
+     */
+    private Content takeMoveSource(List<Content> removed, Path target, BasicFileAttributes attrs) {
+        String name = target.getFileName().toString();
+        for (Iterator<Content> it = removed.iterator(); it.hasNext(); ) {
+            Content candidate = it.next();
+            if (candidate.getSizeBytes() == attrs.size()
+                    && name.equals(Paths.get(candidate.getFilePath()).getFileName().toString())) {
+                it.remove();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /** A removed entry with the given digest, taken out of {@code removed}. */
+    private static Content takeMoveSource(List<Content> removed, String hash) {
+        for (Iterator<Content> it = removed.iterator(); it.hasNext(); ) {
+            Content candidate = it.next();
+            if (hash.equals(candidate.getContentHash())) {
+                it.remove();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static Content moved(Content source, Map.Entry<String, BasicFileAttributes> target) {
+        source.setFilePath(target.getKey());
+        source.setLastModified(target.getValue().lastModifiedTime().toMillis());
+        return source;
+    }
+
+    private static boolean isUnderAny(Path path, Set<Path> scopes) {
+        for (Path scope : scopes) {
+            if (path.startsWith(scope)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,135 @@
+package transparent.service;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import transparent.model.Content;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Extracts descriptive metadata from library files without rendering them.
+ * PDFs contribute their document information and page count, EPUBs the title
+ * and author declared in the OPF package document, comic archives their
+ * page count and images their pixel dimensions.  Extraction is best-effort: when a file cannot be parsed the
+ * basic file-system metadata is still returned.
+ *
+ * <p>Instances are stateless and safe to share between threads.</p>
+ */
+public final class MetadataExtractor {
+    /** File extensions (lower case, without dot) that can be added to the library. */
+    public static final Set<String> SUPPORTED_EXTENSIONS =
+            Set.of("pdf", "epub", "cbz", "zip", "txt", "png", "jpg", "jpeg", "gif", "tif", "tiff");
+
+    /**
+     * Determine whether the file name has one of the {@link #SUPPORTED_EXTENSIONS}.
+     */
+    public static boolean isSupported(Path path) {
+        return SUPPORTED_EXTENSIONS.contains(extensionOf(path).toLowerCase(Locale.ROOT));
+    }
+
+    static String extensionOf(Path path) {
+        String name = path.getFileName() == null ? "" : path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1) : "";
+    }
+
+    /**
+     * Build a {@link Content} for the file with as much metadata as can be
+     * read cheaply.  The result is not persisted.
+     *
+     * @throws IOException if the file attributes cannot be read
+     */
+    public Content extract(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        String type = extensionOf(path).toUpperCase(Locale.ROOT);
+        Content content = new Content(name, path.toAbsolutePath().toString(), type, Files.size(path));
+        content.setDayAdded(LocalDateTime.now());
+        content.setLastModified(Files.getLastModifiedTime(path).toMillis());
+        try {
+            switch (type) {
+                case "PDF" -> extractPdf(path, content);
+                case "EPUB" -> extractEpub(path, content);
+                case "CBZ", "ZIP" -> extractComic(path, content);
+                case "PNG", "JPG", "JPEG", "GIF", "BMP", "TIF", "TIFF" -> extractImage(path, content);
+                default -> {
+                    // Plain files carry no embedded metadata.
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Corrupt or unusual files are still imported with file-system metadata only.
+        }
+        return content;
+    }
+
+    private void extractPdf(Path path, Content content) throws IOException {
+        try (PDDocument document = PDDocument.load(path.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            content.setPageCount(document.getNumberOfPages());
+            PDDocumentInformation info = document.getDocumentInformation();
+            if (info != null) {
+                applyTitle(content, info.getTitle());
+                applyAuthor(content, info.getAuthor());
+            }
+        }
+    }
+
+    private void extractEpub(Path path, Content content) throws IOException {
+        try (EpubPackage epub = EpubPackage.open(path)) {
+            applyTitle(content, epub.title());
+            applyAuthor(content, epub.creator());
+            content.setPageCount(epub.spineLength());
+        }
+    }
+
+    private void extractComic(Path path, Content content) throws IOException {
+        // Only the zip directory is read, however large the archive.
+        try (ComicArchive comic = ComicArchive.open(path)) {
+            content.setPageCount(comic.getPageCount());
+        }
+    }
+
+    private void extractImage(Path path, Content content) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            if (input == null) {
+                return;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                // Only headers are read; pixel data is never decoded.
+                boolean multiPage = reader.getFormatName().equalsIgnoreCase("tif");
+                reader.setInput(input, !multiPage, true);
+                content.setImageWidth(reader.getWidth(0));
+                content.setImageHeight(reader.getHeight(0));
+                // TIFF scans hold one page per frame; counting them walks the frame directory only.
+                content.setPageCount(multiPage ? reader.getNumImages(true) : 1);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static void applyTitle(Content content, String title) {
+        if (title != null && !title.isBlank()) {
+            content.setTitle(title.trim());
+        }
+    }
+
+    private static void applyAuthor(Content content, String author) {
+        if (author != null && !author.isBlank()) {
+            content.setAuthor(author.trim());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package transparent.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * A multi-page image file, typically a scanned TIFF, read with the JDK's
+ * image reader.  Opening reads only the frame directory to count the pages;
+ * each frame is decoded when asked for, subsampled to the size it is shown
+ * at, instead of decoding the whole file up front.
+ *
+ * <p>An {@link ImageReader} is not thread-safe, so frames are decoded one at
+ * a time.</p>
+ */
+public final class MultiPageImage implements PagedImage {
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final int pageCount;
+
+    private MultiPageImage(ImageInputStream input, ImageReader reader, int pageCount) {
+        this.input = input;
+        this.reader = reader;
+        this.pageCount = pageCount;
+    }
+
+    /**
+     * Open the image at {@code path} and count its frames.
+     *
+     * @throws IOException if no installed reader understands the file
+     */
+    public static MultiPageImage open(Path path) throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(path.toFile());
+        if (input == null) {
+            throw new IOException("Cannot read " + path);
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            // Seeking back is allowed so earlier frames can be revisited.
+            reader.setInput(input, false, true);
+            return new MultiPageImage(input, reader, reader.getNumImages(true));
+        } catch (IOException | RuntimeException ex) {
+            input.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public synchronized BufferedImage readPage(int pageIndex, int maxWidth) throws IOException {
+        return Decoding.read(reader, pageIndex, maxWidth);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+}
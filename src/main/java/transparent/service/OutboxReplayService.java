@@ -0,0 +1,255 @@
+package transparent.service;
+
+import transparent.dao.ContentDAO;
+import transparent.dao.FavouriteDAO;
+import transparent.dao.HistoryDAO;
+import transparent.dao.SqlErrors;
+import transparent.dao.UserDAO;
+import transparent.metrics.Metrics;
+import transparent.model.Content;
+import transparent.model.Favourite;
+import transparent.model.HistoryRecord;
+import transparent.model.User;
+import transparent.repository.FileBackedLibraryRepository;
+import transparent.repository.PendingChange;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes everything recorded while the database was unreachable back to it
+ * once it is reachable again.  Users and content created offline are inserted
+ * first and their local (negative) IDs replaced by the database IDs; queued
+ * changes are then sent in one batched transaction per kind.
+ *
+ * <p>Conflicts are resolved by timestamp: a reading position or favourite
+ * removal only overwrites the database if it is newer than the row there.
+ * Every step is idempotent, so a replay interrupted by a lost connection is
+ * simply repeated on the next attempt.</p>
+ */
+public final class OutboxReplayService {
+    private static final long PROBE_INTERVAL_SECONDS = 30;
+
+    private final FileBackedLibraryRepository repository = FileBackedLibraryRepository.getInstance();
+    private final UserDAO userDAO = new UserDAO();
+    private final ContentDAO contentDAO = new ContentDAO();
+    private final HistoryDAO historyDAO = new HistoryDAO();
+    private final FavouriteDAO favouriteDAO = new FavouriteDAO();
+    private final List<BiConsumer<Map<Integer, Integer>, Map<Integer, Integer>>> remapListeners =
+            new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    private OutboxReplayService() {
+    }
+
+    private static final class Holder {
+        private static final OutboxReplayService INSTANCE = new OutboxReplayService();
+    }
+
+    public static OutboxReplayService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Start probing for the database in the background while anything is
+     * waiting to be replayed.  Calling this more than once has no effect.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transparent-outbox");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (repository.hasPendingSync()) {
+                replayNow();
+            }
+        }, 0, PROBE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Register a listener notified after local IDs were replaced, with the
+     * user and content remaps (local ID to database ID).  Listeners are called
+     * on the replay thread.
+     */
+    public void addRemapListener(BiConsumer<Map<Integer, Integer>, Map<Integer, Integer>> listener) {
+        remapListeners.add(listener);
+    }
+
+    /**
+     * Replay everything pending.  Stops at the first database error other
+     * than a refused change; what was written up to then is acknowledged and
+     * the rest stays queued.
+     *
+     * @return {@code true} if nothing is left to replay
+     */
+    public synchronized boolean replayNow() {
+        Map<Integer, Integer> userRemaps = new HashMap<>();
+        Map<Integer, Integer> contentRemaps = new HashMap<>();
+        try {
+            replayUsers(userRemaps);
+            replayContents(contentRemaps);
+            replayChanges();
+            return !repository.hasPendingSync();
+        } catch (SQLException e) {
+            // still offline: try again on the next probe
+            return false;
+        } finally {
+            if (!userRemaps.isEmpty() || !contentRemaps.isEmpty()) {
+                for (BiConsumer<Map<Integer, Integer>, Map<Integer, Integer>> listener : remapListeners) {
+                    listener.accept(userRemaps, contentRemaps);
+                }
+            }
+        }
+    }
+
+    private void replayUsers(Map<Integer, Integer> remaps) throws SQLException {
+        Map<Integer, Integer> batch = new HashMap<>();
+        for (User user : repository.listOfflineUsers()) {
+            User stored = userDAO.findOrCreateByUsername(user.getUsername());
+            if (stored != null) {
+                batch.put(user.getUserID(), stored.getUserID());
+            }
+        }
+        repository.remapUserIds(batch);
+        remaps.putAll(batch);
+    }
+
+    private void replayContents(Map<Integer, Integer> remaps) throws SQLException {
+        List<Content> offline = repository.listOfflineContents();
+        if (offline.isEmpty()) {
+            return;
+        }
+        Map<Content, Integer> localIds = new IdentityHashMap<>();
+        for (Content content : offline) {
+            localIds.put(content, content.getContentID());
+        }
+        // Rows inserted by an earlier, interrupted replay are found by path instead of inserted twice.
+        contentDAO.assignExistingIds(offline);
+        List<Content> missing = offline.stream().filter(content -> content.getContentID() < 0).toList();
+        contentDAO.insertContents(missing);
+        Map<Integer, Integer> batch = new HashMap<>();
+        localIds.forEach((content, localId) -> {
+            if (content.getContentID() > 0) {
+                batch.put(localId, content.getContentID());
+            }
+        });
+        repository.remapContentIds(batch);
+        remaps.putAll(batch);
+    }
+
+    private void replayChanges() throws SQLException {
+        List<PendingChange> files = new ArrayList<>();
+        List<PendingChange> deletes = new ArrayList<>();
+        List<PendingChange> history = new ArrayList<>();
+        List<PendingChange> favourites = new ArrayList<>();
+        for (PendingChange change : repository.getPendingChanges()) {
+            // Rows whose user or content is not in the database yet wait for the next replay.
+            if (change.getContentId() < 0 || change.getUserId() < 0) {
+                continue;
+            }
+            switch (change.getKind()) {
+                case CONTENT_FILE -> files.add(change);
+                case CONTENT_DELETE -> deletes.add(change);
+                case HISTORY -> history.add(change);
+                case FAVOURITE -> favourites.add(change);
+            }
+        }
+        replay(files, this::writeContentFiles);
+        replay(deletes, this::writeContentDeletes);
+        replay(history, this::writeHistory);
+        replay(favourites, this::writeFavourites);
+    }
+
+    @FunctionalInterface
+    private interface ChangeWriter {
+        void write(List<PendingChange> changes) throws SQLException;
+    }
+
+    /**
+     * Write one kind of change in a batch and acknowledge it.  If the
+     * database refuses the batch for breaking a constraint, the changes are
+     * written one at a time and those it refuses are dropped: they would be
+     * refused on every replay and hold up everything queued after them.
+     */
+    private void replay(List<PendingChange> changes, ChangeWriter writer) throws SQLException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            writer.write(changes);
+        } catch (SQLException ex) {
+            if (!SqlErrors.isIntegrityViolation(ex)) {
+                throw ex;
+            }
+            int rejected = 0;
+            for (PendingChange change : changes) {
+                try {
+                    writer.write(List.of(change));
+                } catch (SQLException single) {
+                    if (!SqlErrors.isIntegrityViolation(single)) {
+                        throw single;
+                    }
+                    rejected++;
+                }
+            }
+            Metrics.getInstance().counter("outbox.rejected").add(rejected);
+        }
+        repository.acknowledgeChanges(changes);
+    }
+
+    private void writeContentFiles(List<PendingChange> changes) throws SQLException {
+        List<Content> contents = new ArrayList<>();
+        for (PendingChange change : changes) {
+            // The current row is sent; it includes every later change to the same entry.
+            Optional<Content> content = repository.findContent(change.getContentId());
+            content.ifPresent(contents::add);
+        }
+        contentDAO.updateContentFiles(contents);
+    }
+
+    private void writeContentDeletes(List<PendingChange> changes) throws SQLException {
+        List<Content> contents = new ArrayList<>();
+        for (PendingChange change : changes) {
+            Content content = new Content();
+            content.setContentID(change.getContentId());
+            contents.add(content);
+        }
+        contentDAO.markContentsMissing(contents);
+    }
+
+    private void writeHistory(List<PendingChange> changes) throws SQLException {
+        List<HistoryRecord> records = new ArrayList<>();
+        for (PendingChange change : changes) {
+            HistoryRecord record = new HistoryRecord(change.getUserId(), change.getContentId(), change.getPageNumber());
+            record.setLastReadTime(change.getTimestamp());
+            records.add(record);
+        }
+        historyDAO.applyHistory(records);
+    }
+
+    private void writeFavourites(List<PendingChange> changes) throws SQLException {
+        List<Favourite> added = new ArrayList<>();
+        List<Favourite> removed = new ArrayList<>();
+        for (PendingChange change : changes) {
+            Favourite favourite = new Favourite(change.getUserId(), change.getContentId());
+            favourite.setAddedDate(change.getTimestamp());
+            (change.isFavourite() ? added : removed).add(favourite);
+        }
+        favouriteDAO.applyFavouriteChanges(added, removed);
+    }
+}
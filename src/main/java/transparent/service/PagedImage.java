@@ -0,0 +1,94 @@
+package transparent.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A document whose pages are images decoded one at a time: comic archives
+ * and multi-page TIFF scans.  The reader keeps one open while it is shown and
+ * asks for pages as they are turned to, with the neighbours decoded ahead.
+ */
+public interface PagedImage extends AutoCloseable {
+
+    int getPageCount();
+
+    /**
+     * Decode the zero-based page, skipping source pixels so that it is no
+     * wider than needed to show it {@code maxWidth} pixels wide.  Pass
+     * {@code 0} for full resolution.
+     *
+     * @throws IOException if the page cannot be read or is not a supported image
+     */
+    BufferedImage readPage(int pageIndex, int maxWidth) throws IOException;
+
+    /**
+     * Decode a page on a background thread, e.g. to prefetch the pages next
+     * to the one being read.
+     */
+    default CompletableFuture<BufferedImage> readPageAsync(int pageIndex, int maxWidth) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return readPage(pageIndex, maxWidth);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, Decoding.EXECUTOR);
+    }
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Decoder threads shared by all paged images, and subsampled reads.
+     */
+    final class Decoding {
+        private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "transparent-page-decode");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private Decoding() {
+        }
+
+        /**
+         * Decode image {@code imageIndex} of {@code reader}, whose input is
+         * already set, subsampled to at least {@code maxWidth} pixels wide.
+         */
+        static BufferedImage read(ImageReader reader, int imageIndex, int maxWidth) throws IOException {
+            ImageReadParam param = reader.getDefaultReadParam();
+            int step = maxWidth <= 0 ? 1 : Math.max(1, reader.getWidth(imageIndex) / maxWidth);
+            param.setSourceSubsampling(step, step, 0, 0);
+            return reader.read(imageIndex, param);
+        }
+
+        /** Decode the first image of a stream with {@link #read}; closes the stream. */
+        static BufferedImage read(ImageInputStream input, int maxWidth, String name) throws IOException {
+            if (input == null) {
+                throw new IOException("Cannot read " + name);
+            }
+            try (input) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+                if (!readers.hasNext()) {
+                    throw new IOException("Unsupported image format: " + name);
+                }
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(input, true, true);
+                    return read(reader, 0, maxWidth);
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package transparent.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders pages of one PDF on several cores.  {@link PDDocument} is not
+ * thread-safe, so the file is opened once per worker: each job borrows a
+ * handle of its own, renders, and gives it back.  Handles are opened lazily,
+ * so a renderer used for a single page costs one parse, and never more than
+ * {@link #getMaxHandles()} are open at once.
+ *
+ * <p>All renderers share one pool of daemon threads sized to the machine,
+ * so prefetching in several reader windows cannot oversubscribe the CPU.
+ * Closing the renderer closes idle handles at once and busy ones as their
+ * jobs finish; jobs that have not started yet fail.</p>
+ */
+public final class ParallelPdfRenderer implements AutoCloseable {
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(CORES, runnable -> {
+        Thread thread = new Thread(runnable, "transparent-render-" + THREADS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Work done with one borrowed document handle.  The renderer and
+     * document must not escape the call.
+     */
+    @FunctionalInterface
+    public interface PageJob<T> {
+        T render(PDFRenderer renderer, PDDocument document, int pageIndex) throws IOException;
+    }
+
+    private final Path file;
+    private final int maxHandles;
+    private final int pageCount;
+    private final LinkedBlockingDeque<Handle> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger opened = new AtomicInteger();
+    private volatile boolean closed;
+
+    private ParallelPdfRenderer(Path file, int maxHandles, Handle first) {
+        this.file = file;
+        this.maxHandles = maxHandles;
+        this.pageCount = first.document.getNumberOfPages();
+        opened.set(1);
+        idle.add(first);
+    }
+
+    /**
+     * Open {@code file} with up to one handle per core.
+     */
+    public static ParallelPdfRenderer open(Path file) throws IOException {
+        return open(file, CORES);
+    }
+
+    /**
+     * Open {@code file} with at most {@code maxHandles} concurrent handles.
+     * The first handle is opened now so a damaged file fails here.
+     */
+    public static ParallelPdfRenderer open(Path file, int maxHandles) throws IOException {
+        return new ParallelPdfRenderer(file, Math.max(1, maxHandles), Handle.open(file));
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getMaxHandles() {
+        return maxHandles;
+    }
+
+    /**
+     * Run {@code job} for one zero-based page on the render pool.
+     */
+    public <T> CompletableFuture<T> submit(int pageIndex, PageJob<T> job) {
+        if (pageIndex < 0 || pageIndex >= pageCount) {
+            return CompletableFuture.failedFuture(
+                    new IndexOutOfBoundsException("Page " + pageIndex + " of " + pageCount));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call(pageIndex, job);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Run {@code job} for every page, spread over the pool.  The list is in
+     * page order; if any page fails the future fails with its exception.
+     * The reader renders page by page, so this is for whole-document work:
+     * today the render benchmark, later e.g. an export.
+     */
+    public <T> CompletableFuture<List<T>> submitAll(PageJob<T> job) {
+        List<CompletableFuture<T>> pages = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            pages.add(submit(i, job));
+        }
+        return CompletableFuture.allOf(pages.toArray(CompletableFuture[]::new))
+                .thenApply(done -> pages.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Run {@code job} on the calling thread with a borrowed handle, for
+     * callers that need a page now rather than on the pool.
+     */
+    public <T> T call(int pageIndex, PageJob<T> job) throws IOException {
+        Handle handle = borrow();
+        try {
+            return job.render(handle.renderer, handle.document, pageIndex);
+        } finally {
+            giveBack(handle);
+        }
+    }
+
+    /**
+     * Unwrap the {@link IOException} of a failed page future.
+     */
+    public static IOException unwrap(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        if (cause instanceof UncheckedIOException unchecked) {
+            return unchecked.getCause();
+        }
+        return cause instanceof IOException io ? io : new IOException(cause);
+    }
+
+    private Handle borrow() throws IOException {
+        if (closed) {
+            throw new IOException("Renderer closed: " + file);
+        }
+        Handle handle = idle.pollFirst();
+        if (handle != null) {
+            return handle;
+        }
+        int count = opened.get();
+        while (count < maxHandles) {
+            if (opened.compareAndSet(count, count + 1)) {
+                try {
+                    return Handle.open(file);
+                } catch (IOException | RuntimeException ex) {
+                    opened.decrementAndGet();
+                    throw ex;
+                }
+            }
+            count = opened.get();
+        }
+        try {
+            // Poll so a waiter notices close() instead of waiting forever.
+            while (!closed) {
+                handle = idle.pollFirst(100, TimeUnit.MILLISECONDS);
+                if (handle != null) {
+                    return handle;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a document handle", ex);
+        }
+        throw new IOException("Renderer closed: " + file);
+    }
+
+    private void giveBack(Handle handle) {
+        if (closed) {
+            handle.close();
+            opened.decrementAndGet();
+        } else {
+            // Most recently used first: its caches are warm.
+            idle.addFirst(handle);
+            if (closed && idle.remove(handle)) {
+                handle.close();
+                opened.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Close every idle handle now; handles still rendering are closed when
+     * their job finishes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Handle handle;
+        while ((handle = idle.pollFirst()) != null) {
+            handle.close();
+            opened.decrementAndGet();
+        }
+    }
+
+    private static final class Handle {
+        private final PDDocument document;
+        private final PDFRenderer renderer;
+
+        private Handle(PDDocument document) {
+            this.document = document;
+            this.renderer = new PDFRenderer(document);
+        }
+
+        static Handle open(Path file) throws IOException {
+            return new Handle(PDDocument.load(file.toFile()));
+        }
+
+        void close() {
+            try {
+                document.close();
+            } catch (IOException ignored) {
+                // Read-only use; nothing is lost.
+            }
+        }
+    }
+}
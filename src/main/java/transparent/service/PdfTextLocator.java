@@ -0,0 +1,105 @@
+package transparent.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds where on a PDF page the occurrences of a pattern are drawn, so the
+ * reader can highlight find results.  The page text is rebuilt with the same
+ * stripper settings {@link TextExtractor} uses, so the n-th occurrence here
+ * is the n-th hit the search reported for the page.
+ */
+public final class PdfTextLocator {
+    private PdfTextLocator() {
+    }
+
+    /**
+     * Return, for each occurrence of {@code pattern} on the zero-based page,
+     * the boxes it covers: one per line, in points from the top left corner
+     * of the page as displayed (rotation applied).
+     */
+    public static List<List<Rectangle2D>> locate(PDDocument document, int pageIndex, Pattern pattern)
+            throws IOException {
+        PositionStripper stripper = new PositionStripper();
+        stripper.setSortByPosition(true);
+        stripper.setStartPage(pageIndex + 1);
+        stripper.setEndPage(pageIndex + 1);
+        stripper.writeText(document, Writer.nullWriter());
+        List<List<Rectangle2D>> occurrences = new ArrayList<>();
+        Matcher matcher = pattern.matcher(stripper.text);
+        while (matcher.find()) {
+            occurrences.add(stripper.boxes(matcher.start(), matcher.end()));
+        }
+        return occurrences;
+    }
+
+    /**
+     * Records the glyph behind every character of the page text; separators
+     * the stripper inserts have no glyph.
+     */
+    private static final class PositionStripper extends PDFTextStripper {
+        private final StringBuilder text = new StringBuilder();
+        private final List<TextPosition> glyphs = new ArrayList<>();
+
+        PositionStripper() throws IOException {
+        }
+
+        @Override
+        protected void writeString(String string, List<TextPosition> textPositions) {
+            for (TextPosition position : textPositions) {
+                String unicode = position.getUnicode();
+                for (int i = 0; i < unicode.length(); i++) {
+                    text.append(unicode.charAt(i));
+                    glyphs.add(position);
+                }
+            }
+        }
+
+        @Override
+        protected void writeWordSeparator() {
+            append(getWordSeparator());
+        }
+
+        @Override
+        protected void writeLineSeparator() {
+            append(getLineSeparator());
+        }
+
+        private void append(String separator) {
+            for (int i = 0; i < separator.length(); i++) {
+                text.append(separator.charAt(i));
+                glyphs.add(null);
+            }
+        }
+
+        /** Union the glyphs in {@code [start, end)}, one box per line. */
+        List<Rectangle2D> boxes(int start, int end) {
+            List<Rectangle2D> boxes = new ArrayList<>();
+            Rectangle2D line = null;
+            for (int i = start; i < end; i++) {
+                TextPosition glyph = glyphs.get(i);
+                if (glyph == null) {
+                    continue;
+                }
+                Rectangle2D box = new Rectangle2D.Float(glyph.getX(), glyph.getY() - glyph.getHeight(),
+                        glyph.getWidth(), glyph.getHeight());
+                if (line != null && Math.abs(line.getMaxY() - box.getMaxY()) < glyph.getHeight() / 2) {
+                    line.add(box);
+                } else {
+                    line = box;
+                    boxes.add(line);
+                }
+            }
+            return boxes;
+        }
+    }
+}
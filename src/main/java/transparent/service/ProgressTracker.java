@@ -0,0 +1,128 @@
+package transparent.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the latest reading position of each open book in memory and writes
+ * it through {@link HistoryService} only once the reader has settled on a
+ * page, so flipping through a book does not cost a database round trip and a
+ * local store rewrite per page turn.
+ *
+ * <p>A position is written once no page turn has happened for
+ * {@value #QUIET_MILLIS} ms, and at the latest {@value #MAX_DELAY_MILLIS} ms
+ * after it first changed.  Writes happen on a background thread; callers
+ * flush explicitly when a reader closes and on application exit.</p>
+ */
+public final class ProgressTracker {
+    private static final long QUIET_MILLIS = 1_500L;
+    private static final long MAX_DELAY_MILLIS = 5_000L;
+    private static final long SWEEP_MILLIS = 500L;
+    private static final int LOCK_STRIPES = 16;
+
+    private record Key(int userId, int contentId) {
+    }
+
+    private record Position(int pageNumber, long firstChange, long lastChange) {
+    }
+
+    private final HistoryService historyService = new HistoryService();
+    private final Map<Key, Position> pending = new ConcurrentHashMap<>();
+    /** Monitors serialising writes, shared by the books that hash alike so their number stays fixed. */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transparent-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ProgressTracker() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        scheduler.scheduleWithFixedDelay(this::flushDue, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Holder {
+        private static final ProgressTracker INSTANCE = new ProgressTracker();
+    }
+
+    public static ProgressTracker getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Record the page a user is on.  Only the latest page is kept; it is
+     * written in the background once the reader settles.
+     */
+    public void record(int userId, int contentId, int pageNumber) {
+        long now = System.currentTimeMillis();
+        pending.merge(new Key(userId, contentId), new Position(pageNumber, now, now),
+                (previous, latest) -> new Position(pageNumber, previous.firstChange(), now));
+    }
+
+    /**
+     * Return the page recorded but not yet written for the pair, or
+     * {@code null} if everything has been written.
+     */
+    public Integer pendingPage(int userId, int contentId) {
+        Position position = pending.get(new Key(userId, contentId));
+        return position == null ? null : position.pageNumber();
+    }
+
+    /**
+     * Write the pending position of one book immediately, e.g. when its reader
+     * window closes.  Blocks until written.
+     */
+    public void flush(int userId, int contentId) {
+        write(new Key(userId, contentId));
+    }
+
+    /**
+     * Write every pending position immediately.  Call on application exit.
+     */
+    public void flushAll() {
+        for (Key key : new ArrayList<>(pending.keySet())) {
+            write(key);
+        }
+    }
+
+    private void flushDue() {
+        long now = System.currentTimeMillis();
+        List<Key> due = new ArrayList<>();
+        pending.forEach((key, position) -> {
+            if (now - position.lastChange() >= QUIET_MILLIS || now - position.firstChange() >= MAX_DELAY_MILLIS) {
+                due.add(key);
+            }
+        });
+        for (Key key : due) {
+            try {
+                write(key);
+            } catch (RuntimeException ex) {
+                // The position stays pending and is retried on the next sweep.
+            }
+        }
+    }
+
+    private void write(Key key) {
+        // Writes for the same book are serialised so an older page never overwrites a newer one.
+        synchronized (lockFor(key)) {
+            Position position = pending.get(key);
+            if (position == null) {
+                return;
+            }
+            historyService.saveProgress(key.userId(), key.contentId(), position.pageNumber());
+            // Only forget the position if no newer page was recorded while writing.
+            pending.remove(key, position);
+        }
+    }
+
+    private Object lockFor(Key key) {
+        return locks[Math.floorMod(key.hashCode(), locks.length)];
+    }
+}
@@ -0,0 +1,56 @@
+package transparent.service;
+
+import transparent.metrics.Metrics;
+import transparent.model.Content;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * What a session needs first, fetched in parallel as soon as the user has
+ * logged in: the library listing, the user's favourites and reading
+ * positions, and the full-text index.  The main window is shown right away
+ * and fills in from {@link #contents()} and {@link #activity()} as each
+ * completes, instead of waiting for all of them one after the other.
+ */
+public final class SessionWarmUp {
+    private static final Executor WORKER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "transparent-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CompletableFuture<List<Content>> contents;
+    private final CompletableFuture<Void> activity;
+
+    private SessionWarmUp(CompletableFuture<List<Content>> contents, CompletableFuture<Void> activity) {
+        this.contents = contents;
+        this.activity = activity;
+    }
+
+    /** Start warming up the session of the user who just logged in. */
+    public static SessionWarmUp start(int userId) {
+        Metrics metrics = Metrics.getInstance();
+        long start = System.nanoTime();
+        CompletableFuture<List<Content>> contents = CompletableFuture.supplyAsync(
+                () -> new ContentService().getAllContents(), WORKER);
+        CompletableFuture<Void> activity = ActivityCache.getInstance().preload(userId);
+        // The index loads its catalogue on its own thread.
+        FullTextIndex.getInstance().start();
+        CompletableFuture.allOf(contents, activity)
+                .whenComplete((ignored, failure) -> metrics.timer("session.warmup").recordSince(start));
+        return new SessionWarmUp(contents, activity);
+    }
+
+    /** The whole library, merged from the database when reachable. */
+    public CompletableFuture<List<Content>> contents() {
+        return contents;
+    }
+
+    /** Completes once the user's favourites and reading positions are cached. */
+    public CompletableFuture<Void> activity() {
+        return activity;
+    }
+}
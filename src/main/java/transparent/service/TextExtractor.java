@@ -0,0 +1,196 @@
+package transparent.service;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import transparent.model.Content;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+
+/**
+ * Extracts plain text from library files one reader page at a time.  Page
+ * numbers match the reader: PDF pages, EPUB spine chapters, and a single page
+ * for plain text.  Text is handed to the caller as it is produced so a whole
+ * book never has to be held in memory.
+ */
+public class TextExtractor {
+    /** Plain text is streamed in chunks of roughly this many characters. */
+    private static final int TEXT_CHUNK_CHARS = 64 * 1024;
+
+    @FunctionalInterface
+    public interface PageTextConsumer {
+        /**
+         * Receive text for a page.  A page may be delivered in several
+         * consecutive chunks; chunks never split a word.
+         *
+         * @param pageIndex zero-based page index
+         * @param text      text of the page or chunk
+         */
+        void accept(int pageIndex, String text) throws IOException;
+    }
+
+    /**
+     * Return whether text can be extracted from the content's file type.
+     */
+    public static boolean isTextual(Content content) {
+        String type = content.getFileType() == null ? "" : content.getFileType().toUpperCase(Locale.ROOT);
+        return switch (type) {
+            case "PDF", "EPUB", "TXT", "TEXT" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Stream the text of every page of the content's file to {@code consumer}.
+     *
+     * @return the number of pages in the document
+     * @throws IOException if the file cannot be read
+     */
+    public int extract(Content content, PageTextConsumer consumer) throws IOException {
+        Path path = Paths.get(content.getFilePath());
+        String type = content.getFileType() == null ? "" : content.getFileType().toUpperCase(Locale.ROOT);
+        return switch (type) {
+            case "PDF" -> extractPdf(path, consumer);
+            case "EPUB" -> extractEpub(path, consumer);
+            case "TXT", "TEXT" -> extractText(path, consumer);
+            default -> 0;
+        };
+    }
+
+    private int extractPdf(Path path, PageTextConsumer consumer) throws IOException {
+        try (PDDocument document = PDDocument.load(path.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            int pages = document.getNumberOfPages();
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setSortByPosition(true);
+            for (int page = 1; page <= pages; page++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IOException("Text extraction interrupted");
+                }
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                consumer.accept(page - 1, stripper.getText(document));
+            }
+            return pages;
+        }
+    }
+
+    private int extractEpub(Path path, PageTextConsumer consumer) throws IOException {
+        try (EpubPackage epub = EpubPackage.open(path)) {
+            List<ZipEntry> spine = epub.spine();
+            for (int page = 0; page < spine.size(); page++) {
+                String html;
+                try (InputStream in = epub.open(spine.get(page))) {
+                    html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                consumer.accept(page, htmlToText(html));
+            }
+            return spine.size();
+        }
+    }
+
+    private int extractText(Path path, PageTextConsumer consumer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8))) {
+            StringBuilder chunk = new StringBuilder(TEXT_CHUNK_CHARS + 256);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chunk.append(line).append('\n');
+                if (chunk.length() >= TEXT_CHUNK_CHARS) {
+                    consumer.accept(0, chunk.toString());
+                    chunk.setLength(0);
+                }
+            }
+            if (chunk.length() > 0) {
+                consumer.accept(0, chunk.toString());
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Reduce (X)HTML to its visible text: tags, scripts and styles are
+     * dropped, block-level boundaries become whitespace and common entities
+     * are decoded.
+     */
+    static String htmlToText(String html) {
+        StringBuilder text = new StringBuilder(html.length() / 2);
+        int length = html.length();
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int end = html.indexOf('>', i);
+                if (end < 0) {
+                    break;
+                }
+                String tag = html.substring(i + 1, Math.min(end, i + 8)).toLowerCase(Locale.ROOT);
+                if (tag.startsWith("script") || tag.startsWith("style")) {
+                    String closing = tag.startsWith("script") ? "</script" : "</style";
+                    int close = indexOfIgnoreCase(html, closing, end);
+                    end = close < 0 ? length - 1 : html.indexOf('>', close);
+                    if (end < 0) {
+                        break;
+                    }
+                }
+                text.append(' ');
+                i = end + 1;
+            } else if (c == '&') {
+                int end = html.indexOf(';', i);
+                if (end < 0 || end - i > 10) {
+                    text.append(c);
+                    i++;
+                } else {
+                    text.append(decodeEntity(html.substring(i + 1, end)));
+                    i = end + 1;
+                }
+            } else {
+                text.append(c);
+                i++;
+            }
+        }
+        return text.toString();
+    }
+
+    private static int indexOfIgnoreCase(String text, String target, int from) {
+        for (int i = from; i <= text.length() - target.length(); i++) {
+            if (text.regionMatches(true, i, target, 0, target.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decodeEntity(String entity) {
+        switch (entity) {
+            case "amp": return "&";
+            case "lt": return "<";
+            case "gt": return ">";
+            case "quot": return "\"";
+            case "apos": return "'";
+            case "nbsp": return " ";
+            default:
+                break;
+        }
+        try {
+            if (entity.startsWith("#x") || entity.startsWith("#X")) {
+                return new String(Character.toChars(Integer.parseInt(entity.substring(2), 16)));
+            }
+            if (entity.startsWith("#")) {
+                return new String(Character.toChars(Integer.parseInt(entity.substring(1))));
+            }
+        } catch (IllegalArgumentException ex) {
+            // malformed reference, treat as a word break
+        }
+        return " ";
+    }
+}
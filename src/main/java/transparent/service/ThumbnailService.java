@@ -0,0 +1,245 @@
+package transparent.service;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import transparent.metrics.Metrics;
+import transparent.model.Content;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+
+/**
+ * Produces small cover thumbnails for library entries and caches them on
+ * disk under {@code ~/.transparent/thumbs}.  Thumbnails are keyed by the
+ * content fingerprint (or the file path when no fingerprint is known) and the
+ * file's modification time, so an edited file gets a fresh thumbnail while
+ * renamed or duplicate copies share one.
+ *
+ * <p>Rendering runs on a small pool of low priority daemon threads: PDFs at
+ * a resolution just large enough for the thumbnail, EPUBs from their cover
+ * image and images with source subsampling so originals are never fully
+ * decoded.</p>
+ */
+public final class ThumbnailService {
+    /** Longest edge of a cached thumbnail in pixels. */
+    public static final int THUMBNAIL_SIZE = 256;
+    private static final Path CACHE_DIR = Paths.get(
+            System.getProperty("user.home"), ".transparent", "thumbs");
+    /** Covers are independent, so a fresh library renders them on half the cores. */
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "transparent-thumbnails");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Map<String, CompletableFuture<Optional<Path>>> inFlight = new ConcurrentHashMap<>();
+
+    private ThumbnailService() {
+    }
+
+    private static final class Holder {
+        private static final ThumbnailService INSTANCE = new ThumbnailService();
+    }
+
+    public static ThumbnailService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Return the cached thumbnail file for the content if it already exists.
+     * Never touches the original file.
+     */
+    public Optional<Path> findCached(Content content) {
+        Path file = cacheFile(content);
+        boolean cached = Files.exists(file);
+        Metrics.getInstance().counter(cached ? "thumbnails.disk.hit" : "thumbnails.disk.miss").increment();
+        return cached ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Return the thumbnail for the content, rendering and caching it in the
+     * background when necessary.  The future completes with an empty value
+     * for formats without a visual cover (e.g. plain text) or unreadable files.
+     */
+    public CompletableFuture<Optional<Path>> requestThumbnail(Content content) {
+        Path file = cacheFile(content);
+        if (Files.exists(file)) {
+            return CompletableFuture.completedFuture(Optional.of(file));
+        }
+        Content snapshot = new Content(content);
+        String key = file.getFileName().toString();
+        CompletableFuture<Optional<Path>> pending = new CompletableFuture<>();
+        CompletableFuture<Optional<Path>> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            return existing;
+        }
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                pending.complete(render(snapshot, file));
+            } finally {
+                inFlight.remove(key, pending);
+                Metrics.getInstance().timer("thumbnails.render").recordSince(start);
+            }
+        });
+        return pending;
+    }
+
+    private Optional<Path> render(Content content, Path target) {
+        if (Files.exists(target)) {
+            return Optional.of(target);
+        }
+        Path source = Paths.get(content.getFilePath());
+        if (!Files.isRegularFile(source)) {
+            return Optional.empty();
+        }
+        String type = content.getFileType() == null ? "" : content.getFileType().toUpperCase(Locale.ROOT);
+        try {
+            BufferedImage image = switch (type) {
+                case "PDF" -> renderPdf(source);
+                case "EPUB" -> renderEpub(source);
+                case "CBZ", "ZIP" -> renderComic(source);
+                case "PNG", "JPG", "JPEG", "GIF", "BMP", "TIF", "TIFF" -> readSubsampled(ImageIO.createImageInputStream(source.toFile()));
+                default -> null;
+            };
+            if (image == null) {
+                return Optional.empty();
+            }
+            return Optional.of(write(fitWithin(image), target));
+        } catch (IOException | RuntimeException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private BufferedImage renderPdf(Path source) throws IOException {
+        try (PDDocument document = PDDocument.load(source.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            PDRectangle box = document.getPage(0).getCropBox();
+            float longest = Math.max(box.getWidth(), box.getHeight());
+            float scale = longest <= 0 ? 1f : THUMBNAIL_SIZE / longest;
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    private BufferedImage renderEpub(Path source) throws IOException {
+        try (EpubPackage epub = EpubPackage.open(source)) {
+            ZipEntry cover = epub.coverImage();
+            if (cover == null) {
+                return null;
+            }
+            try (InputStream in = epub.open(cover)) {
+                return readSubsampled(ImageIO.createImageInputStream(in));
+            }
+        }
+    }
+
+    private BufferedImage renderComic(Path source) throws IOException {
+        try (ComicArchive comic = ComicArchive.open(source)) {
+            if (comic.getPageCount() == 0) {
+                return null;
+            }
+            try (InputStream in = comic.openPage(0)) {
+                return readSubsampled(ImageIO.createImageInputStream(in));
+            }
+        }
+    }
+
+    /**
+     * Decode an image at roughly thumbnail resolution by skipping source
+     * pixels instead of decoding the full image and scaling it down.
+     */
+    private BufferedImage readSubsampled(ImageInputStream input) throws IOException {
+        if (input == null) {
+            return null;
+        }
+        try (input) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longest / (THUMBNAIL_SIZE * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage fitWithin(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) THUMBNAIL_SIZE / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, targetWidth, targetHeight);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static Path write(BufferedImage image, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        // Write to a temporary file first so readers never see a partial thumbnail.
+        Path temp = Files.createTempFile(target.getParent(), "thumb", ".tmp");
+        try {
+            if (!ImageIO.write(image, "jpg", temp.toFile())) {
+                throw new IOException("No JPEG writer available");
+            }
+            return Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Path cacheFile(Content content) {
+        String identity = content.getContentHash() != null
+                ? content.getContentHash()
+                : "path-" + UUID.nameUUIDFromBytes(String.valueOf(content.getFilePath())
+                        .getBytes(StandardCharsets.UTF_8));
+        return CACHE_DIR.resolve(identity + "-" + Long.toHexString(content.getLastModified()) + ".jpg");
+    }
+}
@@ -0,0 +1,195 @@
+package transparent.ui;
+
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ObservableValue;
+import transparent.model.Content;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+/**
+ * Immutable view-model for a single row of the library table.  Display
+ * strings are formatted once when the row is built and the observable values
+ * handed to the table columns are created on first use and then reused, so
+ * scrolling or refreshing the table does not allocate per cell render.
+ *
+ * <p>A row represents one version of a {@link Content}.  When the content or
+ * its favourite flag changes a new row must be created; {@link #of} reuses a
+ * previous row when nothing visible has changed.</p>
+ */
+public final class ContentRow {
+    public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    private static final String[] SIZE_UNITS = {"KB", "MB", "GB", "TB"};
+
+    private final Content content;
+    private final boolean favourite;
+    private final String title;
+    private final String fileType;
+    private final String category;
+    private final String tagsText;
+    private final String addedText;
+    private final String sizeText;
+
+    private ObservableValue<Boolean> favouriteValue;
+    private ObservableValue<String> titleValue;
+    private ObservableValue<String> typeValue;
+    private ObservableValue<String> categoryValue;
+    private ObservableValue<String> tagsValue;
+    private ObservableValue<Number> sizeValue;
+    private ObservableValue<String> addedValue;
+
+    private ContentRow(Content content, boolean favourite) {
+        this.content = Objects.requireNonNull(content, "content");
+        this.favourite = favourite;
+        this.title = content.getTitle();
+        this.fileType = content.getFileType();
+        this.category = content.getCategory() == null ? "" : content.getCategory();
+        this.tagsText = String.join(", ", content.getTags());
+        this.addedText = content.getDayAdded() == null ? "-" : DATE_FORMATTER.format(content.getDayAdded());
+        this.sizeText = formatSize(content.getSizeBytes());
+    }
+
+    /**
+     * Build a row for the supplied content.  The content instance is owned by
+     * the row from this point on and must not be mutated by callers.
+     *
+     * @param content   the content to display
+     * @param favourite whether the current user has favourited the content
+     * @param previous  a previously built row for the same content, or {@code null}
+     * @return {@code previous} when it still describes the content, otherwise a new row
+     */
+    public static ContentRow of(Content content, boolean favourite, ContentRow previous) {
+        if (previous != null && previous.favourite == favourite && previous.describes(content)) {
+            return previous;
+        }
+        return new ContentRow(content, favourite);
+    }
+
+    /**
+     * Return a copy of this row with a different favourite flag.
+     */
+    public ContentRow withFavourite(boolean favourite) {
+        if (favourite == this.favourite) {
+            return this;
+        }
+        ContentRow row = new ContentRow(content, favourite);
+        // Text columns are unchanged so their observable values can be shared.
+        row.titleValue = titleValue;
+        row.typeValue = typeValue;
+        row.categoryValue = categoryValue;
+        row.tagsValue = tagsValue;
+        row.sizeValue = sizeValue;
+        row.addedValue = addedValue;
+        return row;
+    }
+
+    private boolean describes(Content other) {
+        return content.getContentID() == other.getContentID()
+                && content.getSizeBytes() == other.getSizeBytes()
+                && Objects.equals(content.getTitle(), other.getTitle())
+                && Objects.equals(content.getFilePath(), other.getFilePath())
+                && Objects.equals(content.getFileType(), other.getFileType())
+                && Objects.equals(content.getDayAdded(), other.getDayAdded())
+                && Objects.equals(content.getAuthor(), other.getAuthor())
+                && Objects.equals(content.getCategory(), other.getCategory())
+                && Objects.equals(content.getDescription(), other.getDescription())
+                && content.getTags().equals(other.getTags());
+    }
+
+    public Content getContent() {
+        return content;
+    }
+
+    public int getContentID() {
+        return content.getContentID();
+    }
+
+    public boolean isFavourite() {
+        return favourite;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getTagsText() {
+        return tagsText;
+    }
+
+    public String getAddedText() {
+        return addedText;
+    }
+
+    public String getSizeText() {
+        return sizeText;
+    }
+
+    public ObservableValue<Boolean> favouriteProperty() {
+        if (favouriteValue == null) {
+            favouriteValue = new ReadOnlyBooleanWrapper(favourite).getReadOnlyProperty();
+        }
+        return favouriteValue;
+    }
+
+    public ObservableValue<String> titleProperty() {
+        if (titleValue == null) {
+            titleValue = new ReadOnlyStringWrapper(title).getReadOnlyProperty();
+        }
+        return titleValue;
+    }
+
+    public ObservableValue<String> typeProperty() {
+        if (typeValue == null) {
+            typeValue = new ReadOnlyStringWrapper(fileType).getReadOnlyProperty();
+        }
+        return typeValue;
+    }
+
+    public ObservableValue<String> categoryProperty() {
+        if (categoryValue == null) {
+            categoryValue = new ReadOnlyStringWrapper(category).getReadOnlyProperty();
+        }
+        return categoryValue;
+    }
+
+    public ObservableValue<String> tagsProperty() {
+        if (tagsValue == null) {
+            tagsValue = new ReadOnlyStringWrapper(tagsText).getReadOnlyProperty();
+        }
+        return tagsValue;
+    }
+
+    public ObservableValue<Number> sizeProperty() {
+        if (sizeValue == null) {
+            sizeValue = new ReadOnlyLongWrapper(content.getSizeBytes()).getReadOnlyProperty();
+        }
+        return sizeValue;
+    }
+
+    public ObservableValue<String> addedProperty() {
+        if (addedValue == null) {
+            addedValue = new ReadOnlyStringWrapper(addedText).getReadOnlyProperty();
+        }
+        return addedValue;
+    }
+
+    /**
+     * Format a byte count using binary units, e.g. {@code 1.5 MB}.
+     */
+    public static String formatSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        double value = bytes;
+        int unitIndex = -1;
+        while (value >= 1024 && unitIndex < SIZE_UNITS.length - 1) {
+            value /= 1024;
+            unitIndex++;
+        }
+        // Avoid String.format: one decimal place is enough and this runs for every row.
+        long tenths = Math.round(value * 10);
+        return (tenths / 10) + "." + (tenths % 10) + " " + SIZE_UNITS[unitIndex];
+    }
+}
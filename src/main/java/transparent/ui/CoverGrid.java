@@ -0,0 +1,207 @@
+package transparent.ui;
+
+import javafx.application.Platform;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import transparent.metrics.Metrics;
+import transparent.model.Content;
+import transparent.service.ThumbnailService;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Virtualised grid of cover thumbnails.  Items are laid out as rows of a
+ * {@link ListView}, so only the rows on screen have tiles and only their
+ * covers are requested from the {@link ThumbnailService}.  Decoded covers are
+ * kept in a small LRU cache so scrolling back does not decode them again.
+ */
+public class CoverGrid extends ListView<List<ContentRow>> {
+    private static final double TILE_WIDTH = 140;
+    private static final double COVER_HEIGHT = 180;
+    private static final double TILE_GAP = 10;
+    private static final int IMAGE_CACHE_SIZE = 256;
+
+    private final ObjectProperty<ContentRow> selectedRow = new SimpleObjectProperty<>(this, "selectedRow");
+    private final Map<Path, Image> imageCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Image> eldest) {
+            return size() > IMAGE_CACHE_SIZE;
+        }
+    };
+    private List<ContentRow> items = List.of();
+    private int columns = 1;
+    private Consumer<ContentRow> onOpen = row -> { };
+
+    public CoverGrid() {
+        getStyleClass().add("cover-grid");
+        setFocusTraversable(false);
+        setCellFactory(list -> new CoverRowCell());
+        widthProperty().addListener((obs, oldWidth, newWidth) -> relayout());
+        selectedRow.addListener((obs, oldRow, newRow) -> refresh());
+    }
+
+    /**
+     * Replace the displayed rows.
+     */
+    public void setRows(List<ContentRow> rows) {
+        items = List.copyOf(rows);
+        rebuild();
+    }
+
+    public ObjectProperty<ContentRow> selectedRowProperty() {
+        return selectedRow;
+    }
+
+    /**
+     * Set the action run when a cover is double clicked.
+     */
+    public void setOnOpen(Consumer<ContentRow> onOpen) {
+        this.onOpen = onOpen == null ? row -> { } : onOpen;
+    }
+
+    /**
+     * Scroll so the given row is visible.
+     */
+    public void reveal(ContentRow row) {
+        int index = items.indexOf(row);
+        if (index >= 0) {
+            scrollTo(index / columns);
+        }
+    }
+
+    private void relayout() {
+        int fitting = Math.max(1, (int) ((getWidth() - 20) / (TILE_WIDTH + TILE_GAP)));
+        if (fitting != columns) {
+            columns = fitting;
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        List<List<ContentRow>> chunks = new ArrayList<>((items.size() + columns - 1) / columns);
+        for (int start = 0; start < items.size(); start += columns) {
+            chunks.add(items.subList(start, Math.min(items.size(), start + columns)));
+        }
+        getItems().setAll(chunks);
+    }
+
+    private void showCover(ImageView view, Content content) {
+        ThumbnailService thumbnails = ThumbnailService.getInstance();
+        Optional<Path> cached = thumbnails.findCached(content);
+        if (cached.isPresent()) {
+            view.setImage(load(cached.get()));
+            return;
+        }
+        view.setImage(null);
+        int contentId = content.getContentID();
+        thumbnails.requestThumbnail(content).thenAccept(result -> result.ifPresent(path -> Platform.runLater(() -> {
+            // The cell may have been reused for another item while the thumbnail rendered.
+            if (Integer.valueOf(contentId).equals(view.getUserData())) {
+                view.setImage(load(path));
+            }
+        })));
+    }
+
+    private Image load(Path path) {
+        Image image = imageCache.get(path);
+        Metrics.getInstance().counter(image != null ? "covers.memory.hit" : "covers.memory.miss").increment();
+        if (image == null) {
+            image = new Image(path.toUri().toString(), TILE_WIDTH, COVER_HEIGHT, true, true, true);
+            imageCache.put(path, image);
+        }
+        return image;
+    }
+
+    private final class CoverRowCell extends ListCell<List<ContentRow>> {
+        private final HBox box = new HBox(TILE_GAP);
+
+        private CoverRowCell() {
+            box.setPadding(new Insets(TILE_GAP / 2, 0, TILE_GAP / 2, 0));
+        }
+
+        @Override
+        protected void updateItem(List<ContentRow> rows, boolean empty) {
+            super.updateItem(rows, empty);
+            setText(null);
+            if (empty || rows == null) {
+                setGraphic(null);
+                return;
+            }
+            // Reuse tiles between updates; only the cover and caption change.
+            while (box.getChildren().size() < rows.size()) {
+                box.getChildren().add(new Tile());
+            }
+            box.getChildren().remove(rows.size(), box.getChildren().size());
+            for (int i = 0; i < rows.size(); i++) {
+                ((Tile) box.getChildren().get(i)).bind(rows.get(i));
+            }
+            setGraphic(box);
+        }
+    }
+
+    private final class Tile extends VBox {
+        private final ImageView cover = new ImageView();
+        private final Label placeholder = new Label();
+        private final Label caption = new Label();
+        private ContentRow row;
+
+        private Tile() {
+            super(4);
+            getStyleClass().add("cover-tile");
+            setAlignment(Pos.TOP_CENTER);
+            setPrefWidth(TILE_WIDTH);
+            setPadding(new Insets(4));
+            cover.setFitWidth(TILE_WIDTH);
+            cover.setFitHeight(COVER_HEIGHT);
+            cover.setPreserveRatio(true);
+            placeholder.getStyleClass().add("cover-placeholder");
+            placeholder.visibleProperty().bind(cover.imageProperty().isNull());
+            StackPane frame = new StackPane(placeholder, cover);
+            frame.setPrefSize(TILE_WIDTH, COVER_HEIGHT);
+            frame.setMinSize(TILE_WIDTH, COVER_HEIGHT);
+            caption.setWrapText(true);
+            caption.setMaxWidth(TILE_WIDTH);
+            caption.setMaxHeight(36);
+            getChildren().addAll(frame, caption);
+            setOnMouseClicked(event -> {
+                if (row == null) {
+                    return;
+                }
+                selectedRow.set(row);
+                if (event.getClickCount() == 2) {
+                    onOpen.accept(row);
+                }
+            });
+        }
+
+        private void bind(ContentRow newRow) {
+            boolean selected = selectedRow.get() != null && selectedRow.get().getContentID() == newRow.getContentID();
+            setStyle(selected ? "-fx-background-color: -fx-selection-bar; -fx-background-radius: 4;" : null);
+            if (row == newRow) {
+                return;
+            }
+            row = newRow;
+            Content content = newRow.getContent();
+            caption.setText(newRow.getTitle());
+            placeholder.setText(content.getFileType());
+            cover.setUserData(content.getContentID());
+            showCover(cover, content);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package transparent.ui;
+
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.IntBuffer;
+
+/**
+ * One block of premultiplied ARGB pixels shared by Java2D and JavaFX.  PDF
+ * pages and decoded images are drawn into it through {@link #begin()}, and
+ * the {@link #getImage() JavaFX image} reads the same memory, so a page
+ * reaches the screen without the second full-size copy and per-pixel
+ * conversion of {@code SwingFXUtils.toFXImage}.
+ *
+ * <p>A raster has a fixed size.  Callers keep one and reuse it for every
+ * page of the same dimensions; see {@link #reuseOrAllocate}.  Drawing and
+ * {@link #publish()} must happen on the JavaFX application thread while the
+ * image is on screen.</p>
+ */
+public final class PageRaster {
+    private final int width;
+    private final int height;
+    private final BufferedImage canvas;
+    private final PixelBuffer<IntBuffer> pixels;
+    private final WritableImage image;
+
+    private PageRaster(int width, int height) {
+        this.width = width;
+        this.height = height;
+        // TYPE_INT_ARGB_PRE has the same layout as JavaFX's IntArgbPre, so
+        // both sides can share the image's backing array.
+        canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        int[] data = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+        pixels = new PixelBuffer<>(width, height, IntBuffer.wrap(data), PixelFormat.getIntArgbPreInstance());
+        image = new WritableImage(pixels);
+    }
+
+    /**
+     * Return {@code current} when it already has the requested size, or a
+     * new raster otherwise.
+     */
+    public static PageRaster reuseOrAllocate(PageRaster current, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid raster size " + width + "x" + height);
+        }
+        if (current != null && current.width == width && current.height == height) {
+            return current;
+        }
+        return new PageRaster(width, height);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Size of the pixel data in bytes. */
+    public long getByteCount() {
+        return 4L * width * height;
+    }
+
+    /** The JavaFX view of the pixels; the same instance for the raster's lifetime. */
+    public WritableImage getImage() {
+        return image;
+    }
+
+    /**
+     * Clear the raster to white and return a graphics context drawing into
+     * it.  The caller disposes the context and then calls {@link #publish()}.
+     */
+    public Graphics2D begin() {
+        Graphics2D graphics = canvas.createGraphics();
+        graphics.setBackground(Color.WHITE);
+        graphics.clearRect(0, 0, width, height);
+        return graphics;
+    }
+
+    /**
+     * Return a graphics context drawing over the current contents, e.g. to
+     * mark find results on a rendered page.  The caller disposes it and
+     * then calls {@link #publish()}.
+     */
+    public Graphics2D overlay() {
+        return canvas.createGraphics();
+    }
+
+    /**
+     * Draw {@code source} scaled to fill the raster, replacing its contents.
+     */
+    public void draw(Image source) {
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setComposite(AlphaComposite.Src);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        publish();
+    }
+
+    /**
+     * Tell JavaFX the pixels changed so the image is redrawn on the next
+     * pulse.
+     */
+    public void publish() {
+        pixels.updateBuffer(buffer -> null);
+    }
+}
@@ -89,9 +89,26 @@ public final class ThemeManager {
         repository.setTheme(theme.name());
     }
 
+    /**
+     * Call {@code listener} with the active theme now and on every change.
+     * The listener is held strongly: anything short-lived, such as a window's
+     * controller, must {@link #removeListener remove} it when it goes away.
+     */
     public void addListener(Consumer<Theme> listener) {
         listeners.add(listener);
-        Platform.runLater(() -> listener.accept(activeTheme));
+        Platform.runLater(() -> {
+            if (listeners.contains(listener)) {
+                listener.accept(activeTheme);
+            }
+        });
+    }
+
+    /**
+     * Stop notifying {@code listener}, which must be the same instance that
+     * was added.
+     */
+    public void removeListener(Consumer<Theme> listener) {
+        listeners.remove(listener);
     }
 
     private void applyThemeToScenes() {